@@ -0,0 +1,161 @@
+package com.example.ui;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable blobs on disk, addressed by a hex content hash. Blobs are spread
+ * over 256 shard directories named after the first two hex digits, so no
+ * single directory grows with the number of stored images. Writes go
+ * through a temporary file and a rename, so readers never see a partial
+ * blob. Writes are not synced one by one; {@link #sync()} makes every blob
+ * written since the last call durable, together with the directory entries
+ * that name it.
+ */
+public class BlobStore {
+    private static final int SHARD_DIGITS = 2;
+
+    private final File directory;
+    private final List<File> unsynced = new ArrayList<>();
+    // Shard directories whose entries changed, then the store directory if a shard was created
+    private final Set<File> unsyncedDirectories = new LinkedHashSet<>();
+
+    public BlobStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Stores a blob unless one with the same hash already exists
+     *
+     * @return True if the blob was written, false if it was already stored
+     */
+    public boolean put(String hash, byte[] contents) throws IOException {
+        if (!isHash(hash)) {
+            throw new IllegalArgumentException("Not a hex content hash: " + hash);
+        }
+        File file = file(hash);
+        if (file.isFile()) {
+            return false;
+        }
+
+        File shard = file.getParentFile();
+        boolean newShard = !shard.isDirectory();
+        if (newShard && !shard.mkdirs()) {
+            throw new IOException("Could not create " + shard);
+        }
+        File temp = new File(shard, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(contents);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not move blob into place: " + file);
+        }
+        unsynced.add(file);
+        unsyncedDirectories.add(shard);
+        if (newShard) {
+            unsyncedDirectories.add(directory);
+        }
+        return true;
+    }
+
+    /**
+     * Forces every blob written since the last sync to storage. The blobs'
+     * shard directories are synced too, as a renamed file is only durable
+     * once the directory entry pointing at it is.
+     */
+    public void sync() throws IOException {
+        for (File file : unsynced) {
+            if (!file.isFile()) {
+                // Deleted again before the sync
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        unsynced.clear();
+        for (File dir : unsyncedDirectories) {
+            syncDirectory(dir);
+        }
+        unsyncedDirectories.clear();
+    }
+
+    /**
+     * Forces the entries of a directory to storage, after creating or
+     * renaming a file in it
+     */
+    static void syncDirectory(File dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Returns the blob contents, or null if no blob has this hash
+     */
+    public byte[] get(String hash) throws IOException {
+        if (!contains(hash)) {
+            return null;
+        }
+
+        File file = file(hash);
+
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] contents = new byte[(int) file.length()];
+            int read = 0;
+            while (read < contents.length) {
+                int n = in.read(contents, read, contents.length - read);
+                if (n < 0) {
+                    throw new IOException("Blob truncated while reading: " + file);
+                }
+                read += n;
+            }
+            return contents;
+        }
+    }
+
+    public boolean contains(String hash) {
+        return isHash(hash) && file(hash).isFile();
+    }
+
+    /**
+     * Removes a blob
+     *
+     * @return True if a blob was removed
+     */
+    public boolean delete(String hash) {
+        return isHash(hash) && file(hash).delete();
+    }
+
+    /**
+     * True for lowercase hex strings long enough to shard, anything else can
+     * not name a blob
+     */
+    static boolean isHash(String hash) {
+        if (hash == null || hash.length() <= SHARD_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private File file(String hash) {
+        return new File(new File(directory, hash.substring(0, SHARD_DIGITS)), hash.substring(SHARD_DIGITS));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.ui;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of classification results keyed by model identity and the
+ * perceptual hash of the input image. Lookups may match an entry whose
+ * hash is within a configurable Hamming distance, so re-selecting the same
+ * photo or shooting the same item twice skips inference.
+ */
+public class ClassificationCache {
+    private final int capacity;
+    private final int tolerance;
+    private final LinkedHashMap<Key, ImageClassifier.CombinedClassificationResult> entries;
+
+    // Reused for lookups, guarded by the cache lock
+    private final Key probe = new Key(null, 0);
+
+    private long hitCount;
+    private long nearHitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private static final class Key {
+        String modelId;
+        long hash;
+
+        Key(String modelId, long hash) {
+            this.modelId = modelId;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && modelId.equals(other.modelId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + modelId.hashCode();
+        }
+    }
+
+    /**
+     * @param capacity  Maximum number of cached results
+     * @param tolerance Maximum Hamming distance between hashes that still counts as a hit
+     */
+    public ClassificationCache(int capacity, int tolerance) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (tolerance < 0 || tolerance > 64) {
+            throw new IllegalArgumentException("Tolerance must be between 0 and 64");
+        }
+        this.capacity = capacity;
+        this.tolerance = tolerance;
+        this.entries = new LinkedHashMap<Key, ImageClassifier.CombinedClassificationResult>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ImageClassifier.CombinedClassificationResult> eldest) {
+                if (size() > ClassificationCache.this.capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Copies the cached result for the image into result
+     *
+     * @return true on a hit, false if the image must be classified
+     */
+    public synchronized boolean get(String modelId, long hash, ImageClassifier.CombinedClassificationResult result) {
+        probe.modelId = modelId;
+        probe.hash = hash;
+        ImageClassifier.CombinedClassificationResult cached = entries.get(probe);
+        probe.modelId = null;
+        if (cached != null) {
+            hitCount++;
+            result.copyFrom(cached);
+            return true;
+        }
+
+        if (tolerance > 0) {
+            Key nearest = null;
+            int nearestDistance = tolerance + 1;
+            for (Key key : entries.keySet()) {
+                int distance = PerceptualHash.distance(key.hash, hash);
+                if (distance < nearestDistance && key.modelId.equals(modelId)) {
+                    nearest = key;
+                    nearestDistance = distance;
+                }
+            }
+            if (nearest != null) {
+                nearHitCount++;
+                // get() also refreshes the entry's LRU position
+                result.copyFrom(entries.get(nearest));
+                return true;
+            }
+        }
+
+        missCount++;
+        return false;
+    }
+
+    /**
+     * Stores a copy of the result for the image
+     */
+    public synchronized void put(String modelId, long hash, ImageClassifier.CombinedClassificationResult result) {
+        ImageClassifier.CombinedClassificationResult copy = new ImageClassifier.CombinedClassificationResult();
+        copy.copyFrom(result);
+        entries.put(new Key(modelId, hash), copy);
+    }
+
+    /**
+     * Drops all entries of a model, e.g. after it was replaced
+     */
+    public synchronized void invalidate(String modelId) {
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().modelId.equals(modelId)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount + nearHitCount;
+    }
+
+    public synchronized long getNearHitCount() {
+        return nearHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size=" + entries.size() + "/" + capacity + ", hits=" + (hitCount + nearHitCount)
+                + " (near " + nearHitCount + "), misses=" + missCount + ", evictions=" + evictionCount;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * One scan in the classification history. Records have a fixed binary width,
+ * so a segment file is an array of them and the n-th record sits at a known
+ * offset. Instances are mutable so the store can decode into one object while
+ * replaying instead of allocating per record.
+ */
+public class ClassificationRecord {
+    /** Encoded size in bytes, including the trailing checksum */
+    public static final int SIZE = 88;
+    /** Length of the raw image reference, a SHA-256 */
+    public static final int IMAGE_REF_BYTES = 32;
+
+    private static final int CHECKSUMMED_BYTES = SIZE - 4;
+
+    /** Position in the history, assigned by the store on append */
+    public long sequence;
+    public long timestampMs;
+    public int latencyMicros;
+    public int fruitIndex = -1;
+    public int ripenessIndex = -1;
+    public final float[] fruitProbabilities = new float[ImageClassifier.NUM_FRUIT_CLASSES];
+    public final float[] ripenessProbabilities = new float[ImageClassifier.NUM_RIPENESS_CLASSES];
+    /** Raw SHA-256 of the image in the image repo, all zeros if there is none */
+    public final byte[] imageRef = new byte[IMAGE_REF_BYTES];
+
+    /**
+     * Fills this record from a classification result
+     *
+     * @param imageLocation Image repo location of the scanned image, or null
+     */
+    public ClassificationRecord set(long timestampMs, ImageClassifier.CombinedClassificationResult result,
+                                    String imageLocation, long latencyMicros) {
+        this.timestampMs = timestampMs;
+        this.latencyMicros = (int) Math.min(Integer.MAX_VALUE, Math.max(0, latencyMicros));
+        this.fruitIndex = result.fruitIndex;
+        this.ripenessIndex = result.ripenessIndex;
+        copyProbabilities(result.fruitProbabilities, fruitProbabilities);
+        copyProbabilities(result.ripenessProbabilities, ripenessProbabilities);
+        setImageLocation(imageLocation);
+        return this;
+    }
+
+    private static void copyProbabilities(float[] src, float[] dst) {
+        Arrays.fill(dst, 0.0f);
+        if (src != null) {
+            System.arraycopy(src, 0, dst, 0, Math.min(src.length, dst.length));
+        }
+    }
+
+    /**
+     * Stores an image repo location, a 64 digit hex SHA-256, as raw bytes
+     */
+    public void setImageLocation(String location) {
+        if (location == null) {
+            Arrays.fill(imageRef, (byte) 0);
+            return;
+        }
+        if (location.length() != IMAGE_REF_BYTES * 2) {
+            throw new IllegalArgumentException("Not a SHA-256 location: " + location);
+        }
+        for (int i = 0; i < IMAGE_REF_BYTES; i++) {
+            int high = Character.digit(location.charAt(i * 2), 16);
+            int low = Character.digit(location.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not a SHA-256 location: " + location);
+            }
+            imageRef[i] = (byte) ((high << 4) | low);
+        }
+    }
+
+    /**
+     * Returns the image repo location, or null if the record has no image
+     */
+    public String getImageLocation() {
+        boolean empty = true;
+        char[] hex = new char[IMAGE_REF_BYTES * 2];
+        for (int i = 0; i < IMAGE_REF_BYTES; i++) {
+            empty &= imageRef[i] == 0;
+            hex[i * 2] = Character.forDigit((imageRef[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(imageRef[i] & 0xF, 16);
+        }
+        return empty ? null : new String(hex);
+    }
+
+    public void copyFrom(ClassificationRecord other) {
+        sequence = other.sequence;
+        timestampMs = other.timestampMs;
+        latencyMicros = other.latencyMicros;
+        fruitIndex = other.fruitIndex;
+        ripenessIndex = other.ripenessIndex;
+        System.arraycopy(other.fruitProbabilities, 0, fruitProbabilities, 0, fruitProbabilities.length);
+        System.arraycopy(other.ripenessProbabilities, 0, ripenessProbabilities, 0, ripenessProbabilities.length);
+        System.arraycopy(other.imageRef, 0, imageRef, 0, IMAGE_REF_BYTES);
+    }
+
+    /**
+     * Encodes SIZE bytes at the buffer's position, ending with a CRC32 of
+     * everything before it
+     */
+    void writeTo(ByteBuffer buffer, CRC32 crc) {
+        int start = buffer.position();
+        buffer.putLong(sequence);
+        buffer.putLong(timestampMs);
+        buffer.putInt(latencyMicros);
+        buffer.put((byte) fruitIndex);
+        buffer.put((byte) ripenessIndex);
+        buffer.putShort((short) 0); // Reserved flags
+        for (float p : fruitProbabilities) {
+            buffer.putFloat(p);
+        }
+        for (float p : ripenessProbabilities) {
+            buffer.putFloat(p);
+        }
+        buffer.put(imageRef);
+        buffer.putInt(checksum(buffer, start, crc));
+    }
+
+    /**
+     * Decodes SIZE bytes at the buffer's position. The position always
+     * advances by SIZE, so a corrupt record can be skipped.
+     *
+     * @return False if the checksum does not match, the record is then undefined
+     */
+    boolean readFrom(ByteBuffer buffer, CRC32 crc) {
+        int start = buffer.position();
+        int expected = buffer.getInt(start + CHECKSUMMED_BYTES);
+        if (checksum(buffer, start, crc) != expected) {
+            buffer.position(start + SIZE);
+            return false;
+        }
+
+        sequence = buffer.getLong();
+        timestampMs = buffer.getLong();
+        latencyMicros = buffer.getInt();
+        fruitIndex = buffer.get();
+        ripenessIndex = buffer.get();
+        buffer.getShort();
+        for (int i = 0; i < fruitProbabilities.length; i++) {
+            fruitProbabilities[i] = buffer.getFloat();
+        }
+        for (int i = 0; i < ripenessProbabilities.length; i++) {
+            ripenessProbabilities[i] = buffer.getFloat();
+        }
+        buffer.get(imageRef);
+        buffer.getInt();
+        return true;
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, CRC32 crc) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(start + CHECKSUMMED_BYTES).position(start);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " at " + timestampMs + ": fruit " + fruitIndex + ", ripeness " + ripenessIndex
+                + ", " + latencyMicros + " us";
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.ui;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs decoding, preprocessing and inference off the main thread and
+ * delivers results on the main looper. Each request borrows a classifier
+ * from the pool for its inference only. Only the most recent request
+ * matters: submitting a new one cancels any older request that has not
+ * finished.
+ */
+public class ClassificationService {
+    private static final String TAG = "ClassificationService";
+    private static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * Receives the outcome of a request on the main thread
+     */
+    public interface Callback {
+        void onResult(Bitmap bitmap, ImageClassifier.CombinedClassificationResult result, long inferenceTimeMs);
+
+        void onError(Exception e);
+    }
+
+    private final ImageClassifierPool classifierPool;
+    private final ImageLoader imageLoader;
+    private final PipelineMetrics metrics;
+    private final DiagnosticLog diagnostics = DiagnosticLog.get();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong generation = new AtomicLong();
+    private Task currentTask;
+
+    public ClassificationService(ImageClassifierPool classifierPool, ImageLoader imageLoader) {
+        this.classifierPool = classifierPool;
+        this.imageLoader = imageLoader;
+        this.metrics = classifierPool.getMetrics();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> new Thread(runnable, "Classification"));
+    }
+
+    /**
+     * Classifies an already decoded bitmap
+     */
+    public Task classify(Bitmap bitmap, Callback callback) {
+        return submit(() -> new ImageLoader.LoadedImage(bitmap, bitmap), callback);
+    }
+
+    /**
+     * Decodes and classifies the image behind a content Uri. The callback
+     * receives the preview-sized bitmap.
+     */
+    public Task classify(Uri uri, Callback callback) {
+        return submit(() -> imageLoader.load(uri), callback);
+    }
+
+    private interface Decoder {
+        ImageLoader.LoadedImage decode() throws Exception;
+    }
+
+    private synchronized Task submit(Decoder decoder, Callback callback) {
+        if (currentTask != null) {
+            currentTask.cancel();
+        }
+        executor.purge();
+
+        Task task = new Task(generation.incrementAndGet());
+        currentTask = task;
+        try {
+            task.future = executor.submit(() -> run(task, decoder, callback));
+        } catch (RejectedExecutionException e) {
+            deliver(task, () -> callback.onError(e));
+        }
+        return task;
+    }
+
+    private void run(Task task, Decoder decoder, Callback callback) {
+        try {
+            task.checkCurrent();
+            long requestStart = System.nanoTime();
+            ImageLoader.LoadedImage image = decoder.decode();
+            long decodeEnd = System.nanoTime();
+            metrics.record(PipelineMetrics.Stage.DECODE, decodeEnd - requestStart);
+
+            task.checkCurrent();
+            ImageClassifier.CombinedClassificationResult result;
+            ImageClassifier classifier = classifierPool.acquire(ImageClassifierPool.DEFAULT_TIMEOUT_MS,
+                    TimeUnit.MILLISECONDS);
+            try {
+                result = classifier.classifyImage(image.input);
+            } finally {
+                classifierPool.release(classifier);
+            }
+            long classifyEnd = System.nanoTime();
+            long inferenceTime = (classifyEnd - decodeEnd) / 1_000_000;
+            metrics.record(PipelineMetrics.Stage.END_TO_END, classifyEnd - requestStart);
+            if (image.input != image.display) {
+                image.input.recycle();
+            }
+
+            deliver(task, () -> callback.onResult(image.display, result, inferenceTime));
+        } catch (CancellationException e) {
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Request {} superseded", task.id);
+        } catch (Exception e) {
+            metrics.increment(PipelineMetrics.Counter.ERRORS);
+            Log.e(TAG, "Classification request failed: " + e.getMessage(), e);
+            deliver(task, () -> callback.onError(e));
+        }
+    }
+
+    private void deliver(Task task, Runnable delivery) {
+        mainHandler.post(() -> {
+            // Re-check on the main thread, a newer request may have arrived meanwhile
+            if (task.isCurrent()) {
+                task.done = true;
+                delivery.run();
+            }
+        });
+    }
+
+    /**
+     * Cancels pending work and stops the worker once it is idle. The pool
+     * stays open; a classifier still borrowed by a running request is closed
+     * on release if the pool is closed meanwhile.
+     */
+    public synchronized void close() {
+        if (currentTask != null) {
+            currentTask.cancel();
+        }
+        generation.incrementAndGet();
+        executor.purge();
+        executor.shutdown();
+    }
+
+    /**
+     * Handle for one submitted request
+     */
+    public class Task {
+        private final long id;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private Future<?> future;
+
+        Task(long id) {
+            this.id = id;
+        }
+
+        /**
+         * Cancels the request; its callback will not be invoked
+         */
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        boolean isCurrent() {
+            return !cancelled && id == generation.get();
+        }
+
+        void checkCurrent() {
+            if (!isCurrent()) {
+                throw new CancellationException();
+            }
+        }
+    }
+}
@@ -1,9 +1,113 @@
 package com.example.ui;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Persists scans. The image goes into the content-addressed image repo and a
+ * classification record pointing at it is appended to the history store and
+ * added to the history index.
+ */
 public class Database {
-    public void save(Image image, String name) {
-        System.out.println("Saving image and produce name to DB...");
+    private final HistoryStore history;
+    private final ImageRepo images;
+    private final HistoryIndex index;
+
+    // Reused for every save, guarded by this
+    private final ClassificationRecord record = new ClassificationRecord();
+    private final ImageClassifier.CombinedClassificationResult label =
+            new ImageClassifier.CombinedClassificationResult();
+
+    public Database(HistoryStore history, ImageRepo images, HistoryIndex index) {
+        this.history = history;
+        this.images = images;
+        this.index = index;
+        label.fruitProbabilities = new float[ImageClassifier.NUM_FRUIT_CLASSES];
+        label.ripenessProbabilities = new float[ImageClassifier.NUM_RIPENESS_CLASSES];
+    }
+
+    /**
+     * Indexes the existing history in the device's time zone
+     *
+     * @throws UncheckedIOException if the history could not be read
+     */
+    public Database(HistoryStore history, ImageRepo images) {
+        this(history, images, loadIndex(history));
+    }
+
+    private static HistoryIndex loadIndex(HistoryStore history) {
+        try {
+            return HistoryIndex.load(history, ZoneId.systemDefault());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not index the history", e);
+        }
+    }
+
+    /**
+     * Saves an image under a produce name such as "Ripe Banana". The named
+     * classes are stored with full confidence; a class the name does not
+     * mention is stored as unknown.
+     *
+     * @throws UncheckedIOException if the scan could not be written
+     */
+    public synchronized void save(Image image, String name) {
+        label.fruitIndex = ImageClassifier.findFruitClass(name);
+        label.ripenessIndex = ImageClassifier.findRipenessClass(name);
+        oneHot(label.fruitProbabilities, label.fruitIndex);
+        oneHot(label.ripenessProbabilities, label.ripenessIndex);
+        label.fruitConfidence = label.fruitIndex >= 0 ? 100.0f : 0.0f;
+        label.ripenessConfidence = label.ripenessIndex >= 0 ? 100.0f : 0.0f;
+        save(image, label, System.currentTimeMillis(), 0);
+    }
+
+    private static void oneHot(float[] probabilities, int index) {
+        Arrays.fill(probabilities, 0.0f);
+        if (index >= 0) {
+            probabilities[index] = 1.0f;
+        }
+    }
+
+    /**
+     * Saves a classified scan
+     *
+     * @param image         The scanned image, or null to record the result only
+     * @param latencyMicros Time the classification took
+     * @return The sequence of the history record
+     * @throws UncheckedIOException if the scan could not be written
+     */
+    public synchronized long save(Image image, ImageClassifier.CombinedClassificationResult result,
+                                  long timestampMs, long latencyMicros) {
+        String location = image != null ? images.saveImage(image) : null;
+        record.set(timestampMs, result, location, latencyMicros);
+        try {
+            history.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save classification", e);
+        }
+        index.add(record);
+        return record.sequence;
+    }
+
+    /**
+     * Makes every saved scan durable. Images are synced before the history,
+     * so a durable record never points at an image that could still be lost.
+     */
+    public void sync() throws IOException {
+        images.sync();
+        history.sync();
+    }
+
+    public HistoryStore getHistory() {
+        return history;
+    }
+
+    public HistoryIndex getIndex() {
+        return index;
+    }
 
-        //JUST IN CASE WE USE
+    public ImageRepo getImages() {
+        return images;
     }
 }
@@ -0,0 +1,338 @@
+package com.example.ui;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-overhead diagnostic logger for hot paths. Callers pass a constant
+ * template with "{}" placeholders and primitive values; nothing is formatted
+ * when an event is recorded. Events go into a preallocated ring buffer and
+ * are formatted and written to logcat by a background flusher thread or by
+ * an explicit flush. When the flusher falls behind, the oldest events are
+ * overwritten and counted as dropped.
+ *
+ * Each slot carries a stamp. A writer claims its slot by swapping the stamp
+ * to WRITING, so two writers a full ring apart never fill the same slot at
+ * once, and publishes the event by setting the stamp to its sequence. The
+ * flusher copies an event out and keeps it only if the stamp is unchanged
+ * after an acquire fence, as with StampedLock.validate.
+ */
+public class DiagnosticLog {
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+
+    public static final int MAX_VALUES = 4;
+    private static final int DEFAULT_CAPACITY = 512;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final long EMPTY = -2;
+    private static final long WRITING = -1;
+
+    private static DiagnosticLog shared;
+
+    /**
+     * Receives formatted events
+     */
+    public interface Sink {
+        void write(int level, String tag, String message);
+    }
+
+    private final int capacity;
+    private volatile Sink sink;
+    private volatile int level = BuildConfig.DEBUG ? DEBUG : INFO;
+
+    // Event slots, indexed by sequence % capacity
+    private final long[] timestamps;
+    private final int[] levels;
+    private final String[] tags;
+    private final String[] templates;
+    private final String[] texts;
+    private final int[] valueCounts;
+    private final boolean[] integral;
+    // Integral values as is, floating point values as raw double bits, so longs keep full precision
+    private final long[] values;
+
+    // Sequence number of the event published in each slot, WRITING while claimed
+    private final AtomicLongArray published;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private long flushedSequence;
+    private final StringBuilder formatBuffer = new StringBuilder();
+    private Thread flusher;
+
+    public DiagnosticLog(int capacity, Sink sink) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.sink = sink;
+        this.timestamps = new long[capacity];
+        this.levels = new int[capacity];
+        this.tags = new String[capacity];
+        this.templates = new String[capacity];
+        this.texts = new String[capacity];
+        this.valueCounts = new int[capacity];
+        this.integral = new boolean[capacity];
+        this.values = new long[capacity * MAX_VALUES];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Logger shared by the app, flushed once a second. It has no sink until
+     * the app installs one, e.g. logcat, so classes logging through it run in
+     * plain JVM unit tests without touching android.util.Log.
+     */
+    public static synchronized DiagnosticLog get() {
+        if (shared == null) {
+            shared = new DiagnosticLog(DEFAULT_CAPACITY, null);
+            shared.startFlusher(FLUSH_INTERVAL_MS);
+        }
+        return shared;
+    }
+
+    /**
+     * Sets where flushed events go. Until a sink is set, events stay in the
+     * ring, and the oldest are dropped once it is full.
+     */
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Sets the lowest level that is recorded
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public boolean isLoggable(int level) {
+        return level >= this.level;
+    }
+
+    public void log(int level, String tag, String template) {
+        if (level >= this.level) {
+            record(level, tag, template, null, null, 0, 0, 0, 0, true);
+        }
+    }
+
+    public void log(int level, String tag, String template, long a) {
+        if (level >= this.level) {
+            record(level, tag, template, null, null, 1, a, 0, 0, true);
+        }
+    }
+
+    public void log(int level, String tag, String template, long a, long b) {
+        if (level >= this.level) {
+            record(level, tag, template, null, null, 2, a, b, 0, true);
+        }
+    }
+
+    public void log(int level, String tag, String template, long a, long b, long c) {
+        if (level >= this.level) {
+            record(level, tag, template, null, null, 3, a, b, c, true);
+        }
+    }
+
+    public void log(int level, String tag, String template, String text) {
+        if (level >= this.level) {
+            record(level, tag, template, text, null, 0, 0, 0, 0, true);
+        }
+    }
+
+    public void log(int level, String tag, String template, String text, long value) {
+        if (level >= this.level) {
+            record(level, tag, template, text, null, 1, value, 0, 0, true);
+        }
+    }
+
+    public void log(int level, String tag, String template, String text, double value) {
+        if (level >= this.level) {
+            record(level, tag, template, text, null, 1, Double.doubleToRawLongBits(value), 0, 0, false);
+        }
+    }
+
+    /**
+     * Records up to MAX_VALUES values of an array, which is copied
+     */
+    public void log(int level, String tag, String template, String text, float[] array) {
+        if (level >= this.level) {
+            record(level, tag, template, text, array, Math.min(array.length, MAX_VALUES), 0, 0, 0, false);
+        }
+    }
+
+    private void record(int level, String tag, String template, String text, float[] array,
+                        int count, long a, long b, long c, boolean isIntegral) {
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+        while (true) {
+            long current = published.get(slot);
+            if (current > sequence) {
+                // Lapped by a newer event while this one waited, the flusher counts it as dropped
+                return;
+            }
+            if (current != WRITING && published.compareAndSet(slot, current, WRITING)) {
+                break;
+            }
+            // A writer a full ring behind still holds the slot
+            Thread.yield();
+        }
+
+        timestamps[slot] = System.currentTimeMillis();
+        levels[slot] = level;
+        tags[slot] = tag;
+        templates[slot] = template;
+        texts[slot] = text;
+        valueCounts[slot] = count;
+        integral[slot] = isIntegral;
+        int base = slot * MAX_VALUES;
+        if (array != null) {
+            for (int i = 0; i < count; i++) {
+                values[base + i] = Double.doubleToRawLongBits(array[i]);
+            }
+        } else {
+            values[base] = a;
+            values[base + 1] = b;
+            values[base + 2] = c;
+        }
+
+        published.set(slot, sequence);
+    }
+
+    /**
+     * Formats and writes every event recorded since the last flush
+     *
+     * @return Number of events written
+     */
+    public synchronized int flush() {
+        Sink sink = this.sink;
+        if (sink == null) {
+            return 0;
+        }
+        long end = nextSequence.get();
+        if (end - flushedSequence > capacity) {
+            droppedCount.addAndGet(end - capacity - flushedSequence);
+            flushedSequence = end - capacity;
+        }
+
+        int written = 0;
+        for (long sequence = flushedSequence; sequence < end; sequence++) {
+            int slot = (int) (sequence % capacity);
+            if (published.get(slot) != sequence) {
+                // Still being written, or already overwritten by a newer event
+                if (published.get(slot) > sequence) {
+                    droppedCount.incrementAndGet();
+                    continue;
+                }
+                end = sequence;
+                break;
+            }
+            int eventLevel = levels[slot];
+            String tag = tags[slot];
+            String message = format(slot);
+            // Drop the event if a writer reused the slot while it was being formatted.
+            // The fence keeps the plain reads above from moving past the stamp check.
+            VarHandle.acquireFence();
+            if (published.get(slot) != sequence) {
+                droppedCount.incrementAndGet();
+                continue;
+            }
+            sink.write(eventLevel, tag, message);
+            written++;
+        }
+        flushedSequence = end;
+        return written;
+    }
+
+    private String format(int slot) {
+        StringBuilder out = formatBuffer;
+        out.setLength(0);
+        String template = templates[slot];
+        String text = texts[slot];
+        int count = valueCounts[slot];
+        int base = slot * MAX_VALUES;
+        int nextValue = 0;
+        boolean textUsed = text == null;
+
+        int from = 0;
+        int placeholder;
+        while ((placeholder = template.indexOf("{}", from)) >= 0) {
+            out.append(template, from, placeholder);
+            if (!textUsed) {
+                out.append(text);
+                textUsed = true;
+            } else if (nextValue < count) {
+                appendValue(out, values[base + nextValue++], integral[slot]);
+            } else {
+                out.append("{}");
+            }
+            from = placeholder + 2;
+        }
+        out.append(template, from, template.length());
+
+        // Values without a placeholder, e.g. a probability vector, are appended as a list
+        if (nextValue < count) {
+            out.append(" [");
+            for (int i = nextValue; i < count; i++) {
+                if (i > nextValue) {
+                    out.append(", ");
+                }
+                appendValue(out, values[base + i], integral[slot]);
+            }
+            out.append(']');
+        }
+        return out.toString();
+    }
+
+    private static void appendValue(StringBuilder out, long value, boolean isIntegral) {
+        if (isIntegral) {
+            out.append(value);
+        } else {
+            out.append((float) Double.longBitsToDouble(value));
+        }
+    }
+
+    /**
+     * Starts a daemon thread that flushes at a fixed interval
+     */
+    public synchronized void startFlusher(long intervalMs) {
+        if (flusher != null) {
+            return;
+        }
+        flusher = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(intervalMs);
+                    flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "DiagnosticLogFlusher");
+        flusher.setDaemon(true);
+        flusher.setPriority(Thread.MIN_PRIORITY);
+        flusher.start();
+    }
+
+    /**
+     * Stops the flusher thread after writing any pending events
+     */
+    public synchronized void stopFlusher() {
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher = null;
+        }
+        flush();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.ui;
+
+import java.util.ArrayDeque;
+
+/**
+ * Single-slot hand-off between a camera producer and an inference consumer
+ * where the newest frame wins. Publishing while a frame is still waiting
+ * drops the waiting frame instead of queuing it, so the consumer never works
+ * on a stale frame. Pixel buffers circulate between the one being written,
+ * the one waiting and those held by the consumer.
+ */
+public class FrameSlot {
+    private final ArrayDeque<int[]> freeBuffers;
+    private int[] pending;
+    private boolean closed = false;
+
+    private long publishedCount;
+    private long droppedCount;
+
+    /**
+     * @param frameLength Number of pixels in one frame
+     */
+    public FrameSlot(int frameLength) {
+        this(frameLength, 1);
+    }
+
+    /**
+     * @param frameLength    Number of pixels in one frame
+     * @param consumerFrames Number of taken frames the consumer may hold before releasing them
+     */
+    public FrameSlot(int frameLength, int consumerFrames) {
+        if (consumerFrames < 1) {
+            throw new IllegalArgumentException("The consumer must be able to hold a frame");
+        }
+        int numBuffers = consumerFrames + 2;
+        freeBuffers = new ArrayDeque<>(numBuffers);
+        for (int i = 0; i < numBuffers; i++) {
+            freeBuffers.push(new int[frameLength]);
+        }
+    }
+
+    /**
+     * Returns a buffer for the producer to fill
+     *
+     * @return The buffer, or null once the slot is closed
+     */
+    public synchronized int[] acquire() {
+        if (closed) {
+            return null;
+        }
+        int[] buffer = freeBuffers.poll();
+        if (buffer == null) {
+            // Only happens if the producer holds more than one buffer; recycle the waiting frame
+            buffer = pending;
+            pending = null;
+            droppedCount++;
+        }
+        return buffer;
+    }
+
+    /**
+     * Makes a filled buffer the newest frame, dropping any frame still waiting
+     */
+    public synchronized void publish(int[] frame) {
+        if (closed) {
+            return;
+        }
+        if (pending != null) {
+            freeBuffers.push(pending);
+            droppedCount++;
+        }
+        pending = frame;
+        publishedCount++;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the newest frame
+     *
+     * @return The frame, to be handed back with release, or null once the slot is closed
+     */
+    public synchronized int[] take() throws InterruptedException {
+        while (pending == null && !closed) {
+            wait();
+        }
+        if (closed) {
+            return null;
+        }
+        int[] frame = pending;
+        pending = null;
+        return frame;
+    }
+
+    /**
+     * Returns a buffer obtained from acquire or take
+     */
+    public synchronized void release(int[] buffer) {
+        freeBuffers.push(buffer);
+    }
+
+    /**
+     * Wakes the consumer and stops accepting frames
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+}
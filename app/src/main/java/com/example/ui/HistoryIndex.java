@@ -0,0 +1,235 @@
+package com.example.ui;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory indexes and aggregates over the classification history, bucketed
+ * by local day. Adding a record updates its day's count per fruit x ripeness,
+ * the expiry count of the day it is predicted to go off and the posting list
+ * of its cell, all in O(1). A query reads a few counters per day in its range,
+ * so "overripe bananas this week" costs seven lookups however long the
+ * history is. Records that compaction later expires stay counted until the
+ * index is rebuilt.
+ */
+public class HistoryIndex {
+    /** Matches every fruit or every ripeness class in a query */
+    public static final int ANY = -1;
+
+    private static final int FRUITS = ImageClassifier.NUM_FRUIT_CLASSES;
+    private static final int RIPENESS = ImageClassifier.NUM_RIPENESS_CLASSES;
+
+    // Rough days left before produce at each ripeness should be eaten, at room temperature.
+    // Rows: Banana, Mango, Tomato. Columns: OverRipe, Ripe, Unripe, VeryRipe.
+    static final int[][] SHELF_LIFE_DAYS = {
+            {0, 3, 6, 1},
+            {0, 3, 6, 1},
+            {1, 5, 9, 2},
+    };
+
+    /**
+     * Aggregates of one local day. Slot 0 of each dimension counts every
+     * class, slot i + 1 counts class i.
+     */
+    private static final class Day {
+        final int[] counts = new int[(FRUITS + 1) * (RIPENESS + 1)];
+        // Predicted to expire on this day, per fruit
+        final int[] expiring = new int[FRUITS + 1];
+        final long[][] sequences = new long[FRUITS * RIPENESS][];
+        final int[] sequenceCounts = new int[FRUITS * RIPENESS];
+
+        void addSequence(int cell, long sequence) {
+            long[] list = sequences[cell];
+            if (list == null) {
+                list = sequences[cell] = new long[4];
+            } else if (sequenceCounts[cell] == list.length) {
+                list = sequences[cell] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[sequenceCounts[cell]++] = sequence;
+        }
+    }
+
+    private final ZoneId zone;
+    private final Map<Long, Day> days = new HashMap<>();
+    private long recordCount;
+
+    /**
+     * @param zone Time zone whose midnight starts a day
+     */
+    public HistoryIndex(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Builds an index over every record in a store
+     */
+    public static HistoryIndex load(HistoryStore history, ZoneId zone) throws IOException {
+        HistoryIndex index = new HistoryIndex(zone);
+        history.forEach(index::add);
+        return index;
+    }
+
+    /**
+     * Indexes a record that was appended to the history. A fruit or ripeness
+     * of -1 only counts towards the totals of the other dimension.
+     */
+    public synchronized void add(ClassificationRecord record) {
+        long epochDay = toEpochDay(record.timestampMs);
+        Day day = day(epochDay);
+        int fruit = valid(record.fruitIndex, FRUITS);
+        int ripeness = valid(record.ripenessIndex, RIPENESS);
+
+        day.counts[0]++;
+        if (fruit >= 0) {
+            day.counts[cell(fruit, ANY)]++;
+        }
+        if (ripeness >= 0) {
+            day.counts[cell(ANY, ripeness)]++;
+        }
+        if (fruit >= 0 && ripeness >= 0) {
+            day.counts[cell(fruit, ripeness)]++;
+            day.addSequence(fruit * RIPENESS + ripeness, record.sequence);
+
+            Day expiry = day(epochDay + SHELF_LIFE_DAYS[fruit][ripeness]);
+            expiry.expiring[0]++;
+            expiry.expiring[fruit + 1]++;
+        }
+        recordCount++;
+    }
+
+    /**
+     * Counts scans between two days, both inclusive
+     *
+     * @param fruit    Fruit class index or {@link #ANY}
+     * @param ripeness Ripeness class index or {@link #ANY}
+     */
+    public synchronized int count(int fruit, int ripeness, LocalDate from, LocalDate to) {
+        int cell = cell(checkQuery(fruit, FRUITS), checkQuery(ripeness, RIPENESS));
+        int total = 0;
+        for (Day day : range(from, to)) {
+            total += day.counts[cell];
+        }
+        return total;
+    }
+
+    /**
+     * Counts items predicted to reach the end of their shelf life between
+     * two days, both inclusive
+     *
+     * @param fruit Fruit class index or {@link #ANY}
+     */
+    public synchronized int countExpiring(int fruit, LocalDate from, LocalDate to) {
+        int slot = checkQuery(fruit, FRUITS) + 1;
+        int total = 0;
+        for (Day day : range(from, to)) {
+            total += day.expiring[slot];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sequences of the scans of one fruit and ripeness between
+     * two days, both inclusive, in ascending order, for reading them with
+     * {@link HistoryStore#read}
+     */
+    public synchronized long[] sequences(int fruit, int ripeness, LocalDate from, LocalDate to) {
+        if (fruit < 0 || fruit >= FRUITS || ripeness < 0 || ripeness >= RIPENESS) {
+            throw new IllegalArgumentException("Sequences need a fruit and a ripeness class");
+        }
+        int cell = fruit * RIPENESS + ripeness;
+        List<Day> range = range(from, to);
+        int size = 0;
+        for (Day day : range) {
+            size += day.sequenceCounts[cell];
+        }
+        long[] result = new long[size];
+        int offset = 0;
+        for (Day day : range) {
+            if (day.sequenceCounts[cell] > 0) {
+                System.arraycopy(day.sequences[cell], 0, result, offset, day.sequenceCounts[cell]);
+                offset += day.sequenceCounts[cell];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Local day of a timestamp in this index's time zone
+     */
+    public LocalDate dayOf(long timestampMs) {
+        return LocalDate.ofEpochDay(toEpochDay(timestampMs));
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    private long toEpochDay(long timestampMs) {
+        return Instant.ofEpochMilli(timestampMs).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    private Day day(long epochDay) {
+        Day day = days.get(epochDay);
+        if (day == null) {
+            day = new Day();
+            days.put(epochDay, day);
+        }
+        return day;
+    }
+
+    /**
+     * Days with data in the range. Looks each day up when the range is shorter
+     * than the history, and filters the known days otherwise.
+     */
+    private List<Day> range(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        List<Day> result = new ArrayList<>();
+        if (last < first) {
+            return result;
+        }
+        if (last - first < days.size()) {
+            for (long epochDay = first; epochDay <= last; epochDay++) {
+                Day day = days.get(epochDay);
+                if (day != null) {
+                    result.add(day);
+                }
+            }
+        } else {
+            for (Map.Entry<Long, Day> entry : days.entrySet()) {
+                if (entry.getKey() >= first && entry.getKey() <= last) {
+                    result.add(entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int cell(int fruit, int ripeness) {
+        return (fruit + 1) * (RIPENESS + 1) + ripeness + 1;
+    }
+
+    private static int valid(int index, int classes) {
+        return index >= 0 && index < classes ? index : ANY;
+    }
+
+    private static int checkQuery(int index, int classes) {
+        if (index < ANY || index >= classes) {
+            throw new IllegalArgumentException("Unknown class index " + index);
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return recordCount + " records over " + days.size() + " days";
+    }
+}
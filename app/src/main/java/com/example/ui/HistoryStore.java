@@ -0,0 +1,832 @@
+package com.example.ui;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only classification history. Fixed-width records are appended to
+ * the active segment file, which is sealed and replaced by a new one every
+ * segmentRecords appends. Every record carries its own CRC32, so a torn write
+ * at the end of the active segment is truncated on open and a damaged record
+ * anywhere else is skipped without losing its neighbours.
+ * <p>
+ * Appends are a single positional write of one record and never wait on
+ * fsync, replay or compaction; call {@link #sync()} for durability. Sealed
+ * segments are compacted on a background thread: segments whose records are
+ * all past the retention period are deleted, and runs of small segments are
+ * merged into one, so the number of files and the replay cost stay bounded.
+ */
+public class HistoryStore implements Closeable {
+    private static final String TAG = "HistoryStore";
+
+    public static final int DEFAULT_SEGMENT_RECORDS = 4096;
+    public static final long DEFAULT_RETENTION_MS = 365L * 24 * 60 * 60 * 1000;
+
+    static final int MAGIC = 0x46524853; // "FRHS"
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    // Small sealed segments merged by a background compaction
+    static final int COMPACTION_TRIGGER = 4;
+    // Merged segments stop growing past this many segments' worth of records
+    private static final int MAX_MERGED_SEGMENTS = 16;
+    private static final int REPLAY_CHUNK_RECORDS = 512;
+
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String COMPACTION_FILE = "compact.tmp";
+
+    /**
+     * Receives records during a replay. The record instance is reused between
+     * calls, copy it to keep it. Visitors must not append to the store.
+     */
+    public interface Visitor {
+        void visit(ClassificationRecord record);
+    }
+
+    /**
+     * An immutable segment file. Appended segments hold consecutive sequences;
+     * merged ones have gaps and store the last sequence they cover in the header.
+     * The file is deleted when its last reference is released: one is held by
+     * the store while the segment is live, one by each replay or read using it.
+     */
+    static final class Segment {
+        final File file;
+        final long firstSequence;
+        final long lastSequence;
+        final int generation;
+        final int recordCount;
+        final AtomicInteger references;
+
+        Segment(File file, long firstSequence, long lastSequence, int generation, int recordCount) {
+            this(file, firstSequence, lastSequence, generation, recordCount, new AtomicInteger(1));
+        }
+
+        Segment(File file, long firstSequence, long lastSequence, int generation, int recordCount,
+                AtomicInteger references) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+            this.generation = generation;
+            this.recordCount = recordCount;
+            this.references = references;
+        }
+
+        boolean covers(Segment other) {
+            return generation > other.generation
+                    && firstSequence <= other.firstSequence && other.lastSequence <= lastSequence;
+        }
+    }
+
+    /**
+     * Reads segments in chunks, checking every record. Skips records whose
+     * sequence was already seen, which happens when a crash interrupted a
+     * compaction after the merged segment was written.
+     */
+    private static final class Scanner {
+        final ByteBuffer chunk = ByteBuffer.allocate(REPLAY_CHUNK_RECORDS * ClassificationRecord.SIZE);
+        final CRC32 crc = new CRC32();
+        final ClassificationRecord record = new ClassificationRecord();
+        long lastSequence;
+        int corruptCount;
+        // Slots up to and including the last valid record of the last scanned file
+        int validSlots;
+
+        void scan(File file, int recordCount, Visitor visitor) throws IOException {
+            validSlots = 0;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                int slot = 0;
+                while (slot < recordCount) {
+                    int wanted = Math.min(REPLAY_CHUNK_RECORDS, recordCount - slot);
+                    chunk.clear();
+                    chunk.limit(wanted * ClassificationRecord.SIZE);
+                    long position = HEADER_SIZE + (long) slot * ClassificationRecord.SIZE;
+                    while (chunk.hasRemaining()) {
+                        if (channel.read(chunk, position + chunk.position()) < 0) {
+                            break;
+                        }
+                    }
+                    chunk.flip();
+
+                    int read = chunk.remaining() / ClassificationRecord.SIZE;
+                    for (int i = 0; i < read; i++) {
+                        if (!record.readFrom(chunk, crc)) {
+                            corruptCount++;
+                            continue;
+                        }
+                        validSlots = slot + i + 1;
+                        if (record.sequence <= lastSequence) {
+                            continue;
+                        }
+                        lastSequence = record.sequence;
+                        if (visitor != null) {
+                            visitor.visit(record);
+                        }
+                    }
+                    slot += read;
+                    if (read < wanted) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private final File directory;
+    private final int segmentRecords;
+    private final long retentionMs;
+    private final DiagnosticLog diagnostics = DiagnosticLog.get();
+
+    // Guards the segment list and the active file; appends only take it to roll over,
+    // replays and reads only to pin the segments they use
+    private final ReentrantReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private volatile List<Segment> sealed;
+    private File activeFile;
+    private long activeFirstSequence;
+    private AtomicInteger activeReferences;
+
+    // Active segment state, guarded by this
+    private FileChannel active;
+    private long nextSequence;
+    private boolean closed;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(ClassificationRecord.SIZE);
+    private final CRC32 writeCrc = new CRC32();
+    private volatile int activeRecords;
+
+    private final Object compactionLock = new Object();
+    private final AtomicInteger lastGeneration = new AtomicInteger();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HistoryCompaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long appendCount;
+    private volatile long truncatedRecordCount;
+    private volatile int corruptRecordCount;
+    private volatile long compactionCount;
+    private volatile long droppedRecordCount;
+
+    /**
+     * Opens or creates a store, recovering the active segment after a crash
+     *
+     * @param directory      Directory holding the segment files
+     * @param segmentRecords Records per segment before it is sealed
+     * @param retentionMs    How long records are kept, 0 to keep them forever
+     */
+    public HistoryStore(File directory, int segmentRecords, long retentionMs) throws IOException {
+        if (segmentRecords <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        if (retentionMs < 0) {
+            throw new IllegalArgumentException("Retention must not be negative");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.retentionMs = retentionMs;
+
+        // A compaction that never finished, its inputs are all still there
+        new File(directory, COMPACTION_FILE).delete();
+        List<Segment> segments = readSegments();
+
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.generation == 0 && last.recordCount < segmentRecords) {
+            segments.remove(segments.size() - 1);
+            recoverActive(last, segments);
+        } else {
+            nextSequence = last == null ? 1 : lastValidSequence(segments) + 1;
+            createActive();
+        }
+        sealed = Collections.unmodifiableList(segments);
+        diagnostics.log(DiagnosticLog.INFO, TAG, "Opened {} sealed segments, next sequence {}",
+                segments.size(), nextSequence);
+    }
+
+    public HistoryStore(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS, DEFAULT_RETENTION_MS);
+    }
+
+    /**
+     * Appends a record and assigns its sequence. The record is written to the
+     * OS but not synced, see {@link #sync()}.
+     *
+     * @return The record's sequence
+     */
+    public synchronized long append(ClassificationRecord record) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("History store is closed");
+        }
+        if (activeRecords == segmentRecords) {
+            roll();
+        }
+
+        record.sequence = nextSequence;
+        writeBuffer.clear();
+        record.writeTo(writeBuffer, writeCrc);
+        writeBuffer.flip();
+        long position = HEADER_SIZE + (long) activeRecords * ClassificationRecord.SIZE;
+        while (writeBuffer.hasRemaining()) {
+            position += active.write(writeBuffer, position);
+        }
+
+        nextSequence++;
+        activeRecords++;
+        appendCount++;
+        return record.sequence;
+    }
+
+    /**
+     * Forces every appended record to storage
+     */
+    public synchronized void sync() throws IOException {
+        if (!closed) {
+            active.force(false);
+        }
+    }
+
+    /**
+     * Replays every readable record in sequence order. Runs concurrently with
+     * appends, roll-overs and compactions; appends are only visible if they
+     * finished before the replay started.
+     */
+    public void forEach(Visitor visitor) throws IOException {
+        List<Segment> segments = pin();
+        try {
+            Scanner scanner = new Scanner();
+            for (Segment segment : segments) {
+                scanner.scan(segment.file, segment.recordCount, visitor);
+            }
+            corruptRecordCount = scanner.corruptCount;
+        } finally {
+            unpin(segments);
+        }
+    }
+
+    /**
+     * Takes a reference to every live segment, so compaction leaves their
+     * files in place until unpin. The active segment comes last, with the
+     * records appended so far.
+     */
+    private List<Segment> pin() {
+        segmentsLock.readLock().lock();
+        try {
+            List<Segment> segments = new ArrayList<>(sealed.size() + 1);
+            segments.addAll(sealed);
+            int records = activeRecords;
+            segments.add(new Segment(activeFile, activeFirstSequence, activeFirstSequence + records - 1, 0,
+                    records, activeReferences));
+            for (Segment segment : segments) {
+                segment.references.incrementAndGet();
+            }
+            return segments;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    private void unpin(List<Segment> segments) {
+        for (Segment segment : segments) {
+            release(segment);
+        }
+    }
+
+    private void release(Segment segment) {
+        if (segment.references.decrementAndGet() == 0) {
+            delete(segment.file);
+        }
+    }
+
+    /**
+     * Reads one record by sequence. Appended segments hold consecutive
+     * sequences, so the record's offset is computed; merged segments are
+     * binary searched, which works because records are sorted and fixed width.
+     * The segment is opened once per lookup and every probe reuses one buffer.
+     *
+     * @return False if no readable record has the sequence, e.g. because it
+     * expired, or a damaged record was in the way of the search. The
+     * contents of into are undefined then.
+     */
+    public boolean read(long sequence, ClassificationRecord into) throws IOException {
+        List<Segment> segments = pin();
+        try {
+            Segment active = segments.get(segments.size() - 1);
+            if (sequence >= active.firstSequence) {
+                return readRecord(active, sequence, into);
+            }
+
+            int low = 0;
+            int high = segments.size() - 2;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (segments.get(middle).firstSequence <= sequence) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (high < 0 || sequence < segments.get(low).firstSequence
+                    || sequence > segments.get(low).lastSequence) {
+                return false;
+            }
+
+            return readRecord(segments.get(low), sequence, into);
+        } finally {
+            unpin(segments);
+        }
+    }
+
+    private static boolean readRecord(Segment segment, long sequence, ClassificationRecord into) throws IOException {
+        if (segment.recordCount == 0) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(ClassificationRecord.SIZE);
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+            if (segment.generation == 0) {
+                return readSlot(channel, buffer, crc, sequence - segment.firstSequence, segment.recordCount,
+                        sequence, into) == 0;
+            }
+            long first = 0;
+            long last = segment.recordCount - 1;
+            while (first <= last) {
+                long middle = (first + last) >>> 1;
+                int comparison = readSlot(channel, buffer, crc, middle, segment.recordCount, sequence, into);
+                if (comparison == 0) {
+                    return true;
+                } else if (comparison == Integer.MIN_VALUE) {
+                    return false;
+                } else if (comparison < 0) {
+                    first = middle + 1;
+                } else {
+                    last = middle - 1;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads the record in a slot and compares its sequence with the wanted one
+     *
+     * @return 0 on a match, the sign of the comparison otherwise, or
+     * Integer.MIN_VALUE if the slot does not hold a readable record
+     */
+    private static int readSlot(FileChannel channel, ByteBuffer buffer, CRC32 crc, long slot, int recordCount,
+                                long sequence, ClassificationRecord into) throws IOException {
+        if (slot < 0 || slot >= recordCount) {
+            return Integer.MIN_VALUE;
+        }
+        buffer.clear();
+        long position = HEADER_SIZE + slot * ClassificationRecord.SIZE;
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // Keep reading until the record is complete
+        }
+        buffer.flip();
+        if (buffer.remaining() < ClassificationRecord.SIZE || !into.readFrom(buffer, crc)) {
+            return Integer.MIN_VALUE;
+        }
+        return Long.compare(into.sequence, sequence);
+    }
+
+    /**
+     * Seals the active segment and starts a new one. Sealed segments are
+     * synced here, once per segment, so {@link #sync()} only has to force the
+     * active one.
+     */
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        Segment segment = new Segment(activeFile, activeFirstSequence, nextSequence - 1, 0, activeRecords,
+                activeReferences);
+
+        segmentsLock.writeLock().lock();
+        try {
+            List<Segment> segments = new ArrayList<>(sealed);
+            segments.add(segment);
+            sealed = Collections.unmodifiableList(segments);
+            createActive();
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+
+        try {
+            compactor.execute(() -> {
+                try {
+                    compact(System.currentTimeMillis(), COMPACTION_TRIGGER);
+                } catch (IOException e) {
+                    diagnostics.log(DiagnosticLog.WARN, TAG, "Compaction failed: {}", String.valueOf(e.getMessage()));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closing, the next open compacts instead
+        }
+    }
+
+    /**
+     * Deletes expired segments and merges every run of two or more small
+     * sealed segments at the end of the history
+     *
+     * @return The number of records dropped
+     */
+    public int compact(long nowMs) throws IOException {
+        return compact(nowMs, 2);
+    }
+
+    private int compact(long nowMs, int minMergeSegments) throws IOException {
+        synchronized (compactionLock) {
+            List<Segment> segments = sealed;
+            long cutoff = retentionMs > 0 ? nowMs - retentionMs : Long.MIN_VALUE;
+
+            // Segments are in time order, so expired ones form a prefix
+            int expired = 0;
+            while (expired < segments.size() && newestTimestamp(segments.get(expired)) < cutoff) {
+                expired++;
+            }
+            int mergeFrom = segments.size();
+            while (mergeFrom > expired
+                    && segments.get(mergeFrom - 1).recordCount < segmentRecords * MAX_MERGED_SEGMENTS) {
+                mergeFrom--;
+            }
+            List<Segment> inputs = segments.subList(mergeFrom, segments.size());
+            if (inputs.size() < minMergeSegments) {
+                inputs = Collections.emptyList();
+                mergeFrom = segments.size();
+            }
+            if (expired == 0 && inputs.isEmpty()) {
+                return 0;
+            }
+
+            int dropped = 0;
+            for (int i = 0; i < expired; i++) {
+                dropped += segments.get(i).recordCount;
+            }
+            Segment merged = null;
+            if (!inputs.isEmpty()) {
+                int[] kept = new int[1];
+                merged = merge(inputs, cutoff, kept);
+                for (Segment input : inputs) {
+                    dropped += input.recordCount;
+                }
+                dropped -= kept[0];
+            }
+
+            segmentsLock.writeLock().lock();
+            try {
+                List<Segment> current = sealed;
+                List<Segment> replaced = new ArrayList<>(current.subList(expired, mergeFrom));
+                if (merged != null) {
+                    replaced.add(merged);
+                }
+                // Segments sealed while merging come after the inputs
+                replaced.addAll(current.subList(segments.size(), current.size()));
+                sealed = Collections.unmodifiableList(replaced);
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+
+            // Replays still reading the old segments delete them when they finish
+            for (int i = 0; i < expired; i++) {
+                release(segments.get(i));
+            }
+            for (Segment input : inputs) {
+                release(input);
+            }
+
+            compactionCount++;
+            droppedRecordCount += dropped;
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Compacted {} expired and {} merged segments, dropped {}",
+                    expired, inputs.size(), dropped);
+            return dropped;
+        }
+    }
+
+    /**
+     * Writes the unexpired, readable records of consecutive segments into one
+     * new segment, or returns null if none are left
+     */
+    private Segment merge(List<Segment> inputs, long cutoff, int[] kept) throws IOException {
+        File temp = new File(directory, COMPACTION_FILE);
+        long firstSequence = inputs.get(0).firstSequence;
+        long lastSequence = inputs.get(inputs.size() - 1).lastSequence;
+
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out, lastSequence);
+            ByteBuffer buffer = ByteBuffer.allocate(REPLAY_CHUNK_RECORDS * ClassificationRecord.SIZE);
+            CRC32 crc = new CRC32();
+            IOException[] failure = new IOException[1];
+
+            Scanner scanner = new Scanner();
+            for (Segment input : inputs) {
+                scanner.scan(input.file, input.recordCount, record -> {
+                    if (record.timestampMs < cutoff || failure[0] != null) {
+                        return;
+                    }
+                    if (!buffer.hasRemaining()) {
+                        failure[0] = flush(out, buffer);
+                    }
+                    record.writeTo(buffer, crc);
+                    kept[0]++;
+                });
+            }
+            if (failure[0] == null) {
+                failure[0] = flush(out, buffer);
+            }
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        if (kept[0] == 0) {
+            temp.delete();
+            return null;
+        }
+        int generation = lastGeneration.incrementAndGet();
+        File file = segmentFile(firstSequence, generation);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not move compacted segment into place: " + file);
+        }
+        // The inputs are deleted next, the rename has to be durable first
+        BlobStore.syncDirectory(directory);
+        return new Segment(file, firstSequence, lastSequence, generation, kept[0]);
+    }
+
+    private static IOException flush(FileChannel out, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Timestamp of the last readable record, or Long.MIN_VALUE if there is none
+     */
+    private static long newestTimestamp(Segment segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ClassificationRecord.SIZE);
+        CRC32 crc = new CRC32();
+        ClassificationRecord record = new ClassificationRecord();
+        try (FileChannel channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+            for (int slot = segment.recordCount - 1; slot >= 0; slot--) {
+                buffer.clear();
+                long position = HEADER_SIZE + (long) slot * ClassificationRecord.SIZE;
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // Keep reading until the record is complete
+                }
+                buffer.flip();
+                if (buffer.remaining() == ClassificationRecord.SIZE && record.readFrom(buffer, crc)) {
+                    return record.timestampMs;
+                }
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Lists the segment files in replay order and deletes the ones a merged
+     * segment already covers
+     */
+    private List<Segment> readSegments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Segment segment = readSegment(file);
+                if (segment != null) {
+                    segments.add(segment);
+                    lastGeneration.set(Math.max(lastGeneration.get(), segment.generation));
+                }
+            }
+        }
+
+        List<Segment> live = new ArrayList<>();
+        for (Segment segment : segments) {
+            boolean covered = false;
+            for (Segment other : segments) {
+                covered |= other.covers(segment);
+            }
+            if (covered) {
+                delete(segment.file);
+            } else {
+                live.add(segment);
+            }
+        }
+        live.sort((a, b) -> a.firstSequence != b.firstSequence
+                ? Long.compare(a.firstSequence, b.firstSequence)
+                : Integer.compare(b.generation, a.generation));
+        return live;
+    }
+
+    private Segment readSegment(File file) throws IOException {
+        String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        String[] parts = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()).split("-");
+        long firstSequence;
+        int generation;
+        try {
+            firstSequence = Long.parseLong(parts[0]);
+            generation = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            diagnostics.log(DiagnosticLog.WARN, TAG, "Ignoring unexpected file {}", name);
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE && generation == 0) {
+            // Crashed while creating the segment, before any record was written
+            delete(file);
+            return null;
+        }
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getShort() != FORMAT_VERSION
+                || header.getShort() != ClassificationRecord.SIZE) {
+            throw new IOException("Unsupported history segment " + name);
+        }
+        long coveredSequence = header.getLong();
+
+        int recordCount = (int) ((file.length() - HEADER_SIZE) / ClassificationRecord.SIZE);
+        long lastSequence = generation == 0 ? firstSequence + recordCount - 1 : coveredSequence;
+        return new Segment(file, firstSequence, lastSequence, generation, recordCount);
+    }
+
+    /**
+     * Reopens the newest appended segment for writing. Everything after its
+     * last valid record is a torn write and is cut off.
+     */
+    private void recoverActive(Segment segment, List<Segment> sealedSegments) throws IOException {
+        Scanner scanner = new Scanner();
+        scanner.scan(segment.file, segment.recordCount, null);
+        truncatedRecordCount = segment.recordCount - scanner.validSlots;
+
+        activeFile = segment.file;
+        activeFirstSequence = segment.firstSequence;
+        activeReferences = segment.references;
+        active = FileChannel.open(segment.file.toPath(), StandardOpenOption.WRITE);
+        active.truncate(HEADER_SIZE + (long) scanner.validSlots * ClassificationRecord.SIZE);
+        activeRecords = scanner.validSlots;
+        long previous = sealedSegments.isEmpty() ? 0 : lastValidSequence(sealedSegments);
+        nextSequence = Math.max(segment.firstSequence + scanner.validSlots, previous + 1);
+        if (truncatedRecordCount > 0) {
+            diagnostics.log(DiagnosticLog.WARN, TAG, "Truncated {} torn records from {}",
+                    truncatedRecordCount, segment.recordCount);
+        }
+    }
+
+    private static long lastValidSequence(List<Segment> segments) throws IOException {
+        Segment last = segments.get(segments.size() - 1);
+        Scanner scanner = new Scanner();
+        scanner.scan(last.file, last.recordCount, null);
+        return Math.max(last.lastSequence, scanner.lastSequence);
+    }
+
+    private void createActive() throws IOException {
+        activeFile = segmentFile(nextSequence, 0);
+        activeFirstSequence = nextSequence;
+        activeReferences = new AtomicInteger(1);
+        active = FileChannel.open(activeFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writeHeader(active, 0);
+        // Once per segment, so a crash can never leave records behind a missing header or file
+        active.force(true);
+        BlobStore.syncDirectory(directory);
+        activeRecords = 0;
+    }
+
+    private static void writeHeader(FileChannel channel, long coveredSequence) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) ClassificationRecord.SIZE).putLong(coveredSequence);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(HEADER_SIZE);
+    }
+
+    private File segmentFile(long firstSequence, int generation) {
+        return new File(directory, String.format(Locale.US, "%s%020d-%d%s",
+                SEGMENT_PREFIX, firstSequence, generation, SEGMENT_SUFFIX));
+    }
+
+    private void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            diagnostics.log(DiagnosticLog.WARN, TAG, "Could not delete {}", file.getName());
+        }
+    }
+
+    /**
+     * Waits for a running compaction, then syncs and closes the active segment
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            active.force(false);
+            active.close();
+        }
+    }
+
+    /**
+     * Record slots on disk, including damaged ones not yet compacted away
+     */
+    public int getRecordCount() {
+        segmentsLock.readLock().lock();
+        try {
+            int count = activeRecords;
+            for (Segment segment : sealed) {
+                count += segment.recordCount;
+            }
+            return count;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        return sealed.size() + 1;
+    }
+
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public long getAppendCount() {
+        return appendCount;
+    }
+
+    /**
+     * Torn records cut off the active segment when the store was opened
+     */
+    public long getTruncatedRecordCount() {
+        return truncatedRecordCount;
+    }
+
+    /**
+     * Damaged records skipped by the last replay
+     */
+    public int getCorruptRecordCount() {
+        return corruptRecordCount;
+    }
+
+    public long getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Expired and damaged records removed by compactions
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecordCount;
+    }
+
+    @Override
+    public String toString() {
+        return "records=" + getRecordCount() + " in " + getSegmentCount() + " segments, appended=" + appendCount
+                + ", truncated=" + truncatedRecordCount + ", corrupt=" + corruptRecordCount
+                + ", compactions=" + compactionCount + ", dropped=" + droppedRecordCount;
+    }
+}
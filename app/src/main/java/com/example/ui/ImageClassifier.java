@@ -3,9 +3,9 @@ package com.example.ui;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
-import android.util.Log;
 
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -13,76 +13,178 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 public class ImageClassifier {
     private static final String TAG = "ImageClassifier";
-    private static final int INPUT_SIZE = 224;
+    public static final int INPUT_SIZE = 224;
     private static final int PIXEL_SIZE = 3;
+    private static final int IMAGE_VALUES = INPUT_SIZE * INPUT_SIZE * PIXEL_SIZE;
+
+    // Upper bound for a single interpreter invocation in classifyBatch
+    public static final int MAX_BATCH_SIZE = 64;
+    private static final int DEFAULT_BATCH_SIZE = 16;
 
     // Define number of output classes
-    private static final int NUM_FRUIT_CLASSES = 3;    // Banana, Mango, Tomato
-    private static final int NUM_RIPENESS_CLASSES = 4; // OverRipe, Ripe, Unripe, VeryRipe
+    public static final int NUM_FRUIT_CLASSES = 3;    // Banana, Mango, Tomato
+    public static final int NUM_RIPENESS_CLASSES = 4; // OverRipe, Ripe, Unripe, VeryRipe
 
     // Combined model path
     private static final String MODEL_PATH = "FinalModel.tflite";
 
     // Class names mappings
-    private final String[] fruitClasses = {"Banana", "Mango", "Tomato"};
-    private final String[] ripenessClasses = {"OverRipe", "Ripe", "Unripe", "VeryRipe"};
+    private static final String[] FRUIT_CLASSES = {"Banana", "Mango", "Tomato"};
+    private static final String[] RIPENESS_CLASSES = {"OverRipe", "Ripe", "Unripe", "VeryRipe"};
 
     private Interpreter interpreter;
+    private ModelRunner modelRunner;
     private ByteBuffer inputBuffer;
     private boolean isInitialized = false;
-    private int preprocessingMethod = 4; // Use Method 4 (no preprocessing) - KEEP THIS AS 4
+    private NormalizationKernel normalizationKernel = NormalizationKernel.RAW; // No preprocessing - KEEP THIS AS RAW
+    private boolean verboseLogging = BuildConfig.DEBUG;
+    private final DiagnosticLog diagnostics = DiagnosticLog.get();
+    private ClassificationCache resultCache;
+    private PipelineMetrics metrics = new PipelineMetrics();
+    private YuvConverter yuvConverter;
+    private TestTimeAugmentation augmentation;
+    private ImageResizer augmentationResizer;
+    private int[] augmentationPixels;
+    private List<CombinedClassificationResult> augmentationResults;
+    private final YuvConverter.Planes yuvPlanes = new YuvConverter.Planes();
+    private String modelId;
+    // Result cache key: model id and normalization kernel, since both change the results
+    private String cacheId;
+
+    // Scratch state owned by the classifier and reused on every call so that
+    // steady-state classification does not allocate
+    private final int[] pixels = new int[INPUT_SIZE * INPUT_SIZE];
+    private final float[] fruitLogits = new float[NUM_FRUIT_CLASSES];
+    private final float[] ripenessLogits = new float[NUM_RIPENESS_CLASSES];
+    private ByteBuffer fruitOutput;
+    private ByteBuffer ripenessOutput;
+
+    // Tensor formats reported by the model, used to pick the input adapter
+    // and to dequantize the output heads
+    private TensorFormat inputFormat;
+    private TensorFormat fruitFormat;
+    private TensorFormat ripenessFormat;
+    private InputTensorAdapter inputAdapter;
+    private int imageBytes;
+    private final ImageResizer inputResizer = new ImageResizer(INPUT_SIZE, INPUT_SIZE);
+    private final BitmapRows bitmapRows = new BitmapRows();
+
+    // Batch state, the batch input buffer is only allocated on first use
+    private int maxBatchSize = DEFAULT_BATCH_SIZE;
+    private int currentBatchSize = 1;
+    private ByteBuffer batchInputBuffer;
+    private ByteBuffer batchInput;
+
+    /**
+     * Supplies the 224x224 ARGB pixels of one image in a batch
+     */
+    private interface PixelSource {
+        void readPixels(int index, int[] dst);
+    }
 
     public ImageClassifier(AssetManager assetManager) throws IOException {
-        try {
-            Log.d(TAG, "Loading combined model: " + MODEL_PATH);
-            MappedByteBuffer modelBuffer = loadModelFile(assetManager, MODEL_PATH);
+        this(loadModel(assetManager), InterpreterConfig.DEFAULT);
+    }
 
+    public ImageClassifier(MappedByteBuffer modelBuffer, int numThreads) throws IOException {
+        this(modelBuffer, InterpreterConfig.DEFAULT.withNumThreads(numThreads));
+    }
+
+    /**
+     * Creates a classifier on an already loaded model. Several classifiers can
+     * share the same read-only model buffer, each with its own interpreter.
+     *
+     * @param modelBuffer The memory-mapped model from loadModel
+     * @param config      Interpreter threads and delegate settings
+     */
+    public ImageClassifier(MappedByteBuffer modelBuffer, InterpreterConfig config) throws IOException {
+        try {
             Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(4);
+            options.setNumThreads(config.getNumThreads());
+            options.setUseXNNPACK(config.isUseXnnpack());
+            options.setAllowFp16PrecisionForFp32(config.isAllowFp16());
 
             interpreter = new Interpreter(modelBuffer, options);
 
-            // Verify model has two output tensors (fruit and ripeness)
-            // Replace lines 52-55 with:
+            // Verify the model has a fruit and a ripeness output with the expected class counts
             int outputCount = interpreter.getOutputTensorCount();
-            Log.d(TAG, "Model has " + outputCount + " output tensors instead of expected 2");
-// Either adapt to this count or throw a more informative error
-            // Verify output tensor shapes
-            int fruitOutputClasses = interpreter.getOutputTensor(0).shape()[1];
-            int ripenessOutputClasses = interpreter.getOutputTensor(1).shape()[1];
-
-            Log.d(TAG, "Fruit output classes: " + fruitOutputClasses);
-            Log.d(TAG, "Ripeness output classes: " + ripenessOutputClasses);
-
-            if (fruitOutputClasses != NUM_FRUIT_CLASSES || ripenessOutputClasses != NUM_RIPENESS_CLASSES) {
-                throw new IOException("Model output dimensions do not match expected classes");
+            if (outputCount != 2) {
+                throw new IOException("Model has " + outputCount + " output tensors, expected 2 (fruit, ripeness)");
+            }
+            int[] fruitShape = interpreter.getOutputTensor(0).shape();
+            int[] ripenessShape = interpreter.getOutputTensor(1).shape();
+            if (fruitShape[1] != NUM_FRUIT_CLASSES || ripenessShape[1] != NUM_RIPENESS_CLASSES) {
+                throw new IOException("Model output dimensions do not match expected classes: fruit "
+                        + Arrays.toString(fruitShape) + ", ripeness " + Arrays.toString(ripenessShape));
             }
 
-            // Create input buffer (4 bytes per float)
-            inputBuffer = ByteBuffer.allocateDirect(1 * INPUT_SIZE * INPUT_SIZE * PIXEL_SIZE * 4);
-            inputBuffer.order(ByteOrder.nativeOrder());
+            modelRunner = new TfLiteModelRunner(interpreter);
+            allocateBuffers();
 
-            Log.d(TAG, "Combined model loaded successfully!");
-            Log.d(TAG, "Input shape: " + Arrays.toString(interpreter.getInputTensor(0).shape()));
-            Log.d(TAG, "Fruit output shape: " + Arrays.toString(interpreter.getOutputTensor(0).shape()));
-            Log.d(TAG, "Ripeness output shape: " + Arrays.toString(interpreter.getOutputTensor(1).shape()));
-            Log.d(TAG, "Using preprocessing method: " + preprocessingMethod);
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Combined model loaded successfully!");
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Input shape: {}",
+                    Arrays.toString(interpreter.getInputTensor(0).shape()));
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Validated 2 output tensors: {}",
+                    "fruit " + Arrays.toString(fruitShape) + ", ripeness " + Arrays.toString(ripenessShape));
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Using preprocessing method: {}", normalizationKernel.getName());
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Interpreter config: {}", config.toString());
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Input format: {}",
+                    inputFormat + ", output formats: " + fruitFormat + ", " + ripenessFormat);
 
             isInitialized = true;
 
         } catch (Exception e) {
-            Log.e(TAG, "Error initializing TFLite: " + e.getMessage(), e);
+            diagnostics.log(DiagnosticLog.ERROR, TAG, "Error initializing TFLite: {}", String.valueOf(e));
             throw new IOException("Failed to initialize Combined TFLite", e);
         }
     }
 
-    private MappedByteBuffer loadModelFile(AssetManager assetManager, String modelPath) throws IOException {
+    /**
+     * Creates a classifier on top of an existing model runner. Used to exercise
+     * the classification path without a TFLite interpreter.
+     */
+    ImageClassifier(ModelRunner modelRunner) {
+        this.modelRunner = modelRunner;
+        allocateBuffers();
+        isInitialized = true;
+    }
+
+    private void allocateBuffers() {
+        inputFormat = modelRunner.getInputFormat();
+        fruitFormat = modelRunner.getOutputFormat(0);
+        ripenessFormat = modelRunner.getOutputFormat(1);
+        inputAdapter = InputTensorAdapter.create(inputFormat, normalizationKernel);
+
+        // Create input buffer sized for the input element type
+        imageBytes = IMAGE_VALUES * inputFormat.bytesPerValue();
+        inputBuffer = ByteBuffer.allocateDirect(imageBytes);
+        inputBuffer.order(ByteOrder.nativeOrder());
+
+        allocateOutputBuffers();
+    }
+
+    private void allocateOutputBuffers() {
+        fruitOutput = ByteBuffer.allocateDirect(maxBatchSize * NUM_FRUIT_CLASSES * fruitFormat.bytesPerValue())
+                .order(ByteOrder.nativeOrder());
+        ripenessOutput = ByteBuffer.allocateDirect(maxBatchSize * NUM_RIPENESS_CLASSES * ripenessFormat.bytesPerValue())
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Memory-maps the combined model from the app assets
+     */
+    public static MappedByteBuffer loadModel(AssetManager assetManager) throws IOException {
+        DiagnosticLog.get().log(DiagnosticLog.DEBUG, TAG, "Loading combined model: {}", MODEL_PATH);
+        return loadModelFile(assetManager, MODEL_PATH);
+    }
+
+    private static MappedByteBuffer loadModelFile(AssetManager assetManager, String modelPath) throws IOException {
         AssetFileDescriptor fileDescriptor = assetManager.openFd(modelPath);
         FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
         FileChannel fileChannel = inputStream.getChannel();
@@ -97,6 +199,35 @@ public class ImageClassifier {
         return buffer;
     }
 
+    /**
+     * Runs the model on a blank mid-gray image so the first real
+     * classification does not pay for tensor allocation and first-run kernel
+     * setup. Warm-up runs are not recorded in the pipeline metrics.
+     *
+     * @param runs Number of interpreter invocations
+     * @return Duration of the first run in nanoseconds
+     */
+    public long warmUp(int runs) {
+        if (!isInitialized) {
+            throw new IllegalStateException("Classifier not initialized");
+        }
+
+        ensureBatchSize(1);
+        Arrays.fill(pixels, 0xFF808080);
+        long firstRun = 0;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            inputBuffer.rewind();
+            inputAdapter.write(pixels, pixels.length, inputBuffer);
+            inputBuffer.rewind();
+            modelRunner.run(inputBuffer, fruitOutput, ripenessOutput);
+            if (i == 0) {
+                firstRun = System.nanoTime() - start;
+            }
+        }
+        return firstRun;
+    }
+
     /**
      * Classifies an image and returns both fruit type and ripeness probabilities
      *
@@ -104,114 +235,311 @@ public class ImageClassifier {
      * @return A classification result with fruit and ripeness probabilities
      */
     public CombinedClassificationResult classifyImage(Bitmap bitmap) {
+        return classifyImage(bitmap, new CombinedClassificationResult());
+    }
+
+    /**
+     * Classifies an image into a caller-owned result. The probability arrays of
+     * the result are reused when they already have the right length, so once
+     * warmed up (and with verbose logging off) repeated calls allocate nothing.
+     *
+     * @param bitmap The input image
+     * @param result The result to fill
+     * @return The same result instance
+     */
+    public CombinedClassificationResult classifyImage(Bitmap bitmap, CombinedClassificationResult result) {
         if (!isInitialized) {
             throw new IllegalStateException("Classifier not initialized");
         }
 
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, INPUT_SIZE, INPUT_SIZE, true);
+        long start = System.nanoTime();
+        scaleToInput(bitmap, pixels);
+        metrics.record(PipelineMetrics.Stage.RESIZE, System.nanoTime() - start);
+        if (resultCache == null) {
+            return augmentIfUncertain(bitmap, classifyPixels(pixels, result));
+        }
 
-        // Process image
-        inputBuffer.rewind();
-        int[] pixels = new int[INPUT_SIZE * INPUT_SIZE];
-        resizedBitmap.getPixels(pixels, 0, INPUT_SIZE, 0, 0, INPUT_SIZE, INPUT_SIZE);
-
-        // Process pixels with the chosen preprocessing method
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-
-            // Extract RGB values
-            float r = ((pixel >> 16) & 0xFF);
-            float g = ((pixel >> 8) & 0xFF);
-            float b = (pixel & 0xFF);
-
-            // Apply preprocessing based on selected method
-            switch (preprocessingMethod) {
-                case 1: // [0,1] scaling
-                    r /= 255.0f;
-                    g /= 255.0f;
-                    b /= 255.0f;
-                    break;
-                case 2: // [-1,1] scaling
-                    r = r / 127.5f - 1.0f;
-                    g = g / 127.5f - 1.0f;
-                    b = b / 127.5f - 1.0f;
-                    break;
-                case 3: // ImageNet mean subtraction
-                    r = (r - 123.68f) / 255.0f;
-                    g = (g - 116.78f) / 255.0f;
-                    b = (b - 103.94f) / 255.0f;
-                    break;
-                case 4: // No preprocessing
-                    // Keep raw pixel values
-                    break;
+        // Skip inference for images that look like one classified recently
+        long hash = PerceptualHash.dHash(pixels, INPUT_SIZE, INPUT_SIZE);
+        if (resultCache.get(cacheId, hash, result)) {
+            metrics.increment(PipelineMetrics.Counter.CACHE_HITS);
+            return result;
+        }
+        metrics.increment(PipelineMetrics.Counter.CACHE_MISSES);
+        augmentIfUncertain(bitmap, classifyPixels(pixels, result));
+        resultCache.put(cacheId, hash, result);
+        return result;
+    }
+
+    /**
+     * Re-classifies augmented views of the image in one batched inference
+     * when the first pass is not confident enough, and merges them into the
+     * result. The interpreter is only resized when augmentation triggers:
+     * one resizeInput and allocateTensors to the view count here, and one
+     * back to batch size 1 on the next single-image call. Confident images
+     * never pay for it.
+     */
+    private CombinedClassificationResult augmentIfUncertain(Bitmap bitmap, CombinedClassificationResult result) {
+        if (augmentation == null || !augmentation.shouldAugment(result)) {
+            return result;
+        }
+
+        int sourceSize = TestTimeAugmentation.sourceSize(INPUT_SIZE);
+        if (augmentationResizer == null) {
+            augmentationResizer = new ImageResizer(sourceSize, sourceSize);
+            augmentationPixels = new int[sourceSize * sourceSize];
+            augmentationResults = new ArrayList<>(TestTimeAugmentation.NUM_VIEWS);
+            for (int i = 0; i < TestTimeAugmentation.NUM_VIEWS; i++) {
+                augmentationResults.add(new CombinedClassificationResult());
             }
+        }
+        augmentationResizer.setSource(bitmap.getWidth(), bitmap.getHeight());
+        augmentationResizer.resize(bitmapRows.of(bitmap), augmentationPixels);
+        bitmapRows.of(null);
+
+        List<CombinedClassificationResult> views = augmentationResults;
+        classifyBatch(views.size(), (index, dst) ->
+                TestTimeAugmentation.extractView(augmentationPixels, sourceSize, index, dst, INPUT_SIZE), views);
+        augmentation.combine(result, views, result);
+        if (verboseLogging) {
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Low confidence, merged {} augmented views, ripeness confidence now {}%",
+                    views.size(), Math.round(result.ripenessConfidence));
+        }
+        return result;
+    }
 
-            // Store values in RGB order
-            inputBuffer.putFloat(r);
-            inputBuffer.putFloat(g);
-            inputBuffer.putFloat(b);
+    /**
+     * Classifies an image given as 224x224 ARGB pixels
+     *
+     * @param argbPixels The input pixels in row-major order
+     * @param result     The result to fill
+     * @return The same result instance
+     */
+    CombinedClassificationResult classifyPixels(int[] argbPixels, CombinedClassificationResult result) {
+        if (!isInitialized) {
+            throw new IllegalStateException("Classifier not initialized");
         }
 
-        // Prepare output buffers
-        float[][] fruitOutput = new float[1][NUM_FRUIT_CLASSES];
-        float[][] ripenessOutput = new float[1][NUM_RIPENESS_CLASSES];
+        ensureBatchSize(1);
+
+        // Normalize pixels with the chosen kernel, written in RGB order
+        long start = System.nanoTime();
+        inputBuffer.rewind();
+        inputAdapter.write(argbPixels, argbPixels.length, inputBuffer);
+        metrics.record(PipelineMetrics.Stage.PREPROCESS, System.nanoTime() - start);
+
+        runModel(inputBuffer);
+        return readResult(0, result);
+    }
+
+    /**
+     * Classifies a YUV_420_888 camera frame. The largest centered square is
+     * rotated upright and resized straight into the input buffer, without an
+     * intermediate bitmap.
+     *
+     * @param image           The camera frame, still owned by the caller
+     * @param rotationDegrees Clockwise rotation that makes the frame upright
+     * @param result          The result to fill
+     * @return The same result instance
+     */
+    public CombinedClassificationResult classifyYuv(android.media.Image image, int rotationDegrees, CombinedClassificationResult result) {
+        android.media.Image.Plane[] planes = image.getPlanes();
+        yuvPlanes.set(planes[0].getBuffer(), planes[0].getRowStride(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride());
+        return classifyYuv(yuvPlanes, image.getWidth(), image.getHeight(), rotationDegrees, result);
+    }
 
-        // Create output map for multiple outputs
-        Map<Integer, Object> outputMap = new HashMap<>();
-        outputMap.put(0, fruitOutput);
-        outputMap.put(1, ripenessOutput);
+    /**
+     * Classifies YUV_420_888 planes, see classifyYuv(Image, int, CombinedClassificationResult)
+     */
+    public CombinedClassificationResult classifyYuv(YuvConverter.Planes planes, int width, int height,
+                                                    int rotationDegrees, CombinedClassificationResult result) {
+        if (!isInitialized) {
+            throw new IllegalStateException("Classifier not initialized");
+        }
+        if (yuvConverter == null) {
+            yuvConverter = new YuvConverter(INPUT_SIZE);
+        }
 
-        // Run inference
+        ensureBatchSize(1);
+        long start = System.nanoTime();
+        yuvConverter.setCenterCrop(width, height, rotationDegrees);
         inputBuffer.rewind();
-        interpreter.runForMultipleInputsOutputs(new Object[]{inputBuffer}, outputMap);
+        yuvConverter.convert(planes, inputAdapter, inputBuffer);
+        metrics.record(PipelineMetrics.Stage.PREPROCESS, System.nanoTime() - start);
 
-        // Log raw outputs
-        Log.d(TAG, "Raw fruit output: " + Arrays.toString(fruitOutput[0]));
-        Log.d(TAG, "Raw ripeness output: " + Arrays.toString(ripenessOutput[0]));
+        runModel(inputBuffer);
+        return readResult(0, result);
+    }
 
-        // Apply softmax to get probabilities
-        float[] fruitProbabilities = softmax(fruitOutput[0]);
-        float[] ripenessProbabilities = softmax(ripenessOutput[0]);
+    /**
+     * Creates an input buffer that can be filled by preprocessInto and run
+     * with classifyPreprocessed, e.g. to prepare the next frame while the
+     * current one is in inference
+     */
+    public ByteBuffer createInputBuffer() {
+        return ByteBuffer.allocateDirect(imageBytes).order(ByteOrder.nativeOrder());
+    }
 
-        // Log probabilities for each class
-        for (int i = 0; i < NUM_FRUIT_CLASSES; i++) {
-            Log.d(TAG, fruitClasses[i] + ": " + String.format("%.2f%%", fruitProbabilities[i] * 100));
+    /**
+     * Creates an input adapter for the current model input format and
+     * normalization, for use on a thread other than the inference thread
+     */
+    public InputTensorAdapter createInputAdapter() {
+        return InputTensorAdapter.create(inputFormat, normalizationKernel);
+    }
+
+    /**
+     * Scales a bitmap to the model input size and copies its ARGB pixels.
+     * Shares the resizer scratch state with classifyImage, so it must not run
+     * concurrently with it.
+     */
+    public void scaleToPixels(Bitmap bitmap, int[] dst) {
+        scaleToInput(bitmap, dst);
+    }
+
+    /**
+     * Runs the model on an input buffer that was already filled with one
+     * preprocessed image
+     */
+    public CombinedClassificationResult classifyPreprocessed(ByteBuffer input, CombinedClassificationResult result) {
+        if (!isInitialized) {
+            throw new IllegalStateException("Classifier not initialized");
         }
-        for (int i = 0; i < NUM_RIPENESS_CLASSES; i++) {
-            Log.d(TAG, ripenessClasses[i] + ": " + String.format("%.2f%%", ripenessProbabilities[i] * 100));
+
+        ensureBatchSize(1);
+        runModel(input);
+        return readResult(0, result);
+    }
+
+    /**
+     * Classifies several images with as few interpreter invocations as
+     * possible. Lists longer than the maximum batch size are split into chunks.
+     *
+     * @param bitmaps The input images
+     * @return One classification result per image, in input order
+     */
+    public List<CombinedClassificationResult> classifyBatch(List<Bitmap> bitmaps) {
+        if (!isInitialized) {
+            throw new IllegalStateException("Classifier not initialized");
         }
 
-        // Find the fruit with the highest probability
-        int maxFruitIdx = 0;
-        float maxFruitProb = fruitProbabilities[0];
-        for (int i = 1; i < fruitProbabilities.length; i++) {
-            if (fruitProbabilities[i] > maxFruitProb) {
-                maxFruitProb = fruitProbabilities[i];
-                maxFruitIdx = i;
-            }
+        return classifyBatch(bitmaps.size(), (index, dst) -> scaleToInput(bitmaps.get(index), dst));
+    }
+
+    /**
+     * Batch variant of classifyPixels
+     */
+    List<CombinedClassificationResult> classifyPixelBatch(List<int[]> images) {
+        if (!isInitialized) {
+            throw new IllegalStateException("Classifier not initialized");
+        }
+
+        return classifyBatch(images.size(), (index, dst) ->
+                System.arraycopy(images.get(index), 0, dst, 0, dst.length));
+    }
+
+    private List<CombinedClassificationResult> classifyBatch(int count, PixelSource source) {
+        List<CombinedClassificationResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new CombinedClassificationResult());
         }
+        classifyBatch(count, source, results);
+        return results;
+    }
 
-        // Find the ripeness with the highest probability
-        int maxRipenessIdx = 0;
-        float maxRipenessProb = ripenessProbabilities[0];
-        for (int i = 1; i < ripenessProbabilities.length; i++) {
-            if (ripenessProbabilities[i] > maxRipenessProb) {
-                maxRipenessProb = ripenessProbabilities[i];
-                maxRipenessIdx = i;
+    /**
+     * Classifies count images into the first count results, reusing them
+     */
+    private void classifyBatch(int count, PixelSource source, List<CombinedClassificationResult> results) {
+        for (int start = 0; start < count; start += maxBatchSize) {
+            int chunk = Math.min(maxBatchSize, count - start);
+            runBatch(source, start, chunk);
+            for (int row = 0; row < chunk; row++) {
+                readResult(row, results.get(start + row));
             }
         }
+    }
+
+    /**
+     * Fills one contiguous input buffer with count images and runs the model once
+     */
+    private void runBatch(PixelSource source, int start, int count) {
+        ensureBatchSize(count);
+
+        ByteBuffer input = count == 1 ? inputBuffer : batchInput(count);
+
+        // Normalize pixels with the chosen kernel, written in RGB order
+        long preprocessStart = System.nanoTime();
+        input.rewind();
+        for (int i = 0; i < count; i++) {
+            source.readPixels(start + i, pixels);
+            inputAdapter.write(pixels, pixels.length, input);
+        }
+        metrics.record(PipelineMetrics.Stage.PREPROCESS, System.nanoTime() - preprocessStart);
 
-        Log.d(TAG, "Predicted fruit: " + fruitClasses[maxFruitIdx] +
-                " with confidence " + String.format("%.2f%%", maxFruitProb * 100));
-        Log.d(TAG, "Predicted ripeness: " + ripenessClasses[maxRipenessIdx] +
-                " with confidence " + String.format("%.2f%%", maxRipenessProb * 100));
+        runModel(input);
+    }
+
+    /**
+     * Runs the interpreter on a filled input buffer
+     */
+    private void runModel(ByteBuffer input) {
+        long start = System.nanoTime();
+        input.rewind();
+        modelRunner.run(input, fruitOutput, ripenessOutput);
+        metrics.record(PipelineMetrics.Stage.INFERENCE, System.nanoTime() - start);
+        metrics.increment(PipelineMetrics.Counter.INVOCATIONS);
+    }
 
-        if (resizedBitmap != bitmap) {
-            resizedBitmap.recycle();
+    private void ensureBatchSize(int count) {
+        if (count != currentBatchSize) {
+            modelRunner.resizeBatch(count);
+            currentBatchSize = count;
         }
+    }
 
-        // Create and return result
-        CombinedClassificationResult result = new CombinedClassificationResult();
+    /**
+     * Returns a view of the batch buffer whose capacity matches the batch
+     * exactly, as the interpreter requires
+     */
+    private ByteBuffer batchInput(int count) {
+        if (batchInputBuffer == null) {
+            batchInputBuffer = ByteBuffer.allocateDirect(maxBatchSize * imageBytes).order(ByteOrder.nativeOrder());
+        }
+        if (batchInput == null || batchInput.capacity() != count * imageBytes) {
+            ByteBuffer view = batchInputBuffer.duplicate();
+            view.position(0).limit(count * imageBytes);
+            batchInput = view.slice().order(ByteOrder.nativeOrder());
+        }
+        return batchInput;
+    }
+
+    /**
+     * Converts one output row into probabilities and predictions
+     */
+    private CombinedClassificationResult readResult(int row, CombinedClassificationResult result) {
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_FRUIT_CLASSES; i++) {
+            fruitLogits[i] = fruitFormat.read(fruitOutput, row * NUM_FRUIT_CLASSES + i);
+        }
+        for (int i = 0; i < NUM_RIPENESS_CLASSES; i++) {
+            ripenessLogits[i] = ripenessFormat.read(ripenessOutput, row * NUM_RIPENESS_CLASSES + i);
+        }
+
+        // Softmax to probabilities, finding the most likely class of each head on the way
+        float[] fruitProbabilities = reuseOrAllocate(result.fruitProbabilities, NUM_FRUIT_CLASSES);
+        float[] ripenessProbabilities = reuseOrAllocate(result.ripenessProbabilities, NUM_RIPENESS_CLASSES);
+        int maxFruitIdx = Postprocessor.softmax(fruitLogits, fruitProbabilities, NUM_FRUIT_CLASSES);
+        int maxRipenessIdx = Postprocessor.softmax(ripenessLogits, ripenessProbabilities, NUM_RIPENESS_CLASSES);
+        float maxFruitProb = fruitProbabilities[maxFruitIdx];
+        float maxRipenessProb = ripenessProbabilities[maxRipenessIdx];
+
+        if (verboseLogging && diagnostics.isLoggable(DiagnosticLog.DEBUG)) {
+            logPrediction(fruitProbabilities, ripenessProbabilities, maxFruitIdx, maxRipenessIdx);
+        }
+
+        // Fill and return result
         result.fruitProbabilities = fruitProbabilities;
         result.ripenessProbabilities = ripenessProbabilities;
         result.fruitIndex = maxFruitIdx;
@@ -219,39 +547,70 @@ public class ImageClassifier {
         result.fruitConfidence = maxFruitProb * 100;
         result.ripenessConfidence = maxRipenessProb * 100;
 
+        metrics.record(PipelineMetrics.Stage.POSTPROCESS, System.nanoTime() - start);
         return result;
     }
 
-    private float[] softmax(float[] logits) {
-        float[] probs = new float[logits.length];
-        float sum = 0.0f;
-
-        // Find max for numerical stability
-        float max = Float.NEGATIVE_INFINITY;
-        for (float val : logits) {
-            max = Math.max(max, val);
+    /**
+     * Scales the bitmap to the model input size with the area-averaging
+     * resizer and writes its ARGB pixels into dst
+     */
+    private void scaleToInput(Bitmap bitmap, int[] dst) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width == INPUT_SIZE && height == INPUT_SIZE) {
+            bitmap.getPixels(dst, 0, INPUT_SIZE, 0, 0, INPUT_SIZE, INPUT_SIZE);
+            return;
         }
 
-        // Calculate exp of shifted logits and sum
-        for (int i = 0; i < logits.length; i++) {
-            probs[i] = (float) Math.exp(logits[i] - max);
-            sum += probs[i];
+        inputResizer.setSource(width, height);
+        inputResizer.resize(bitmapRows.of(bitmap), dst);
+        // Do not keep the caller's bitmap alive
+        bitmapRows.of(null);
+    }
+
+    /**
+     * Lets the resizer read a bitmap a strip of rows at a time, so a
+     * full-resolution photo is never copied whole
+     */
+    private static final class BitmapRows implements ImageResizer.RowSource {
+        private Bitmap bitmap;
+
+        BitmapRows of(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            return this;
         }
 
-        // Normalize
-        for (int i = 0; i < probs.length; i++) {
-            probs[i] /= sum;
+        @Override
+        public void readRows(int left, int top, int width, int rows, int[] dst) {
+            bitmap.getPixels(dst, 0, width, left, top, width, rows);
         }
+    }
 
-        return probs;
+    private void logPrediction(float[] fruitProbabilities, float[] ripenessProbabilities,
+                               int maxFruitIdx, int maxRipenessIdx) {
+        // Recorded as values, formatted later on the log flusher thread
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Raw fruit output", null, fruitLogits);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Raw ripeness output", null, ripenessLogits);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Fruit probabilities (Banana, Mango, Tomato)", null, fruitProbabilities);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Ripeness probabilities (OverRipe, Ripe, Unripe, VeryRipe)",
+                null, ripenessProbabilities);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Predicted fruit: {} with confidence {}%",
+                FRUIT_CLASSES[maxFruitIdx], fruitProbabilities[maxFruitIdx] * 100);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Predicted ripeness: {} with confidence {}%",
+                RIPENESS_CLASSES[maxRipenessIdx], ripenessProbabilities[maxRipenessIdx] * 100);
+    }
+
+    private static float[] reuseOrAllocate(float[] array, int length) {
+        return array != null && array.length == length ? array : new float[length];
     }
 
     /**
      * Get fruit class name from index
      */
-    public String getFruitClassName(int index) {
-        if (index >= 0 && index < fruitClasses.length) {
-            return fruitClasses[index];
+    public static String getFruitClassName(int index) {
+        if (index >= 0 && index < FRUIT_CLASSES.length) {
+            return FRUIT_CLASSES[index];
         }
         return "Unknown";
     }
@@ -259,49 +618,176 @@ public class ImageClassifier {
     /**
      * Get ripeness class name from index
      */
-    public String getRipenessClassName(int index) {
-        if (index >= 0 && index < ripenessClasses.length) {
-            return ripenessClasses[index];
+    public static String getRipenessClassName(int index) {
+        if (index >= 0 && index < RIPENESS_CLASSES.length) {
+            return RIPENESS_CLASSES[index];
         }
         return "Unknown";
     }
 
+    /**
+     * Finds the fruit class named in a produce name such as "Ripe Banana"
+     *
+     * @return The class index, or -1 if no fruit class is named
+     */
+    public static int findFruitClass(String produceName) {
+        return findClass(FRUIT_CLASSES, produceName);
+    }
+
+    /**
+     * Finds the ripeness class named in a produce name such as "Ripe Banana"
+     *
+     * @return The class index, or -1 if no ripeness class is named
+     */
+    public static int findRipenessClass(String produceName) {
+        return findClass(RIPENESS_CLASSES, produceName);
+    }
+
+    private static int findClass(String[] classes, String produceName) {
+        if (produceName == null) {
+            return -1;
+        }
+        // Whole words only, so "OverRipe" is not also read as "Ripe"
+        for (String word : produceName.split("[^A-Za-z]+")) {
+            for (int i = 0; i < classes.length; i++) {
+                if (classes[i].equalsIgnoreCase(word)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the normalization applied to each pixel before inference
+     */
+    public void setNormalizationKernel(NormalizationKernel normalizationKernel) {
+        this.normalizationKernel = normalizationKernel;
+        if (inputFormat != null) {
+            inputAdapter = InputTensorAdapter.create(inputFormat, normalizationKernel);
+        }
+        cacheId = cacheId(modelId, normalizationKernel);
+    }
+
+    /**
+     * Puts a result cache in front of classifyImage. The model id and the
+     * normalization kernel key the results, so results of different models
+     * or kernels stay apart when a cache is shared.
+     *
+     * @param cache   The cache to use, or null to always run the model
+     * @param modelId Identity of the loaded model, e.g. its content hash
+     */
+    public void setResultCache(ClassificationCache cache, String modelId) {
+        this.resultCache = cache;
+        this.modelId = modelId;
+        this.cacheId = cacheId(modelId, normalizationKernel);
+    }
+
+    /**
+     * The same model fed differently normalized pixels produces different
+     * probabilities for the same image, so a result computed with one kernel
+     * must never be served to a classifier using another
+     */
+    private static String cacheId(String modelId, NormalizationKernel normalizationKernel) {
+        return modelId + ":" + normalizationKernel.getName();
+    }
+
+    /**
+     * Enables test-time augmentation in classifyImage for images whose first
+     * pass is below the augmentation's confidence threshold
+     *
+     * @param augmentation The augmentation to use, or null to disable it
+     */
+    public void setTestTimeAugmentation(TestTimeAugmentation augmentation) {
+        this.augmentation = augmentation;
+    }
+
+    /**
+     * Shares a metrics instance, e.g. between the classifiers of a pool
+     */
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the largest number of images sent to the interpreter in one
+     * invocation by classifyBatch
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1 || maxBatchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (maxBatchSize == this.maxBatchSize) {
+            return;
+        }
+
+        this.maxBatchSize = maxBatchSize;
+        allocateOutputBuffers();
+        batchInputBuffer = null;
+        batchInput = null;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Enables or disables the per-call prediction logging, on by default in
+     * debug builds only. Turn it off for continuous scanning.
+     */
+    public void setVerboseLogging(boolean verboseLogging) {
+        this.verboseLogging = verboseLogging;
+    }
+
+    public boolean isVerboseLogging() {
+        return verboseLogging;
+    }
+
     public boolean isInitialized() {
         return isInitialized;
     }
 
     public void close() {
-        if (interpreter != null) {
-            interpreter.close();
+        if (modelRunner != null) {
+            modelRunner.close();
+            modelRunner = null;
             interpreter = null;
             isInitialized = false;
         }
+        augmentationPixels = null;
+        augmentationResizer = null;
     }
 
     public void logModelDetails() {
-        if (!isInitialized) return;
+        if (!isInitialized || interpreter == null) return;
 
-        Log.d(TAG, "===== COMBINED MODEL DETAILS =====");
-        Log.d(TAG, "Model path: " + MODEL_PATH);
-        Log.d(TAG, "Fruit classes: " + Arrays.toString(fruitClasses));
-        Log.d(TAG, "Ripeness classes: " + Arrays.toString(ripenessClasses));
-        Log.d(TAG, "Input tensor count: " + interpreter.getInputTensorCount());
-        Log.d(TAG, "Output tensor count: " + interpreter.getOutputTensorCount());
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "===== COMBINED MODEL DETAILS =====");
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Model path: {}", MODEL_PATH);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Fruit classes: {}", Arrays.toString(FRUIT_CLASSES));
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Ripeness classes: {}", Arrays.toString(RIPENESS_CLASSES));
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Input tensor count: {}", interpreter.getInputTensorCount());
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Output tensor count: {}", interpreter.getOutputTensorCount());
 
         // Input tensor details
         for (int i = 0; i < interpreter.getInputTensorCount(); i++) {
-            Log.d(TAG, "Input #" + i + " shape: " + Arrays.toString(interpreter.getInputTensor(i).shape()));
-            Log.d(TAG, "Input #" + i + " type: " + interpreter.getInputTensor(i).dataType());
+            Tensor tensor = interpreter.getInputTensor(i);
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Input #{}",
+                    i + " shape: " + Arrays.toString(tensor.shape()) + ", type: " + tensor.dataType());
         }
 
         // Output tensor details
         for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
-            Log.d(TAG, "Output #" + i + " shape: " + Arrays.toString(interpreter.getOutputTensor(i).shape()));
-            Log.d(TAG, "Output #" + i + " type: " + interpreter.getOutputTensor(i).dataType());
+            Tensor tensor = interpreter.getOutputTensor(i);
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Output #{}",
+                    i + " shape: " + Arrays.toString(tensor.shape()) + ", type: " + tensor.dataType());
         }
 
-        Log.d(TAG, "Using preprocessing method: " + preprocessingMethod);
-        Log.d(TAG, "===============================");
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Using preprocessing method: {}", normalizationKernel.getName());
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "===============================");
     }
 
     /**
@@ -314,5 +800,27 @@ public class ImageClassifier {
         public int ripenessIndex;
         public float fruitConfidence;
         public float ripenessConfidence;
+
+        /**
+         * Copies another result into this one, reusing this result's arrays
+         * when they have the right length
+         */
+        public void copyFrom(CombinedClassificationResult other) {
+            fruitProbabilities = copyOf(other.fruitProbabilities, fruitProbabilities);
+            ripenessProbabilities = copyOf(other.ripenessProbabilities, ripenessProbabilities);
+            fruitIndex = other.fruitIndex;
+            ripenessIndex = other.ripenessIndex;
+            fruitConfidence = other.fruitConfidence;
+            ripenessConfidence = other.ripenessConfidence;
+        }
+
+        private static float[] copyOf(float[] source, float[] target) {
+            if (source == null) {
+                return null;
+            }
+            float[] copy = reuseOrAllocate(target, source.length);
+            System.arraycopy(source, 0, copy, 0, source.length);
+            return copy;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.example.ui;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of classifiers that lets several classifications run at the same
+ * time, e.g. a live scan and a photo. Every pooled classifier has its own
+ * interpreter and buffers, and all of them share the single memory-mapped
+ * model.
+ */
+public class ImageClassifierPool {
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    private final List<ImageClassifier> classifiers;
+    private final BlockingQueue<ImageClassifier> available;
+
+    // Guards borrowed and closed, so a release can not slip a classifier back in after close drained the pool
+    private final Object lock = new Object();
+    private final Set<ImageClassifier> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile boolean closed = false;
+
+    // Contention metrics
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong contendedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final PipelineMetrics metrics = new PipelineMetrics();
+
+    /**
+     * Takes ownership of the classifiers, which must all run the same model.
+     * Their metrics are replaced by the pool's shared metrics.
+     */
+    public ImageClassifierPool(List<ImageClassifier> classifiers) {
+        if (classifiers.isEmpty()) {
+            throw new IllegalArgumentException("Pool needs at least one classifier");
+        }
+        this.classifiers = new ArrayList<>(classifiers);
+        this.available = new ArrayBlockingQueue<>(classifiers.size(), false, classifiers);
+        for (ImageClassifier classifier : classifiers) {
+            classifier.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Borrows a classifier, waiting up to the timeout for one to be returned.
+     * Every borrowed classifier must be handed back with release.
+     */
+    public ImageClassifier acquire(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (closed) {
+            throw new IllegalStateException("Pool is closed");
+        }
+
+        acquireCount.incrementAndGet();
+        ImageClassifier classifier = available.poll();
+        if (classifier != null) {
+            return lend(classifier);
+        }
+
+        contendedCount.incrementAndGet();
+        long start = System.nanoTime();
+        classifier = available.poll(timeout, unit);
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        metrics.record(PipelineMetrics.Stage.POOL_WAIT, waited);
+        metrics.increment(PipelineMetrics.Counter.POOL_WAITS);
+
+        if (classifier == null) {
+            timeoutCount.incrementAndGet();
+            throw new TimeoutException("No classifier available after " + unit.toMillis(timeout) + "ms");
+        }
+        return lend(classifier);
+    }
+
+    private ImageClassifier lend(ImageClassifier classifier) {
+        synchronized (lock) {
+            if (closed) {
+                // Taken from the queue just before close drained it
+                classifier.close();
+                throw new IllegalStateException("Pool is closed");
+            }
+            borrowed.add(classifier);
+        }
+        return classifier;
+    }
+
+    /**
+     * Returns a classifier obtained from acquire
+     *
+     * @throws IllegalStateException if the classifier is not currently borrowed from this pool
+     */
+    public void release(ImageClassifier classifier) {
+        synchronized (lock) {
+            if (!borrowed.remove(classifier)) {
+                throw new IllegalStateException("Released a classifier that is not borrowed from the pool");
+            }
+            if (closed) {
+                classifier.close();
+            } else {
+                available.offer(classifier);
+            }
+        }
+    }
+
+    /**
+     * Classifies an image on whichever pooled classifier is free first
+     */
+    public ImageClassifier.CombinedClassificationResult classifyImage(Bitmap bitmap)
+            throws InterruptedException, TimeoutException {
+        ImageClassifier classifier = acquire(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        try {
+            return classifier.classifyImage(bitmap);
+        } finally {
+            release(classifier);
+        }
+    }
+
+    public int getSize() {
+        return classifiers.size();
+    }
+
+    public int getAvailableCount() {
+        return available.size();
+    }
+
+    /**
+     * Metrics shared by all classifiers of the pool
+     */
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Stats getStats() {
+        return new Stats(acquireCount.get(), contendedCount.get(), timeoutCount.get(),
+                totalWaitNanos.get(), maxWaitNanos.get());
+    }
+
+    /**
+     * Closes the classifiers that are idle now; borrowed ones are closed when
+     * they are released
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            ImageClassifier classifier;
+            while ((classifier = available.poll()) != null) {
+                classifier.close();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the pool contention metrics
+     */
+    public static class Stats {
+        public final long acquireCount;
+        public final long contendedCount;
+        public final long timeoutCount;
+        public final long totalWaitNanos;
+        public final long maxWaitNanos;
+
+        Stats(long acquireCount, long contendedCount, long timeoutCount, long totalWaitNanos, long maxWaitNanos) {
+            this.acquireCount = acquireCount;
+            this.contendedCount = contendedCount;
+            this.timeoutCount = timeoutCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "acquired=" + acquireCount + ", contended=" + contendedCount + ", timeouts=" + timeoutCount
+                    + ", totalWaitMs=" + totalWaitNanos / 1_000_000 + ", maxWaitMs=" + maxWaitNanos / 1_000_000;
+        }
+    }
+}
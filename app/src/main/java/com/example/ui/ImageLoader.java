@@ -0,0 +1,94 @@
+package com.example.ui;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.util.Size;
+
+import java.io.IOException;
+
+/**
+ * Decodes images straight to the size they are needed at. The header is
+ * read first and the decoder subsamples while decoding, so a full-resolution
+ * camera photo is never held in memory. ImageDecoder applies EXIF
+ * orientation to the decoded bitmap.
+ */
+public class ImageLoader {
+    private static final String TAG = "ImageLoader";
+
+    private final ContentResolver contentResolver;
+    private final int displaySize;
+    private final int inputSize;
+
+    /**
+     * @param contentResolver Resolver used to open content Uris
+     * @param displaySize     Smallest side wanted for the preview bitmap, usually the screen width
+     * @param inputSize       Smallest side wanted for the model input bitmap
+     */
+    public ImageLoader(ContentResolver contentResolver, int displaySize, int inputSize) {
+        this.contentResolver = contentResolver;
+        this.displaySize = displaySize;
+        this.inputSize = inputSize;
+    }
+
+    /**
+     * Pair of bitmaps decoded from the same image
+     */
+    public static class LoadedImage {
+        /** Small software bitmap to feed the classifier */
+        public final Bitmap input;
+        /** Bitmap sized for the preview */
+        public final Bitmap display;
+
+        public LoadedImage(Bitmap input, Bitmap display) {
+            this.input = input;
+            this.display = display;
+        }
+    }
+
+    /**
+     * Decodes a model input bitmap and a preview bitmap from the image behind the Uri
+     */
+    public LoadedImage load(Uri uri) throws IOException {
+        Bitmap input = decode(uri, inputSize, ImageDecoder.ALLOCATOR_SOFTWARE);
+        Bitmap display = decode(uri, displaySize, ImageDecoder.ALLOCATOR_DEFAULT);
+        return new LoadedImage(input, display);
+    }
+
+    /**
+     * Decodes the image subsampled so that its shorter side is still at least minSide
+     */
+    public Bitmap decode(Uri uri, int minSide, int allocator) throws IOException {
+        ImageDecoder.Source source = ImageDecoder.createSource(contentResolver, uri);
+        Bitmap bitmap = ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+            Size size = info.getSize();
+            int sampleSize = computeSampleSize(size.getWidth(), size.getHeight(), minSide, minSide);
+            decoder.setTargetSampleSize(sampleSize);
+            decoder.setAllocator(allocator);
+            DiagnosticLog.get().log(DiagnosticLog.DEBUG, TAG, "Decoding {}x{} with sample size {}",
+                    size.getWidth(), size.getHeight(), sampleSize);
+        });
+        if (bitmap == null) {
+            throw new IOException("Failed to decode image from URI");
+        }
+        return bitmap;
+    }
+
+    /**
+     * Largest power-of-two sample size that keeps the decoded image at least
+     * the requested size in both dimensions
+     *
+     * @return The sample size, 1 if the image is already at or below the requested size
+     */
+    public static int computeSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.ui;
 
+import java.util.concurrent.CompletableFuture;
+
 public class ImageModelView extends Observer implements ModeView {
     private PhoneScreen screen;
     private Database db;
+    private WriteBehindQueue persistence;
     private CommandArea commandArea;
     private ImageArea imageArea;
     private UserScreen usersScreen;
 
-    public ImageModelView(PhoneScreen screen, Database db, CommandArea c, ImageArea i, UserScreen u) {
+    public ImageModelView(PhoneScreen screen, Database db, WriteBehindQueue persistence,
+                          CommandArea c, ImageArea i, UserScreen u) {
         this.screen = screen;
         this.db = db;
+        this.persistence = persistence;
         this.commandArea = c;
         this.imageArea = i;
         this.usersScreen = u;
@@ -39,8 +44,19 @@ public class ImageModelView extends Observer implements ModeView {
         usersScreen.updateDisplay(screen.getProduceName());
     }
 
-    public void saveToDatabase() {
-        db.save(screen.getImage(), screen.getProduceName());
+    /**
+     * Queues the current scan for saving
+     *
+     * @return Completes once the scan is durable
+     */
+    public CompletableFuture<Void> saveToDatabase() {
+        // Read the screen now, it may show another scan by the time the write runs
+        Image image = screen.getImage();
+        String name = screen.getProduceName();
+        return persistence.submit(() -> {
+            db.save(image, name);
+            return null;
+        });
     }
 
 }
@@ -1,27 +1,230 @@
 package com.example.ui;
 
-import android.media.Image;
-
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.UUID;
 
+/**
+ * Two-tier, content-addressed image store. An image's location is the
+ * SHA-256 of its contents, so saving the same image twice stores it once.
+ * Every image is written through to a sharded blob store on disk, and the
+ * most recently used ones are also kept in memory up to a byte budget, so
+ * memory stays bounded however many images a session saves.
+ */
 public class ImageRepo {
-    private final Map<String, Image> images = new HashMap<>();
+    private static final String TAG = "ImageRepo";
+    public static final long DEFAULT_MEMORY_BUDGET_BYTES = 4L * 1024 * 1024;
+
+    private final BlobStore blobs;
+    private final long memoryBudgetBytes;
+    private final DiagnosticLog diagnostics = DiagnosticLog.get();
+
+    // Hot tier in access order, eldest first
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    // Saves minus deletes per location, so undoing one of two identical saves keeps the image.
+    // A blob already on disk from an earlier session carries one extra reference that is
+    // never dropped, since that session's history records may still point at it.
+    private final Map<String, Integer> references = new HashMap<>();
+
+    private long memoryHitCount;
+    private long diskHitCount;
+    private long missCount;
+    private long evictionCount;
+    private long dedupCount;
+
+    /**
+     * @param directory         Directory of the blob store
+     * @param memoryBudgetBytes Maximum image bytes kept in memory
+     */
+    public ImageRepo(File directory, long memoryBudgetBytes) {
+        if (memoryBudgetBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        this.blobs = new BlobStore(directory);
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public ImageRepo(File directory) {
+        this(directory, DEFAULT_MEMORY_BUDGET_BYTES);
+    }
+
+    /**
+     * Stores an image and returns its location
+     *
+     * @throws UncheckedIOException if the image could not be written to disk
+     */
+    public synchronized String saveImage(Image image) {
+        byte[] contents = image.getData().getBytes(StandardCharsets.UTF_8);
+        String location = contentHash(contents);
+        boolean written;
+        try {
+            written = blobs.put(location, contents);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save image " + location, e);
+        }
 
-    public String saveImage(Image image) {
-        String location = UUID.randomUUID().toString();
-        images.put(location, image);
-        System.out.println("Saved image at " + location);
+        if (!written) {
+            dedupCount++;
+        }
+        Integer count = references.get(location);
+        if (count == null) {
+            // Stored by an earlier session if this save did not write it
+            references.put(location, written ? 1 : 2);
+        } else {
+            references.put(location, count + 1);
+        }
+        cache(location, contents);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Saved image at {} ({} bytes)", location, contents.length);
         return location;
     }
 
-    public void deleteImage(String location) {
-        images.remove(location);
-        System.out.println("Deleted image at " + location);
+    /**
+     * Drops one reference to the image and removes it from both tiers once
+     * no save refers to it any more. Images stored by an earlier session are
+     * never removed, as its history may still refer to them.
+     */
+    public synchronized void deleteImage(String location) {
+        Integer count = references.get(location);
+        if (count == null) {
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Kept image at {} saved by an earlier session", location);
+            return;
+        }
+        if (count > 1) {
+            references.put(location, count - 1);
+            return;
+        }
+
+        references.remove(location);
+        byte[] cached = memory.remove(location);
+        if (cached != null) {
+            memoryBytes -= cached.length;
+        }
+        blobs.delete(location);
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Deleted image at {}", location);
+    }
+
+    /**
+     * Forces every image saved since the last sync to storage
+     */
+    public synchronized void sync() throws IOException {
+        blobs.sync();
+    }
+
+    /**
+     * Returns a copy of the image, or null if nothing is stored at the location
+     *
+     * @throws UncheckedIOException if the image could not be read from disk
+     */
+    public synchronized Image getImage(String location) {
+        byte[] contents = memory.get(location);
+        if (contents != null) {
+            memoryHitCount++;
+            return toImage(contents);
+        }
+
+        try {
+            contents = blobs.get(location);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read image " + location, e);
+        }
+        if (contents == null) {
+            missCount++;
+            return null;
+        }
+        if (!location.equals(contentHash(contents))) {
+            // Damaged on disk, drop it rather than return different contents
+            missCount++;
+            blobs.delete(location);
+            diagnostics.log(DiagnosticLog.WARN, TAG, "Dropped corrupt image at {}", location);
+            return null;
+        }
+
+        diskHitCount++;
+        cache(location, contents);
+        return toImage(contents);
+    }
+
+    /**
+     * Adds contents to the memory tier and evicts least recently used images
+     * until it fits the budget. Evicted images stay on disk.
+     */
+    private void cache(String location, byte[] contents) {
+        if (contents.length > memoryBudgetBytes) {
+            return;
+        }
+        byte[] previous = memory.put(location, contents);
+        if (previous != null) {
+            memoryBytes -= previous.length;
+        }
+        memoryBytes += contents.length;
+
+        Iterator<byte[]> eldest = memory.values().iterator();
+        while (memoryBytes > memoryBudgetBytes) {
+            memoryBytes -= eldest.next().length;
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    private static Image toImage(byte[] contents) {
+        return new Image(new String(contents, StandardCharsets.UTF_8));
+    }
+
+    static String contentHash(byte[] contents) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(contents);
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+                hex[i * 2 + 1] = Character.forDigit(hash[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public synchronized int getMemoryCount() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    public synchronized long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getDedupCount() {
+        return dedupCount;
     }
 
-    public Image getImage(String location) {
-        return images.get(location);
+    @Override
+    public synchronized String toString() {
+        return "memory=" + memory.size() + " images/" + memoryBytes + " of " + memoryBudgetBytes + " bytes"
+                + ", hits=" + memoryHitCount + " memory + " + diskHitCount + " disk, misses=" + missCount
+                + ", evictions=" + evictionCount + ", deduplicated=" + dedupCount;
     }
 }
@@ -0,0 +1,89 @@
+package com.example.ui;
+
+/**
+ * Interpreter settings chosen at model load: thread count, XNNPACK delegate
+ * and fp16 relaxation
+ */
+public final class InterpreterConfig {
+    public static final InterpreterConfig DEFAULT = new InterpreterConfig(4, true, false);
+
+    private final int numThreads;
+    private final boolean useXnnpack;
+    private final boolean allowFp16;
+
+    public InterpreterConfig(int numThreads, boolean useXnnpack, boolean allowFp16) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.numThreads = numThreads;
+        this.useXnnpack = useXnnpack;
+        this.allowFp16 = allowFp16;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public boolean isUseXnnpack() {
+        return useXnnpack;
+    }
+
+    public boolean isAllowFp16() {
+        return allowFp16;
+    }
+
+    public InterpreterConfig withNumThreads(int numThreads) {
+        return new InterpreterConfig(numThreads, useXnnpack, allowFp16);
+    }
+
+    public InterpreterConfig withXnnpack(boolean useXnnpack) {
+        return new InterpreterConfig(numThreads, useXnnpack, allowFp16);
+    }
+
+    public InterpreterConfig withFp16(boolean allowFp16) {
+        return new InterpreterConfig(numThreads, useXnnpack, allowFp16);
+    }
+
+    /**
+     * Encodes the config for storage, e.g. "4,1,0"
+     */
+    public String encode() {
+        return numThreads + "," + (useXnnpack ? 1 : 0) + "," + (allowFp16 ? 1 : 0);
+    }
+
+    /**
+     * Parses a config produced by encode, or returns null if it is malformed
+     */
+    public static InterpreterConfig decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split(",");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new InterpreterConfig(Integer.parseInt(parts[0]), "1".equals(parts[1]), "1".equals(parts[2]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof InterpreterConfig)) return false;
+        InterpreterConfig other = (InterpreterConfig) o;
+        return numThreads == other.numThreads && useXnnpack == other.useXnnpack && allowFp16 == other.allowFp16;
+    }
+
+    @Override
+    public int hashCode() {
+        return (numThreads * 31 + (useXnnpack ? 1 : 0)) * 31 + (allowFp16 ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + numThreads + ", xnnpack=" + useXnnpack + ", fp16=" + allowFp16;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.ui;
+
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Picks the fastest interpreter configuration for this device by timing a
+ * few candidates on a synthetic input. The choice is stored per model hash
+ * and device so that later launches reuse it without benchmarking again.
+ */
+public class InterpreterTuner {
+    private static final String TAG = "InterpreterTuner";
+    private static final String KEY_PREFIX = "interpreter_config_";
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    /**
+     * Measures one candidate configuration
+     */
+    interface ConfigBenchmark {
+        long measureNanos(InterpreterConfig config) throws IOException;
+    }
+
+    private final SharedPreferences preferences;
+
+    public InterpreterTuner(SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    /**
+     * Returns the stored configuration for this model and device, or
+     * benchmarks the candidates and stores the fastest one
+     */
+    public InterpreterConfig tune(MappedByteBuffer modelBuffer) {
+        return tune(modelBuffer, modelHash(modelBuffer));
+    }
+
+    /**
+     * Same as tune(modelBuffer) for callers that already hashed the model
+     */
+    public InterpreterConfig tune(MappedByteBuffer modelBuffer, String modelHash) {
+        String key = KEY_PREFIX + modelHash + "_" + deviceId();
+        InterpreterConfig stored = InterpreterConfig.decode(preferences.getString(key, null));
+        if (stored != null) {
+            DiagnosticLog.get().log(DiagnosticLog.DEBUG, TAG, "Using stored interpreter config: {}", stored.toString());
+            return stored;
+        }
+
+        long start = System.nanoTime();
+        InterpreterConfig best = search(Runtime.getRuntime().availableProcessors(),
+                config -> benchmark(modelBuffer, config));
+        DiagnosticLog.get().log(DiagnosticLog.DEBUG, TAG, "Tuned interpreter config {} in {}ms", best.toString(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        preferences.edit().putString(key, best.encode()).apply();
+        return best;
+    }
+
+    /**
+     * Searches thread counts first, then XNNPACK and fp16 relaxation at the
+     * fastest thread count. Candidates that fail to load are skipped.
+     */
+    static InterpreterConfig search(int cores, ConfigBenchmark benchmark) {
+        List<InterpreterConfig> threadCandidates = new ArrayList<>();
+        for (int threads : new int[]{1, 2, 4, cores}) {
+            InterpreterConfig config = InterpreterConfig.DEFAULT.withNumThreads(threads);
+            if (threads <= cores && !threadCandidates.contains(config)) {
+                threadCandidates.add(config);
+            }
+        }
+
+        Candidate best = fastest(threadCandidates, benchmark, null);
+        InterpreterConfig base = best != null ? best.config : InterpreterConfig.DEFAULT;
+        best = fastest(Arrays.asList(
+                base.withXnnpack(false),
+                base.withFp16(true)), benchmark, best);
+
+        return best != null ? best.config : InterpreterConfig.DEFAULT;
+    }
+
+    private static Candidate fastest(List<InterpreterConfig> configs, ConfigBenchmark benchmark, Candidate best) {
+        for (InterpreterConfig config : configs) {
+            try {
+                long nanos = benchmark.measureNanos(config);
+                DiagnosticLog.get().log(DiagnosticLog.DEBUG, TAG, "{}: {}us", config.toString(), nanos / 1000);
+                if (best == null || nanos < best.nanos) {
+                    best = new Candidate(config, nanos);
+                }
+            } catch (IOException | RuntimeException e) {
+                DiagnosticLog.get().log(DiagnosticLog.WARN, TAG, "Skipping interpreter config {}",
+                        config + ": " + e.getMessage());
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the median latency of a synthetic classification
+     */
+    private static long benchmark(MappedByteBuffer modelBuffer, InterpreterConfig config) throws IOException {
+        ImageClassifier classifier = new ImageClassifier(modelBuffer, config);
+        try {
+            classifier.setVerboseLogging(false);
+            int[] pixels = new int[224 * 224];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = 0xFF000000 | ((i * 0x9E3779B1) >>> 8);
+            }
+
+            ImageClassifier.CombinedClassificationResult result = new ImageClassifier.CombinedClassificationResult();
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                classifier.classifyPixels(pixels, result);
+            }
+
+            long[] timings = new long[TIMED_RUNS];
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                long start = System.nanoTime();
+                classifier.classifyPixels(pixels, result);
+                timings[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(timings);
+            return timings[TIMED_RUNS / 2];
+        } finally {
+            classifier.close();
+        }
+    }
+
+    /**
+     * Hashes the model contents so that a new model is tuned again
+     */
+    public static String modelHash(ByteBuffer modelBuffer) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer contents = modelBuffer.duplicate();
+            contents.rewind();
+            digest.update(contents);
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String deviceId() {
+        return Integer.toHexString((Build.FINGERPRINT + "/" + Runtime.getRuntime().availableProcessors()).hashCode());
+    }
+
+    private static class Candidate {
+        final InterpreterConfig config;
+        final long nanos;
+
+        Candidate(InterpreterConfig config, long nanos) {
+            this.config = config;
+            this.nanos = nanos;
+        }
+    }
+}
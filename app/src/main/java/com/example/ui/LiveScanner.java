@@ -0,0 +1,394 @@
+package com.example.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Continuously classifies camera frames. CameraX delivers small YUV
+ * analysis frames that are cropped, rotated and resized to the model input
+ * on the analysis thread and handed to a separate inference thread through a
+ * FrameSlot, so frames
+ * arriving while the model is busy replace each other instead of queuing.
+ * The inference thread feeds a PipelinedClassifier, so one frame is
+ * normalized while the previous one is in the interpreter. Predictions are
+ * smoothed over time, and once they are stable on an unchanged scene
+ * inference backs off. Results are posted to the main thread
+ * at most one at a time. Each scan borrows a classifier from the pool and
+ * returns it when it stops, so scans never share an interpreter or buffers
+ * with a photo being classified.
+ */
+public class LiveScanner {
+    private static final String TAG = "LiveScanner";
+    private static final Size ANALYSIS_RESOLUTION = new Size(320, 240);
+    private static final long FPS_WINDOW_MS = 1000;
+    private static final int PIPELINE_BUFFERS = 2;
+
+    /**
+     * Receives scan results on the main thread
+     */
+    public interface Listener {
+        void onScanResult(ImageClassifier.CombinedClassificationResult result, boolean stable,
+                          float fps, long droppedFrames);
+
+        /**
+         * Called once the scanner has stopped itself because the camera or
+         * the classifier failed
+         */
+        void onScanError(Exception error);
+    }
+
+    private final ImageClassifierPool classifierPool;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ImageClassifier.CombinedClassificationResult[] results = {
+            new ImageClassifier.CombinedClassificationResult(), new ImageClassifier.CombinedClassificationResult()};
+    private final ImageClassifier.CombinedClassificationResult smoothedResult = new ImageClassifier.CombinedClassificationResult();
+    private final ImageClassifier.CombinedClassificationResult uiResult = new ImageClassifier.CombinedClassificationResult();
+    private final PredictionSmoother smoother = new PredictionSmoother();
+    private volatile boolean uiStable;
+    private final AtomicBoolean uiUpdatePending = new AtomicBoolean();
+    private final Runnable uiUpdate = this::deliverResult;
+
+    private FrameSlot frameSlot;
+    private ExecutorService analysisExecutor;
+    private Thread inferenceThread;
+    private ProcessCameraProvider cameraProvider;
+    private volatile boolean running = false;
+
+    // Analysis thread state
+    private final YuvConverter yuvConverter = new YuvConverter(ImageClassifier.INPUT_SIZE);
+    private final YuvConverter.Planes yuvPlanes = new YuvConverter.Planes();
+
+    // Inference thread state
+    private CompletableFuture<ImageClassifier.CombinedClassificationResult> inFlight;
+    private int[] inFlightFrame;
+    private long inFlightHash;
+    private long inFlightTime;
+    private int nextResult;
+    private long windowStart;
+    private int windowFrames;
+    private volatile float fps;
+    private volatile long processedCount;
+    private volatile long skippedCount;
+
+    /**
+     * @param classifierPool Pool to borrow the scan classifier from while scanning
+     */
+    public LiveScanner(ImageClassifierPool classifierPool, Listener listener) {
+        this.classifierPool = classifierPool;
+        this.listener = listener;
+    }
+
+    /**
+     * Binds the camera preview and analysis to the activity and starts classifying
+     */
+    public void start(AppCompatActivity activity, PreviewView previewView) {
+        if (running) {
+            return;
+        }
+        running = true;
+        fps = 0;
+        processedCount = 0;
+        skippedCount = 0;
+        smoother.reset();
+        // The inference thread holds one frame in the interpreter and one being normalized
+        frameSlot = new FrameSlot(ImageClassifier.INPUT_SIZE * ImageClassifier.INPUT_SIZE, PIPELINE_BUFFERS);
+        analysisExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "ScanAnalysis"));
+        inferenceThread = new Thread(this::inferenceLoop, "ScanInference");
+        inferenceThread.start();
+
+        ListenableFuture<ProcessCameraProvider> providerFuture = ProcessCameraProvider.getInstance(activity);
+        providerFuture.addListener(() -> {
+            if (!running) {
+                return;
+            }
+            try {
+                cameraProvider = providerFuture.get();
+                bindCamera(activity, previewView);
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(TAG, "Failed to get camera provider", e);
+                stop();
+                listener.onScanError(e);
+            }
+        }, ContextCompat.getMainExecutor(activity));
+    }
+
+    private void bindCamera(AppCompatActivity activity, PreviewView previewView) {
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+        // The smallest stream that still covers the model input keeps conversion cheap
+        ResolutionSelector resolutionSelector = new ResolutionSelector.Builder()
+                .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_RESOLUTION,
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                .build();
+        ImageAnalysis analysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(resolutionSelector)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .build();
+        analysis.setAnalyzer(analysisExecutor, this::analyze);
+
+        cameraProvider.unbindAll();
+        cameraProvider.bindToLifecycle(activity, CameraSelector.DEFAULT_BACK_CAMERA, preview, analysis);
+        Log.d(TAG, "Camera bound for live scanning");
+    }
+
+    private void analyze(ImageProxy image) {
+        int[] frame = null;
+        try {
+            frame = frameSlot.acquire();
+            if (frame != null) {
+                convertFrame(image, frame);
+                frameSlot.publish(frame);
+                frame = null;
+            }
+        } finally {
+            if (frame != null) {
+                frameSlot.release(frame);
+            }
+            image.close();
+        }
+    }
+
+    /**
+     * Converts the centered square of a YUV frame to upright model input pixels
+     */
+    private void convertFrame(ImageProxy image, int[] frame) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        yuvPlanes.set(planes[0].getBuffer(), planes[0].getRowStride(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride());
+        yuvConverter.setCenterCrop(image.getWidth(), image.getHeight(), image.getImageInfo().getRotationDegrees());
+        yuvConverter.convert(yuvPlanes, frame);
+    }
+
+    private void inferenceLoop() {
+        FrameSlot slot = frameSlot;
+        windowStart = SystemClock.elapsedRealtime();
+        windowFrames = 0;
+        ImageClassifier classifier;
+        try {
+            classifier = classifierPool.acquire(ImageClassifierPool.DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (TimeoutException | RuntimeException e) {
+            Log.e(TAG, "No classifier available for scanning", e);
+            postFailure(e);
+            return;
+        }
+        // Per-frame prediction logs would dominate the scan loop
+        boolean verboseLogging = classifier.isVerboseLogging();
+        classifier.setVerboseLogging(false);
+
+        PipelinedClassifier pipeline = null;
+        try {
+            pipeline = new PipelinedClassifier(classifier, PIPELINE_BUFFERS);
+            while (running) {
+                int[] frame = slot.take();
+                if (frame == null) {
+                    break;
+                }
+                long sceneHash = PerceptualHash.dHash(frame, ImageClassifier.INPUT_SIZE, ImageClassifier.INPUT_SIZE);
+                long now = SystemClock.elapsedRealtime();
+                // The smoother has not seen the frame still in the interpreter, so this decision lags by a frame
+                if (!smoother.shouldInfer(sceneHash, now)) {
+                    slot.release(frame);
+                    skippedCount++;
+                    // Deliver the last result instead of holding it while the scene is unchanged
+                    finishInFlight(slot);
+                    continue;
+                }
+                // Queue this frame before waiting for the previous one so the stages overlap
+                CompletableFuture<ImageClassifier.CombinedClassificationResult> next =
+                        pipeline.submitPixels(frame, results[nextResult]);
+                finishInFlight(slot);
+                inFlight = next;
+                inFlightFrame = frame;
+                inFlightHash = sceneHash;
+                inFlightTime = now;
+                nextResult ^= 1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RuntimeException e) {
+            Log.e(TAG, "Live classification failed", e);
+            postFailure(e);
+        } finally {
+            closePipeline(pipeline, slot);
+            classifier.setVerboseLogging(verboseLogging);
+            classifierPool.release(classifier);
+        }
+    }
+
+    /**
+     * Waits for the frame in the interpreter, then smooths and posts its result
+     */
+    private void finishInFlight(FrameSlot slot) throws InterruptedException, ExecutionException {
+        if (inFlight == null) {
+            return;
+        }
+        ImageClassifier.CombinedClassificationResult frameResult;
+        try {
+            frameResult = inFlight.get();
+        } finally {
+            slot.release(inFlightFrame);
+            inFlight = null;
+            inFlightFrame = null;
+        }
+        boolean stable = smoother.update(frameResult, inFlightHash, inFlightTime, smoothedResult);
+        processedCount++;
+        updateFps();
+        postResult(stable);
+    }
+
+    /**
+     * Waits for the pipeline threads even when interrupted, since the
+     * classifier goes back to the pool right after
+     */
+    private void closePipeline(PipelinedClassifier pipeline, FrameSlot slot) {
+        if (pipeline != null) {
+            boolean interrupted = Thread.interrupted();
+            while (true) {
+                try {
+                    pipeline.close();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (inFlightFrame != null) {
+            slot.release(inFlightFrame);
+            inFlight = null;
+            inFlightFrame = null;
+        }
+    }
+
+    /**
+     * Stops the scan that lost its inference thread, so the camera is not
+     * left bound with nothing consuming its frames, and reports the error
+     */
+    private void postFailure(Exception error) {
+        Thread failedThread = Thread.currentThread();
+        mainHandler.post(() -> {
+            // Already stopped, or stopped and restarted with a new inference thread
+            if (!running || inferenceThread != failedThread) {
+                return;
+            }
+            stop();
+            listener.onScanError(error);
+        });
+    }
+
+    private void updateFps() {
+        windowFrames++;
+        long now = SystemClock.elapsedRealtime();
+        long elapsed = now - windowStart;
+        if (elapsed >= FPS_WINDOW_MS) {
+            fps = windowFrames * 1000f / elapsed;
+            windowStart = now;
+            windowFrames = 0;
+        }
+    }
+
+    private void postResult(boolean stable) {
+        // Skip the update if the main thread has not shown the previous one yet
+        if (uiUpdatePending.compareAndSet(false, true)) {
+            uiResult.copyFrom(smoothedResult);
+            uiStable = stable;
+            mainHandler.post(uiUpdate);
+        }
+    }
+
+    private void deliverResult() {
+        if (running) {
+            listener.onScanResult(uiResult, uiStable, fps, getDroppedFrameCount());
+        }
+        uiUpdatePending.set(false);
+    }
+
+    /**
+     * Unbinds the camera and waits for the running inference to finish,
+     * which takes at most one frame, and for the scan classifier to go back
+     * to the pool. Call on the main thread.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (cameraProvider != null) {
+            cameraProvider.unbindAll();
+        }
+        frameSlot.close();
+        analysisExecutor.shutdown();
+        try {
+            inferenceThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        DiagnosticLog diagnostics = DiagnosticLog.get();
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Live scanning stopped after {} frames, {} dropped",
+                processedCount, getDroppedFrameCount());
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Skipped {} frames while stable", skippedCount);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Inference rate over the last measurement window
+     */
+    public float getFps() {
+        return fps;
+    }
+
+    public long getProcessedFrameCount() {
+        return processedCount;
+    }
+
+    /**
+     * Frames not classified because the prediction was stable on an unchanged scene
+     */
+    public long getSkippedFrameCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Frames replaced by a newer frame before inference could take them
+     */
+    public long getDroppedFrameCount() {
+        FrameSlot slot = frameSlot;
+        return slot == null ? 0 : slot.getDroppedCount();
+    }
+}
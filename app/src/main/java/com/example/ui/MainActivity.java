@@ -10,6 +10,8 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
@@ -25,29 +27,57 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 
+
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int CAMERA_PERMISSION_CODE = 100;
+    private static final int RESULT_CACHE_SIZE = 32;
+    private static final int RESULT_CACHE_TOLERANCE = 4;
+    private static final int TOP_COMBINATIONS = 3;
+    private static final int WARM_UP_RUNS = 2;
+    // One classifier for a live scan and one for photos, so neither waits for the other
+    private static final int CLASSIFIER_POOL_SIZE = 2;
+    // The splash ends when the model is ready, or after this long at the latest
+    private static final long SPLASH_MAX_MS = 2000;
 
     private ImageView imageView;
     private Uri photoUri;
     private LinearLayout mainContent;
     private View splashScreen;
-    private ImageClassifier classifier;
+    private volatile ImageClassifierPool classifierPool;
+    private volatile ClassificationService classificationService;
     private Button captureButton;
     private Button selectButton;
+    private Button scanButton;
     private TextView modelInfoText;
+    private PreviewView previewView;
+    private TextView scanOverlay;
+    private LiveScanner liveScanner;
+    private final StringBuilder overlayText = new StringBuilder();
+    private final DiagnosticLog diagnostics = DiagnosticLog.get();
+    private final StartupMetrics startupMetrics = new StartupMetrics(processStartNanos());
+    // Completed on the loader thread once the model is loaded and warmed up
+    private final CompletableFuture<ImageClassifierPool> classifierReady = new CompletableFuture<>();
+    private final int[] topFruitIndices = new int[TOP_COMBINATIONS];
+    private final int[] topRipenessIndices = new int[TOP_COMBINATIONS];
+    private final float[] topProbabilities = new float[TOP_COMBINATIONS];
 
     private final ActivityResultLauncher<String> galleryLauncher = registerForActivityResult(
             new ActivityResultContracts.GetContent(),
@@ -74,6 +104,9 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        diagnostics.setSink(Log::println);
+        // Start loading the model right away so it overlaps layout inflation and the splash
+        new Thread(this::initializeClassifier, "ClassifierInit").start();
         setContentView(R.layout.activity_main);
 
         mainContent = findViewById(R.id.mainContent);
@@ -81,19 +114,25 @@ public class MainActivity extends AppCompatActivity {
         imageView = findViewById(R.id.imageView);
         captureButton = findViewById(R.id.captureButton);
         selectButton = findViewById(R.id.selectButton);
+        scanButton = findViewById(R.id.scanButton);
         modelInfoText = findViewById(R.id.modelInfoText);
+        previewView = findViewById(R.id.previewView);
+        scanOverlay = findViewById(R.id.scanOverlay);
 
         modelInfoText.setText("Combined Fruit-Ripeness Model");
 
         captureButton.setEnabled(false);
         selectButton.setEnabled(false);
+        scanButton.setEnabled(false);
 
         setupSplashScreen();
         requestRequiredPermissions();
-        new Handler(Looper.getMainLooper()).postDelayed(this::initializeClassifier, 2000);
+        classifierReady.whenComplete((loaded, error) -> runOnUiThread(() -> onClassifierReady(loaded, error)));
 
         setupCaptureButton();
         setupSelectButton();
+        setupScanButton();
+        setupMetricsView();
         listAssetFiles();
     }
 
@@ -127,7 +166,7 @@ public class MainActivity extends AppCompatActivity {
 
     private void setupSelectButton() {
         selectButton.setOnClickListener(v -> {
-            if (!classifier.isInitialized()) {
+            if (classifierPool == null) {
                 Toast.makeText(this, "Classifier not initialized", Toast.LENGTH_SHORT).show();
                 return;
             }
@@ -135,29 +174,127 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void processSelectedImage(Uri uri) {
-        try {
-            Log.d(TAG, "Processing selected image: " + uri);
-            imageView.setImageURI(uri);
+    private void setupScanButton() {
+        scanButton.setOnClickListener(v -> {
+            if (liveScanner != null && liveScanner.isRunning()) {
+                stopLiveScan();
+                return;
+            }
+            if (classifierPool == null) {
+                Toast.makeText(this, "Classifier not initialized", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                    != PackageManager.PERMISSION_GRANTED) {
+                ActivityCompat.requestPermissions(this,
+                        new String[]{Manifest.permission.CAMERA},
+                        CAMERA_PERMISSION_CODE);
+                return;
+            }
+            startLiveScan();
+        });
+    }
 
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), uri);
-            if (bitmap == null) {
-                throw new IOException("Failed to load bitmap from URI");
+    /**
+     * Long-pressing the model info shows the pipeline latency breakdown
+     */
+    private void setupMetricsView() {
+        modelInfoText.setOnLongClickListener(v -> {
+            ImageClassifierPool pool = classifierPool;
+            if (pool == null) {
+                return false;
             }
+            PipelineMetrics metrics = pool.getMetrics();
+            PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+            Log.d(TAG, "Pipeline metrics: " + snapshot.toJson() + ", startup: " + startupMetrics.toJson());
+            new AlertDialog.Builder(this)
+                    .setTitle("Pipeline Metrics")
+                    .setMessage(startupMetrics.toText() + "\n" + snapshot.toText())
+                    .setPositiveButton("OK", null)
+                    .setNegativeButton("Reset", (dialog, which) -> metrics.reset())
+                    .show();
+            return true;
+        });
+    }
 
-            Log.d(TAG, "Bitmap loaded successfully. Size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-            classifyAndShowResults(bitmap);
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing selected image: ", e);
-            Toast.makeText(this,
-                    "Error processing image: " + e.getMessage(),
-                    Toast.LENGTH_LONG).show();
+    private void startLiveScan() {
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Starting live scan");
+        if (liveScanner == null) {
+            liveScanner = new LiveScanner(classifierPool, new LiveScanner.Listener() {
+                @Override
+                public void onScanResult(ImageClassifier.CombinedClassificationResult result, boolean stable,
+                                         float fps, long droppedFrames) {
+                    showScanResult(result, stable, fps, droppedFrames);
+                }
+
+                @Override
+                public void onScanError(Exception error) {
+                    showScanStopped();
+                    Toast.makeText(MainActivity.this, "Live scan failed: " + error.getMessage(),
+                            Toast.LENGTH_LONG).show();
+                }
+            });
+        }
+
+        imageView.setVisibility(View.GONE);
+        previewView.setVisibility(View.VISIBLE);
+        scanOverlay.setVisibility(View.VISIBLE);
+        scanOverlay.setText("Scanning...");
+        captureButton.setEnabled(false);
+        selectButton.setEnabled(false);
+        scanButton.setText("Stop Scan");
+
+        liveScanner.start(this, previewView);
+    }
+
+    private void stopLiveScan() {
+        if (liveScanner == null || !liveScanner.isRunning()) {
+            return;
+        }
+        liveScanner.stop();
+        showScanStopped();
+    }
+
+    private void showScanStopped() {
+        previewView.setVisibility(View.GONE);
+        scanOverlay.setVisibility(View.GONE);
+        imageView.setVisibility(View.VISIBLE);
+        captureButton.setEnabled(true);
+        selectButton.setEnabled(true);
+        scanButton.setText("Live Scan");
+    }
+
+    private void showScanResult(ImageClassifier.CombinedClassificationResult result, boolean stable,
+                                float fps, long droppedFrames) {
+        markFirstInference();
+        overlayText.setLength(0);
+        if (stable) {
+            overlayText.append("\u2713 ");
         }
+        overlayText.append(ImageClassifier.getFruitClassName(result.fruitIndex))
+                .append(' ').append(Math.round(result.fruitConfidence)).append("%  ")
+                .append(ImageClassifier.getRipenessClassName(result.ripenessIndex))
+                .append(' ').append(Math.round(result.ripenessConfidence)).append("%\n")
+                .append(Math.round(fps * 10) / 10f).append(" FPS, ")
+                .append(droppedFrames).append(" frames dropped");
+        scanOverlay.setText(overlayText);
+    }
+
+    private void processSelectedImage(Uri uri) {
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Processing selected image");
+        classificationService.classify(uri, classificationCallback);
     }
 
     private void setupSplashScreen() {
         mainContent.setVisibility(View.GONE);
         splashScreen.setVisibility(View.VISIBLE);
+        new Handler(Looper.getMainLooper()).postDelayed(this::hideSplashScreen, SPLASH_MAX_MS);
+    }
+
+    private void hideSplashScreen() {
+        if (splashScreen.getVisibility() != View.VISIBLE) {
+            return;
+        }
 
         AlphaAnimation fadeOut = new AlphaAnimation(1.0f, 0.0f);
         fadeOut.setDuration(1000);
@@ -167,49 +304,140 @@ public class MainActivity extends AppCompatActivity {
         fadeIn.setDuration(1000);
         fadeIn.setFillAfter(true);
 
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            splashScreen.startAnimation(fadeOut);
-            mainContent.setVisibility(View.VISIBLE);
-            mainContent.startAnimation(fadeIn);
-            splashScreen.setVisibility(View.GONE);
-        }, 2000);
+        splashScreen.startAnimation(fadeOut);
+        mainContent.setVisibility(View.VISIBLE);
+        mainContent.startAnimation(fadeIn);
+        splashScreen.setVisibility(View.GONE);
+    }
+
+    /**
+     * System.nanoTime() at process start, so startup milestones include
+     * process creation and application setup
+     */
+    private static long processStartNanos() {
+        long sinceStartMs = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        return System.nanoTime() - sinceStartMs * 1_000_000;
     }
 
+    /**
+     * Loads, tunes and warms up the model on a background thread, then
+     * completes classifierReady. The UI is only touched from onClassifierReady.
+     */
     private void initializeClassifier() {
         try {
             Log.d(TAG, "Initializing combined classifier");
 
-            if (classifier != null) {
-                classifier.close();
+            long loadStart = System.nanoTime();
+            AssetManager assetManager = getAssets();
+            MappedByteBuffer modelBuffer = ImageClassifier.loadModel(assetManager);
+            ModelChecksumCache checksumCache = new ModelChecksumCache(new File(getFilesDir(), "model_cache"));
+            String modelHash = checksumCache.modelHash(modelBuffer, modelFingerprint(modelBuffer));
+            long checksumNanos = System.nanoTime() - loadStart;
+            startupMetrics.recordChecksumCache(checksumCache.isHit(), checksumCache.getSkippedHashNanos());
+            Log.i(TAG, "Model checksum cache " + (checksumCache.isHit() ? "hit" : "miss")
+                    + ", load and checksum took " + checksumNanos / 1_000_000 + "ms, hashing skipped "
+                    + checksumCache.getSkippedHashNanos() / 1_000_000 + "ms");
+
+            InterpreterConfig config = new InterpreterTuner(
+                    getSharedPreferences("interpreter_tuning", MODE_PRIVATE)).tune(modelBuffer, modelHash);
+
+            List<ImageClassifier> classifiers = new ArrayList<>(CLASSIFIER_POOL_SIZE);
+            try {
+                for (int i = 0; i < CLASSIFIER_POOL_SIZE; i++) {
+                    classifiers.add(new ImageClassifier(modelBuffer, config));
+                }
+            } catch (IOException e) {
+                for (ImageClassifier created : classifiers) {
+                    created.close();
+                }
+                throw e;
             }
+            startupMetrics.mark(StartupMetrics.Milestone.MODEL_LOADED);
+
+            // Photos may land on any pooled classifier, so they share one result cache
+            ClassificationCache resultCache = new ClassificationCache(RESULT_CACHE_SIZE, RESULT_CACHE_TOLERANCE);
+            long firstRunNanos = 0;
+            for (int i = 0; i < classifiers.size(); i++) {
+                ImageClassifier created = classifiers.get(i);
+                created.setResultCache(resultCache, modelHash);
+                created.setTestTimeAugmentation(new TestTimeAugmentation(
+                        TestTimeAugmentation.DEFAULT_CONFIDENCE_THRESHOLD, TestTimeAugmentation.Combine.MEAN));
+                long runNanos = created.warmUp(WARM_UP_RUNS);
+                if (i == 0) {
+                    firstRunNanos = runNanos;
+                }
+            }
+            startupMetrics.mark(StartupMetrics.Milestone.WARMED_UP);
 
-            AssetManager assetManager = getAssets();
-            classifier = new ImageClassifier(assetManager);
+            Log.d(TAG, "Combined classifier pool of " + CLASSIFIER_POOL_SIZE
+                    + " initialized, first warm-up run took " + firstRunNanos / 1_000_000 + "ms");
+            classifiers.get(0).logModelDetails();
+            classifierReady.complete(new ImageClassifierPool(classifiers));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to initialize classifier: " + e.getMessage(), e);
+            classifierReady.completeExceptionally(e);
+        }
+    }
 
-            if (classifier.isInitialized()) {
-                Log.d(TAG, "Combined classifier initialized successfully");
-                classifier.logModelDetails();
+    /**
+     * Identifies the installed model without reading it: a new app build
+     * changes the update time, a different model usually its size too
+     */
+    private String modelFingerprint(ByteBuffer modelBuffer) {
+        try {
+            long updated = getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+            return updated + ":" + modelBuffer.capacity();
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
 
-                runOnUiThread(() -> {
-                    captureButton.setEnabled(true);
-                    selectButton.setEnabled(true);
-                    Toast.makeText(this, "Combined fruit-ripeness model loaded successfully", Toast.LENGTH_SHORT).show();
-                });
+    /**
+     * Readiness signal on the main thread: enables classification as soon as
+     * the warmed-up model is available
+     */
+    private void onClassifierReady(ImageClassifierPool loaded, Throwable error) {
+        if (isDestroyed()) {
+            if (loaded != null) {
+                loaded.close();
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to initialize classifier: " + e.getMessage(), e);
-            runOnUiThread(() -> {
-                Toast.makeText(this, "Failed to load model: " + e.getMessage(),
-                        Toast.LENGTH_LONG).show();
-                captureButton.setEnabled(false);
-                selectButton.setEnabled(false);
-            });
+            return;
+        }
+        hideSplashScreen();
+
+        if (error != null) {
+            Toast.makeText(this, "Failed to load model: " + error.getMessage(),
+                    Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        classifierPool = loaded;
+        ImageLoader imageLoader = new ImageLoader(getContentResolver(),
+                getResources().getDisplayMetrics().widthPixels, ImageClassifier.INPUT_SIZE);
+        classificationService = new ClassificationService(loaded, imageLoader);
+
+        captureButton.setEnabled(true);
+        selectButton.setEnabled(true);
+        scanButton.setEnabled(true);
+        startupMetrics.mark(StartupMetrics.Milestone.INTERACTIVE);
+        // Lets the platform report time to full display for the cold start
+        reportFullyDrawn();
+        Log.i(TAG, "Startup: " + startupMetrics.toJson());
+        Toast.makeText(this, "Combined fruit-ripeness model loaded successfully", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Records time to first inference the first time a result reaches the screen
+     */
+    private void markFirstInference() {
+        if (startupMetrics.mark(StartupMetrics.Milestone.FIRST_INFERENCE)) {
+            Log.i(TAG, "Startup: " + startupMetrics.toJson());
         }
     }
 
     private void setupCaptureButton() {
         captureButton.setOnClickListener(v -> {
-            if (!classifier.isInitialized()) {
+            if (classifierPool == null) {
                 Toast.makeText(this, "Classifier not initialized", Toast.LENGTH_SHORT).show();
                 return;
             }
@@ -241,125 +469,108 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void processCapturedImage() {
-        try {
-            Log.d(TAG, "Processing captured image");
-            Bitmap bitmap = null;
-
-            // Check if we have a URI from FileProvider
-            if (photoUri != null) {
-                try {
-                    Log.d(TAG, "Processing from URI: " + photoUri);
-                    imageView.setImageURI(null); // Clear previous image
-                    imageView.setImageURI(photoUri);
-                    bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), photoUri);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error loading bitmap from URI", e);
-                }
-            }
-
-            // If URI approach failed, check if we have data from the activity result
-            if (bitmap == null) {
-                try {
-                    // This would work when using the thumbnail approach
-                    Log.d(TAG, "Trying to get thumbnail from intent data");
-                    // In a real cameraLauncher result, you would access this from the result data
-                    // For now, we'll just return an error as we can't access that data here
-                    throw new IOException("Cannot access thumbnail data in this context");
-                } catch (Exception e) {
-                    Log.e(TAG, "Error getting thumbnail bitmap", e);
-                    Toast.makeText(this, "Failed to load image data", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-            }
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Processing captured image");
+
+        // Without a FileProvider URI only a thumbnail would be available, which
+        // we can't access in this context
+        if (photoUri == null) {
+            Log.e(TAG, "No URI for captured image");
+            Toast.makeText(this, "Failed to load image data", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            if (bitmap == null) {
-                throw new IOException("Failed to load bitmap from captured image");
-            }
+        classificationService.classify(photoUri, classificationCallback);
+    }
 
-            Log.d(TAG, "Bitmap loaded successfully. Size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-            classifyAndShowResults(bitmap);
+    private final ClassificationService.Callback classificationCallback = new ClassificationService.Callback() {
+        @Override
+        public void onResult(Bitmap bitmap, ImageClassifier.CombinedClassificationResult results, long inferenceTime) {
+            diagnostics.log(DiagnosticLog.DEBUG, TAG, "Bitmap loaded successfully. Size: {}x{}",
+                    bitmap.getWidth(), bitmap.getHeight());
+            imageView.setImageBitmap(bitmap);
+            showResults(results, inferenceTime);
+            markFirstInference();
+        }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing captured image: ", e);
-            Toast.makeText(this,
+        @Override
+        public void onError(Exception e) {
+            Log.e(TAG, "Error processing image: ", e);
+            Toast.makeText(MainActivity.this,
                     "Error processing image: " + e.getMessage(),
                     Toast.LENGTH_LONG).show();
         }
-    }
-
-    private void classifyAndShowResults(Bitmap bitmap) {
-        try {
-            Log.d(TAG, "Starting classification for bitmap: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+    };
 
-            long startTime = System.currentTimeMillis();
-            ImageClassifier.CombinedClassificationResult results = classifier.classifyImage(bitmap);
-            long inferenceTime = System.currentTimeMillis() - startTime;
+    private void showResults(ImageClassifier.CombinedClassificationResult results, long inferenceTime) {
+        diagnostics.log(DiagnosticLog.DEBUG, TAG, "Classification completed in {}ms", inferenceTime);
 
-            Log.d(TAG, "Classification completed in " + inferenceTime + "ms");
+        String predictedFruit = ImageClassifier.getFruitClassName(results.fruitIndex);
+        String predictedRipeness = ImageClassifier.getRipenessClassName(results.ripenessIndex);
+        float fruitConfidence = results.fruitConfidence;
+        float ripenessConfidence = results.ripenessConfidence;
 
-            String predictedFruit = classifier.getFruitClassName(results.fruitIndex);
-            String predictedRipeness = classifier.getRipenessClassName(results.ripenessIndex);
-            float fruitConfidence = results.fruitConfidence;
-            float ripenessConfidence = results.ripenessConfidence;
+        StringBuilder resultText = new StringBuilder("Classification Results:\n\n");
+        resultText.append("Fruit Classification:\n");
 
-            StringBuilder resultText = new StringBuilder("Classification Results:\n\n");
-            resultText.append("Fruit Classification:\n");
+        for (int i = 0; i < results.fruitProbabilities.length; i++) {
+            resultText.append(ImageClassifier.getFruitClassName(i)).append(": ");
+            Postprocessor.appendPercent(resultText, results.fruitProbabilities[i] * 100).append("\n");
+        }
 
-            for (int i = 0; i < results.fruitProbabilities.length; i++) {
-                resultText.append(classifier.getFruitClassName(i))
-                        .append(": ")
-                        .append(String.format("%.1f%%", results.fruitProbabilities[i] * 100))
-                        .append("\n");
-            }
+        resultText.append("\nRipeness Classification:\n");
 
-            resultText.append("\nRipeness Classification:\n");
+        for (int i = 0; i < results.ripenessProbabilities.length; i++) {
+            resultText.append(ImageClassifier.getRipenessClassName(i)).append(": ");
+            Postprocessor.appendPercent(resultText, results.ripenessProbabilities[i] * 100).append("\n");
+        }
 
-            for (int i = 0; i < results.ripenessProbabilities.length; i++) {
-                resultText.append(classifier.getRipenessClassName(i))
-                        .append(": ")
-                        .append(String.format("%.1f%%", results.ripenessProbabilities[i] * 100))
-                        .append("\n");
-            }
+        resultText.append("\nPredicted: ").append(predictedFruit)
+                .append(" ").append(predictedRipeness)
+                .append("\nFruit Confidence: ");
+        Postprocessor.appendPercent(resultText, fruitConfidence).append("\nRipeness Confidence: ");
+        Postprocessor.appendPercent(resultText, ripenessConfidence);
+
+        // Most likely fruit and ripeness pairs, so close calls are visible
+        int combinations = Postprocessor.jointTopK(
+                results.fruitProbabilities, ImageClassifier.NUM_FRUIT_CLASSES,
+                results.ripenessProbabilities, ImageClassifier.NUM_RIPENESS_CLASSES,
+                TOP_COMBINATIONS, topFruitIndices, topRipenessIndices, topProbabilities);
+        resultText.append("\n\nMost likely:");
+        for (int i = 0; i < combinations; i++) {
+            resultText.append("\n").append(i + 1).append(". ")
+                    .append(ImageClassifier.getFruitClassName(topFruitIndices[i])).append(" ")
+                    .append(ImageClassifier.getRipenessClassName(topRipenessIndices[i])).append(": ");
+            Postprocessor.appendPercent(resultText, topProbabilities[i] * 100);
+        }
 
-            resultText.append("\nPredicted: ").append(predictedFruit)
-                    .append(" ").append(predictedRipeness)
-                    .append("\nFruit Confidence: ").append(String.format("%.1f%%", fruitConfidence))
-                    .append("\nRipeness Confidence: ").append(String.format("%.1f%%", ripenessConfidence))
-                    .append("\n\nInference time: ").append(inferenceTime).append("ms");
+        resultText.append("\n\nInference time: ").append(inferenceTime).append("ms");
 
-            String ripenessAdvice;
-            switch (predictedRipeness.toLowerCase()) {
-                case "unripe":
-                    ripenessAdvice = "⏳ Unripe: You have 4–6 days.";
-                    break;
-                case "ripe":
-                    ripenessAdvice = "🍽️ Ripe: Best within 2–3 days.";
-                    break;
-                case "veryripe":
-                    ripenessAdvice = "⚠️ Very Ripe: Use within 1–2 days.";
-                    break;
-                case "overripe":
-                    ripenessAdvice = "🚨 Overripe: Less than 24 hours — consider throwing it away!";
-                    break;
-                default:
-                    ripenessAdvice = "Ripeness estimate not available.";
-                    break;
-            }
-
-            resultText.append("\n\n").append(ripenessAdvice);
+        String ripenessAdvice;
+        switch (predictedRipeness.toLowerCase()) {
+            case "unripe":
+                ripenessAdvice = "⏳ Unripe: You have 4–6 days.";
+                break;
+            case "ripe":
+                ripenessAdvice = "🍽️ Ripe: Best within 2–3 days.";
+                break;
+            case "veryripe":
+                ripenessAdvice = "⚠️ Very Ripe: Use within 1–2 days.";
+                break;
+            case "overripe":
+                ripenessAdvice = "🚨 Overripe: Less than 24 hours — consider throwing it away!";
+                break;
+            default:
+                ripenessAdvice = "Ripeness estimate not available.";
+                break;
+        }
 
-            new AlertDialog.Builder(this)
-                    .setTitle("Classification Results")
-                    .setMessage(resultText.toString())
-                    .setPositiveButton("OK", null)
-                    .show();
+        resultText.append("\n\n").append(ripenessAdvice);
 
-        } catch (Exception e) {
-            Log.e(TAG, "Classification error: " + e.getMessage(), e);
-            Toast.makeText(this,
-                    "Classification error: " + e.getMessage(),
-                    Toast.LENGTH_LONG).show();
-        }
+        new AlertDialog.Builder(this)
+                .setTitle("Classification Results")
+                .setMessage(resultText.toString())
+                .setPositiveButton("OK", null)
+                .show();
     }
 
     @Override
@@ -506,12 +717,27 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        stopLiveScan();
+        // Write out pending diagnostics while the process is still in the foreground
+        diagnostics.flush();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (classifier != null) {
-            classifier.close();
-            classifier = null;
+        stopLiveScan();
+        liveScanner = null;
+        if (classificationService != null) {
+            classificationService.close();
+            classificationService = null;
+        }
+        if (classifierPool != null) {
+            // A classifier still borrowed by a running request is closed when it is released
+            classifierPool.close();
+            classifierPool = null;
         }
     }
 }
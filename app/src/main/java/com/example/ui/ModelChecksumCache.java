@@ -0,0 +1,124 @@
+package com.example.ui;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * On-disk cache of the model checksum. It remembers the checksum per
+ * installed build, so launches skip hashing the whole model, together with
+ * how long that hash took, so a launch can report the hashing it skipped.
+ * Interpreter initialization is not cached: it still runs on every launch.
+ */
+public class ModelChecksumCache {
+    private static final String TAG = "ModelChecksumCache";
+    private static final String CHECKSUM_FILE = "model.checksum";
+
+    private final File directory;
+    private boolean hit;
+    private long skippedHashNanos;
+
+    /**
+     * @param directory Cache directory, created on first write
+     */
+    public ModelChecksumCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the model checksum, reusing the stored one while the
+     * fingerprint matches. The fingerprint must change whenever the model
+     * can, e.g. the app's install time plus the model size. A null
+     * fingerprint always hashes the model.
+     */
+    public String modelHash(ByteBuffer modelBuffer, String fingerprint) {
+        long start = System.nanoTime();
+        hit = false;
+        skippedHashNanos = 0;
+        if (fingerprint == null) {
+            return InterpreterTuner.modelHash(modelBuffer);
+        }
+        String[] stored = read(new File(directory, CHECKSUM_FILE));
+        if (stored != null && stored.length == 3 && stored[0].equals(fingerprint)) {
+            try {
+                long hashNanos = Long.parseLong(stored[2]);
+                hit = true;
+                skippedHashNanos = Math.max(0, hashNanos - (System.nanoTime() - start));
+                return stored[1];
+            } catch (NumberFormatException e) {
+                DiagnosticLog.get().log(DiagnosticLog.WARN, TAG, "Corrupt checksum file");
+            }
+        }
+
+        long hashStart = System.nanoTime();
+        String hash = InterpreterTuner.modelHash(modelBuffer);
+        long hashNanos = System.nanoTime() - hashStart;
+        write(new File(directory, CHECKSUM_FILE), fingerprint + "\n" + hash + "\n" + hashNanos + "\n");
+        return hash;
+    }
+
+    /**
+     * True if the last modelHash call reused the stored checksum
+     */
+    public boolean isHit() {
+        return hit;
+    }
+
+    /**
+     * Hashing time the last modelHash call skipped: the hash time measured
+     * when the checksum was stored, less the time it took to read it back.
+     * 0 on a miss.
+     */
+    public long getSkippedHashNanos() {
+        return skippedHashNanos;
+    }
+
+    private static String[] read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            return new String(bytes, 0, read, StandardCharsets.UTF_8).trim().split("\n");
+        } catch (IOException e) {
+            DiagnosticLog.get().log(DiagnosticLog.WARN, TAG, "Could not read {}", file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes through a temporary file and a rename, so a crash never leaves
+     * a half-written entry behind
+     */
+    private void write(File file, String contents) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            DiagnosticLog.get().log(DiagnosticLog.WARN, TAG, "Could not create cache directory {}", directory.getPath());
+            return;
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            DiagnosticLog.get().log(DiagnosticLog.WARN, TAG, "Could not write {}", file.getName() + ": " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            DiagnosticLog.get().log(DiagnosticLog.WARN, TAG, "Could not replace {}", file.getName());
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Runs the combined fruit/ripeness model on an already filled input buffer.
+ * Outputs are written row by row as [batch, classes] in the element type
+ * given by their tensor format.
+ */
+public interface ModelRunner {
+    TensorFormat getInputFormat();
+    TensorFormat getOutputFormat(int index);
+    void resizeBatch(int batchSize);
+    void run(ByteBuffer input, ByteBuffer fruitOutput, ByteBuffer ripenessOutput);
+    void close();
+}
@@ -0,0 +1,185 @@
+package com.example.ui;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-stage latency histograms and event counters for the classification
+ * pipeline. One instance is shared by everything that works on the same
+ * images, so a snapshot shows where the time of a request goes.
+ */
+public class PipelineMetrics {
+
+    /**
+     * Timed pipeline stages
+     */
+    public enum Stage {
+        /** Reading and decoding the source image */
+        DECODE,
+        /** Scaling the image to the model input size */
+        RESIZE,
+        /** Normalizing pixels into the input tensor */
+        PREPROCESS,
+        /** Interpreter invocation */
+        INFERENCE,
+        /** Dequantization, softmax and argmax */
+        POSTPROCESS,
+        /** Waiting for a pooled classifier */
+        POOL_WAIT,
+        /** From request start until the result is ready */
+        END_TO_END
+    }
+
+    /**
+     * Counted pipeline events
+     */
+    public enum Counter {
+        INVOCATIONS,
+        ERRORS,
+        CACHE_HITS,
+        CACHE_MISSES,
+        POOL_WAITS
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+
+    public PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records how long a stage took
+     */
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public LatencyHistogram.Snapshot snapshot(Stage stage) {
+        return histograms[stage.ordinal()].snapshot();
+    }
+
+    /**
+     * Copies all histograms and counters
+     */
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] stages = new LatencyHistogram.Snapshot[STAGES.length];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = histograms[i].snapshot();
+        }
+        long[] counts = new long[COUNTERS.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = counters.get(i);
+        }
+        return new Snapshot(stages, counts);
+    }
+
+    /**
+     * Clears all histograms and counters
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    /**
+     * Point-in-time copy of the metrics, with text and JSON renderings
+     */
+    public static class Snapshot {
+        private final LatencyHistogram.Snapshot[] stages;
+        private final long[] counters;
+
+        Snapshot(LatencyHistogram.Snapshot[] stages, long[] counters) {
+            this.stages = stages;
+            this.counters = counters;
+        }
+
+        public LatencyHistogram.Snapshot get(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        public long get(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        /**
+         * One line per stage with samples, in microseconds, then the counters
+         */
+        public String toText() {
+            StringBuilder text = new StringBuilder();
+            for (Stage stage : STAGES) {
+                LatencyHistogram.Snapshot s = stages[stage.ordinal()];
+                if (s.count == 0) {
+                    continue;
+                }
+                text.append(stage.name().toLowerCase(Locale.ROOT))
+                        .append(": n=").append(s.count)
+                        .append(" p50=").append(micros(s.percentile(50)))
+                        .append(" p90=").append(micros(s.percentile(90)))
+                        .append(" p99=").append(micros(s.percentile(99)))
+                        .append(" max=").append(micros(s.maxNanos))
+                        .append(" us\n");
+            }
+            for (Counter counter : COUNTERS) {
+                text.append(counter.name().toLowerCase(Locale.ROOT)).append(": ")
+                        .append(counters[counter.ordinal()]).append('\n');
+            }
+            return text.toString();
+        }
+
+        /**
+         * All stages and counters as a JSON object, latencies in nanoseconds
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{\"stages\":{");
+            for (Stage stage : STAGES) {
+                LatencyHistogram.Snapshot s = stages[stage.ordinal()];
+                if (stage.ordinal() > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":{")
+                        .append("\"count\":").append(s.count)
+                        .append(",\"mean\":").append(s.meanNanos())
+                        .append(",\"p50\":").append(s.percentile(50))
+                        .append(",\"p90\":").append(s.percentile(90))
+                        .append(",\"p99\":").append(s.percentile(99))
+                        .append(",\"max\":").append(s.maxNanos)
+                        .append('}');
+            }
+            json.append("},\"counters\":{");
+            for (Counter counter : COUNTERS) {
+                if (counter.ordinal() > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(counter.name().toLowerCase(Locale.ROOT)).append("\":")
+                        .append(counters[counter.ordinal()]);
+            }
+            return json.append("}}").toString();
+        }
+
+        private static long micros(long nanos) {
+            return nanos / 1000;
+        }
+    }
+}
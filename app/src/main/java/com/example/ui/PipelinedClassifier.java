@@ -0,0 +1,211 @@
+package com.example.ui;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classifies a stream of images with preprocessing and inference on two
+ * separate threads, so that frame N+1 is resized and normalized while frame
+ * N is in the interpreter. The stages share a fixed set of input buffers and
+ * are connected by bounded queues, and results complete in submission order.
+ *
+ * While the pipeline is running the classifier must not be used directly.
+ */
+public class PipelinedClassifier {
+    private static final String TAG = "PipelinedClassifier";
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    private final ImageClassifier classifier;
+    private final BlockingQueue<Frame> pendingFrames;
+    private final BlockingQueue<Slot> freeSlots;
+    private final BlockingQueue<Slot> readySlots;
+    private final Thread preprocessThread;
+    private final Thread inferenceThread;
+    private volatile boolean closed = false;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+
+    /**
+     * One input buffer with the scratch state needed to fill it
+     */
+    private static class Slot {
+        final ByteBuffer buffer;
+        final InputTensorAdapter adapter;
+        final int[] pixels = new int[224 * 224];
+        Frame frame;
+
+        Slot(ByteBuffer buffer, InputTensorAdapter adapter) {
+            this.buffer = buffer;
+            this.adapter = adapter;
+        }
+    }
+
+    private static class Frame {
+        final Bitmap bitmap;
+        final int[] pixels;
+        final ImageClassifier.CombinedClassificationResult result;
+        final CompletableFuture<ImageClassifier.CombinedClassificationResult> future = new CompletableFuture<>();
+
+        Frame(Bitmap bitmap, int[] pixels, ImageClassifier.CombinedClassificationResult result) {
+            this.bitmap = bitmap;
+            this.pixels = pixels;
+            this.result = result;
+        }
+    }
+
+    /**
+     * @param classifier The classifier to run, owned by the pipeline until close
+     * @param numBuffers Number of input buffers shared by the stages, at least 2
+     */
+    public PipelinedClassifier(ImageClassifier classifier, int numBuffers) {
+        if (numBuffers < 2) {
+            throw new IllegalArgumentException("Pipelining needs at least 2 buffers");
+        }
+
+        this.classifier = classifier;
+        this.pendingFrames = new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY);
+        this.freeSlots = new ArrayBlockingQueue<>(numBuffers);
+        this.readySlots = new ArrayBlockingQueue<>(numBuffers);
+        for (int i = 0; i < numBuffers; i++) {
+            freeSlots.add(new Slot(classifier.createInputBuffer(), classifier.createInputAdapter()));
+        }
+
+        preprocessThread = new Thread(this::preprocessLoop, "PipelinePreprocess");
+        inferenceThread = new Thread(this::inferenceLoop, "PipelineInference");
+        preprocessThread.start();
+        inferenceThread.start();
+    }
+
+    /**
+     * Queues a bitmap for classification, blocking while the pipeline is full
+     *
+     * @return A future completed with the result once inference has finished
+     */
+    public CompletableFuture<ImageClassifier.CombinedClassificationResult> submit(Bitmap bitmap)
+            throws InterruptedException {
+        return submit(new Frame(bitmap, null, new ImageClassifier.CombinedClassificationResult()));
+    }
+
+    /**
+     * Queues 224x224 ARGB pixels for classification
+     */
+    CompletableFuture<ImageClassifier.CombinedClassificationResult> submitPixels(int[] pixels)
+            throws InterruptedException {
+        return submitPixels(pixels, new ImageClassifier.CombinedClassificationResult());
+    }
+
+    /**
+     * Queues 224x224 ARGB pixels for classification into the given result.
+     * The pixels are read on the preprocessing thread, so the caller must not
+     * reuse them or the result until the future is done.
+     */
+    CompletableFuture<ImageClassifier.CombinedClassificationResult> submitPixels(
+            int[] pixels, ImageClassifier.CombinedClassificationResult result) throws InterruptedException {
+        return submit(new Frame(null, pixels, result));
+    }
+
+    private CompletableFuture<ImageClassifier.CombinedClassificationResult> submit(Frame frame)
+            throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        pendingFrames.put(frame);
+        submittedCount.incrementAndGet();
+        if (closed) {
+            // close may already have drained the queue, so nothing else would complete this frame
+            pendingFrames.remove(frame);
+            frame.future.completeExceptionally(new CancellationException("Pipeline closed"));
+        }
+        return frame.future;
+    }
+
+    private void preprocessLoop() {
+        Frame frame = null;
+        try {
+            while (!closed) {
+                frame = pendingFrames.take();
+                Slot slot = freeSlots.take();
+                slot.frame = frame;
+                try {
+                    int[] source = frame.pixels;
+                    if (source == null) {
+                        classifier.scaleToPixels(frame.bitmap, slot.pixels);
+                        source = slot.pixels;
+                    }
+                    slot.buffer.rewind();
+                    slot.adapter.write(source, source.length, slot.buffer);
+                } catch (RuntimeException e) {
+                    DiagnosticLog.get().log(DiagnosticLog.ERROR, TAG, "Preprocessing failed: {}", String.valueOf(e));
+                    frame.future.completeExceptionally(e);
+                }
+                // Failed frames still pass through so that results stay in order
+                readySlots.put(slot);
+                frame = null;
+            }
+        } catch (InterruptedException e) {
+            if (frame != null) {
+                frame.future.completeExceptionally(new CancellationException("Pipeline closed"));
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void inferenceLoop() {
+        try {
+            while (!closed) {
+                Slot slot = readySlots.take();
+                Frame frame = slot.frame;
+                slot.frame = null;
+                if (!frame.future.isDone()) {
+                    try {
+                        frame.future.complete(classifier.classifyPreprocessed(slot.buffer, frame.result));
+                    } catch (RuntimeException e) {
+                        DiagnosticLog.get().log(DiagnosticLog.ERROR, TAG, "Inference failed: {}", String.valueOf(e));
+                        frame.future.completeExceptionally(e);
+                    }
+                }
+                completedCount.incrementAndGet();
+                freeSlots.put(slot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Stops both stages and cancels frames that have not been classified.
+     * A submit racing with close cancels its own frame. The classifier is
+     * handed back to the caller and is not closed.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        preprocessThread.interrupt();
+        inferenceThread.interrupt();
+        preprocessThread.join();
+        inferenceThread.join();
+
+        Frame frame;
+        while ((frame = pendingFrames.poll()) != null) {
+            frame.future.completeExceptionally(new CancellationException("Pipeline closed"));
+        }
+        Slot slot;
+        while ((slot = readySlots.poll()) != null) {
+            slot.frame.future.completeExceptionally(new CancellationException("Pipeline closed"));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.ui;
+
+/**
+ * Smooths a stream of per-frame predictions with an exponential moving
+ * average over the fruit and ripeness probabilities. The smoothed decision
+ * counts as stable once its labels held for a number of consecutive frames.
+ * While it is stable and the scene hash stays close, the inference interval
+ * backs off exponentially so an idle scanner mostly sleeps.
+ */
+public class PredictionSmoother {
+    public static final float DEFAULT_ALPHA = 0.3f;
+    public static final int DEFAULT_STABLE_FRAMES = 5;
+    public static final long DEFAULT_MAX_INTERVAL_MS = 1600;
+    public static final int DEFAULT_SCENE_TOLERANCE = 6;
+
+    private static final long MIN_INTERVAL_MS = 100;
+
+    private final float alpha;
+    private final int stableFrames;
+    private final long maxIntervalMs;
+    private final int sceneTolerance;
+
+    private float[] fruitAverage;
+    private float[] ripenessAverage;
+    private int fruitIndex = -1;
+    private int ripenessIndex = -1;
+    private int stableCount;
+
+    private long lastSceneHash;
+    private long lastInferenceMs;
+    private long intervalMs;
+
+    public PredictionSmoother() {
+        this(DEFAULT_ALPHA, DEFAULT_STABLE_FRAMES, DEFAULT_MAX_INTERVAL_MS, DEFAULT_SCENE_TOLERANCE);
+    }
+
+    /**
+     * @param alpha          Weight of the newest frame in the moving average, in (0, 1]
+     * @param stableFrames   Consecutive frames with the same labels before the decision is stable
+     * @param maxIntervalMs  Longest pause between inferences on an unchanged, stable scene
+     * @param sceneTolerance Hamming distance between scene hashes still treated as the same scene
+     */
+    public PredictionSmoother(float alpha, int stableFrames, long maxIntervalMs, int sceneTolerance) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Alpha must be in (0, 1]");
+        }
+        if (stableFrames < 1) {
+            throw new IllegalArgumentException("Stable frame count must be at least 1");
+        }
+        this.alpha = alpha;
+        this.stableFrames = stableFrames;
+        this.maxIntervalMs = maxIntervalMs;
+        this.sceneTolerance = sceneTolerance;
+    }
+
+    /**
+     * Decides whether a frame needs inference. Frames are skipped only while
+     * the decision is stable, the scene looks unchanged and the current
+     * back-off interval has not elapsed.
+     *
+     * @param sceneHash Perceptual hash of the frame
+     * @param nowMs     Current time in milliseconds
+     */
+    public boolean shouldInfer(long sceneHash, long nowMs) {
+        if (!isStable()) {
+            return true;
+        }
+        if (PerceptualHash.distance(sceneHash, lastSceneHash) > sceneTolerance) {
+            // Something moved into view, go back to full rate until it settles
+            stableCount = 0;
+            intervalMs = 0;
+            return true;
+        }
+        return nowMs - lastInferenceMs >= intervalMs;
+    }
+
+    /**
+     * Adds a classified frame and writes the smoothed prediction
+     *
+     * @param frame     The per-frame result
+     * @param sceneHash Perceptual hash of the frame
+     * @param nowMs     Current time in milliseconds
+     * @param smoothed  Receives the averaged probabilities, labels and confidences
+     * @return Whether the decision is stable
+     */
+    public boolean update(ImageClassifier.CombinedClassificationResult frame, long sceneHash, long nowMs,
+                          ImageClassifier.CombinedClassificationResult smoothed) {
+        boolean first = fruitAverage == null;
+        if (first) {
+            fruitAverage = frame.fruitProbabilities.clone();
+            ripenessAverage = frame.ripenessProbabilities.clone();
+        } else {
+            blend(fruitAverage, frame.fruitProbabilities);
+            blend(ripenessAverage, frame.ripenessProbabilities);
+        }
+
+        int newFruitIndex = argmax(fruitAverage);
+        int newRipenessIndex = argmax(ripenessAverage);
+        if (newFruitIndex == fruitIndex && newRipenessIndex == ripenessIndex) {
+            stableCount++;
+        } else {
+            fruitIndex = newFruitIndex;
+            ripenessIndex = newRipenessIndex;
+            stableCount = 1;
+        }
+
+        if (isStable()) {
+            intervalMs = intervalMs == 0 ? MIN_INTERVAL_MS : Math.min(maxIntervalMs, intervalMs * 2);
+        } else {
+            intervalMs = 0;
+        }
+        lastSceneHash = sceneHash;
+        lastInferenceMs = nowMs;
+
+        smoothed.fruitProbabilities = copyInto(fruitAverage, smoothed.fruitProbabilities);
+        smoothed.ripenessProbabilities = copyInto(ripenessAverage, smoothed.ripenessProbabilities);
+        smoothed.fruitIndex = fruitIndex;
+        smoothed.ripenessIndex = ripenessIndex;
+        // Confidences are percentages, like the classifier's own results
+        smoothed.fruitConfidence = fruitAverage[fruitIndex] * 100;
+        smoothed.ripenessConfidence = ripenessAverage[ripenessIndex] * 100;
+        return isStable();
+    }
+
+    private void blend(float[] average, float[] sample) {
+        for (int i = 0; i < average.length; i++) {
+            average[i] += alpha * (sample[i] - average[i]);
+        }
+    }
+
+    private static int argmax(float[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static float[] copyInto(float[] source, float[] target) {
+        if (target == null || target.length != source.length) {
+            target = new float[source.length];
+        }
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+
+    /**
+     * Forgets all history, e.g. when scanning restarts
+     */
+    public void reset() {
+        fruitAverage = null;
+        ripenessAverage = null;
+        fruitIndex = -1;
+        ripenessIndex = -1;
+        stableCount = 0;
+        intervalMs = 0;
+    }
+
+    public boolean isStable() {
+        return stableCount >= stableFrames;
+    }
+
+    public int getStableCount() {
+        return stableCount;
+    }
+
+    /**
+     * Current pause between inferences, 0 while running at full rate
+     */
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+}
@@ -1,27 +1,44 @@
 package com.example.ui;
 
-import androidx.xr.scenecore.Image;
-
+import java.util.concurrent.CompletableFuture;
 
 public class SaveImage implements ICommand{
     private ImageRepo imageRepo;
+    private WriteBehindQueue persistence;
     private Image image;
+    // Only touched by the writer thread, which runs execute and undo in order
     private String location;
+    private CompletableFuture<String> saved;
 
-    public SaveImage(ImageRepo repo, Image image) {
+    public SaveImage(ImageRepo repo, WriteBehindQueue persistence, Image image) {
         this.imageRepo = repo;
+        this.persistence = persistence;
         this.image = image;
     }
 
     @Override
     public void execute() {
-        location = imageRepo.saveImage((android.media.Image) image);
+        saved = persistence.submit(() -> location = imageRepo.saveImage(image));
     }
 
     @Override
     public void undo() {
-        if (location != null) {
-            imageRepo.deleteImage(location);
+        if (saved != null) {
+            persistence.submit(() -> {
+                if (location != null) {
+                    imageRepo.deleteImage(location);
+                    location = null;
+                }
+                return null;
+            });
         }
     }
+
+    /**
+     * Completes with the image location once the image is durable, null
+     * before execute
+     */
+    public CompletableFuture<String> getSaved() {
+        return saved;
+    }
 }
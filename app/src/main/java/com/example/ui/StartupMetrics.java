@@ -0,0 +1,126 @@
+package com.example.ui;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cold start milestones, measured from a fixed origin such as process start.
+ * Each milestone keeps only the first time it was reached, so later
+ * classifications or a reloaded model do not overwrite the startup numbers.
+ */
+public class StartupMetrics {
+
+    /**
+     * Startup milestones in the order they are normally reached
+     */
+    public enum Milestone {
+        /** Model mapped and interpreter created */
+        MODEL_LOADED,
+        /** Warm-up inferences finished */
+        WARMED_UP,
+        /** Main content visible with the capture and select buttons enabled */
+        INTERACTIVE,
+        /** First classification result shown to the user */
+        FIRST_INFERENCE
+    }
+
+    private static final Milestone[] MILESTONES = Milestone.values();
+    private static final long NOT_REACHED = Long.MIN_VALUE;
+
+    private final long originNanos;
+    private final AtomicLongArray elapsedNanos = new AtomicLongArray(MILESTONES.length);
+    private volatile String checksumCache = "none";
+    private volatile long hashSkippedNanos;
+
+    /**
+     * @param originNanos System.nanoTime() value that counts as time zero
+     */
+    public StartupMetrics(long originNanos) {
+        this.originNanos = originNanos;
+        for (int i = 0; i < MILESTONES.length; i++) {
+            elapsedNanos.set(i, NOT_REACHED);
+        }
+    }
+
+    /**
+     * Records that a milestone was reached now
+     *
+     * @return True if this was the first time
+     */
+    public boolean mark(Milestone milestone) {
+        return mark(milestone, System.nanoTime());
+    }
+
+    boolean mark(Milestone milestone, long nowNanos) {
+        return elapsedNanos.compareAndSet(milestone.ordinal(), NOT_REACHED, nowNanos - originNanos);
+    }
+
+    public boolean isReached(Milestone milestone) {
+        return elapsedNanos.get(milestone.ordinal()) != NOT_REACHED;
+    }
+
+    /**
+     * Returns the time from the origin to the milestone, or -1 if it was not reached yet
+     */
+    public long elapsedMillis(Milestone milestone) {
+        long nanos = elapsedNanos.get(milestone.ordinal());
+        return nanos == NOT_REACHED ? -1 : nanos / 1_000_000;
+    }
+
+    /**
+     * Records whether the model checksum came from the on-disk checksum
+     * cache and how much hashing time that skipped. Interpreter
+     * initialization is not cached, so this is not init time saved.
+     */
+    public void recordChecksumCache(boolean hit, long skippedNanos) {
+        hashSkippedNanos = skippedNanos;
+        checksumCache = hit ? "hit" : "miss";
+    }
+
+    /**
+     * Returns "hit", "miss", or "none" when no cache was used
+     */
+    public String getChecksumCache() {
+        return checksumCache;
+    }
+
+    public long getHashSkippedMillis() {
+        return hashSkippedNanos / 1_000_000;
+    }
+
+    /**
+     * One line per reached milestone, in milliseconds, then the checksum cache outcome
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Milestone milestone : MILESTONES) {
+            if (isReached(milestone)) {
+                text.append(milestone.name().toLowerCase(Locale.ROOT)).append(": ")
+                        .append(elapsedMillis(milestone)).append(" ms\n");
+            }
+        }
+        String cache = checksumCache;
+        if (!"none".equals(cache)) {
+            text.append("checksum_cache: ").append(cache)
+                    .append(", hashing skipped ").append(getHashSkippedMillis()).append(" ms\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * All milestones as a JSON object in milliseconds, -1 for unreached ones
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Milestone milestone : MILESTONES) {
+            if (milestone.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(milestone.name().toLowerCase(Locale.ROOT)).append("_ms\":")
+                    .append(elapsedMillis(milestone));
+        }
+        json.append(",\"checksum_cache\":\"").append(checksumCache)
+                .append("\",\"hash_skipped_ms\":").append(getHashSkippedMillis());
+        return json.append('}').toString();
+    }
+}
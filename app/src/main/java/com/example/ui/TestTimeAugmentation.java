@@ -0,0 +1,142 @@
+package com.example.ui;
+
+import java.util.List;
+
+/**
+ * Test-time augmentation for low-confidence images. The image is scaled
+ * once to a slightly larger square, and five views are cut from it: a
+ * mirrored center crop and the four corner crops. They are classified in a
+ * single batch and combined with the first-pass prediction.
+ */
+public class TestTimeAugmentation {
+    public static final int NUM_VIEWS = 5;
+    public static final float DEFAULT_CONFIDENCE_THRESHOLD = 0.6f;
+
+    /**
+     * How view predictions are merged
+     */
+    public enum Combine {
+        /** Average the probability vectors */
+        MEAN,
+        /** Per head, keep the prediction of the most confident view */
+        MAX_CONFIDENCE
+    }
+
+    private final float confidenceThreshold;
+    private final Combine combine;
+
+    /**
+     * @param confidenceThreshold Augment when the top fruit or ripeness probability of the first pass is below this
+     * @param combine             How to merge the view predictions
+     */
+    public TestTimeAugmentation(float confidenceThreshold, Combine combine) {
+        this.confidenceThreshold = confidenceThreshold;
+        this.combine = combine;
+    }
+
+    public boolean shouldAugment(ImageClassifier.CombinedClassificationResult firstPass) {
+        // Confidences are percentages, compare the probabilities themselves
+        return Math.min(firstPass.fruitProbabilities[firstPass.fruitIndex],
+                firstPass.ripenessProbabilities[firstPass.ripenessIndex]) < confidenceThreshold;
+    }
+
+    /**
+     * Side of the square the views are cut from, about 8/7 of the view size
+     * as in the usual resize-then-crop evaluation
+     */
+    public static int sourceSize(int viewSize) {
+        return viewSize * 8 / 7;
+    }
+
+    /**
+     * Copies one view out of the larger source square
+     *
+     * @param source     Source ARGB pixels, sourceSize x sourceSize
+     * @param sourceSize Side of the source square
+     * @param view       View index, 0 to NUM_VIEWS - 1
+     * @param dst        Destination pixels, size x size
+     * @param size       Side of the view
+     */
+    public static void extractView(int[] source, int sourceSize, int view, int[] dst, int size) {
+        int margin = sourceSize - size;
+        if (view == 0) {
+            // Mirrored center crop
+            int left = margin / 2;
+            int top = margin / 2;
+            for (int y = 0; y < size; y++) {
+                int srcRow = (top + y) * sourceSize + left + size - 1;
+                int dstRow = y * size;
+                for (int x = 0; x < size; x++) {
+                    dst[dstRow + x] = source[srcRow - x];
+                }
+            }
+            return;
+        }
+
+        int left = (view == 2 || view == 4) ? margin : 0;
+        int top = (view == 3 || view == 4) ? margin : 0;
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(source, (top + y) * sourceSize + left, dst, y * size, size);
+        }
+    }
+
+    /**
+     * Merges the first-pass prediction with the view predictions
+     *
+     * @param firstPass The prediction on the whole image
+     * @param views     The predictions on the augmented views
+     * @param result    Receives the merged prediction, may be firstPass itself
+     */
+    public void combine(ImageClassifier.CombinedClassificationResult firstPass,
+                        List<ImageClassifier.CombinedClassificationResult> views,
+                        ImageClassifier.CombinedClassificationResult result) {
+        if (result != firstPass) {
+            result.copyFrom(firstPass);
+        }
+
+        if (combine == Combine.MEAN) {
+            for (ImageClassifier.CombinedClassificationResult view : views) {
+                add(result.fruitProbabilities, view.fruitProbabilities);
+                add(result.ripenessProbabilities, view.ripenessProbabilities);
+            }
+            float scale = 1.0f / (views.size() + 1);
+            result.fruitIndex = scaleAndArgmax(result.fruitProbabilities, scale);
+            result.ripenessIndex = scaleAndArgmax(result.ripenessProbabilities, scale);
+            result.fruitConfidence = result.fruitProbabilities[result.fruitIndex] * 100;
+            result.ripenessConfidence = result.ripenessProbabilities[result.ripenessIndex] * 100;
+            return;
+        }
+
+        for (ImageClassifier.CombinedClassificationResult view : views) {
+            if (view.fruitConfidence > result.fruitConfidence) {
+                System.arraycopy(view.fruitProbabilities, 0, result.fruitProbabilities, 0,
+                        result.fruitProbabilities.length);
+                result.fruitIndex = view.fruitIndex;
+                result.fruitConfidence = view.fruitConfidence;
+            }
+            if (view.ripenessConfidence > result.ripenessConfidence) {
+                System.arraycopy(view.ripenessProbabilities, 0, result.ripenessProbabilities, 0,
+                        result.ripenessProbabilities.length);
+                result.ripenessIndex = view.ripenessIndex;
+                result.ripenessConfidence = view.ripenessConfidence;
+            }
+        }
+    }
+
+    private static void add(float[] sum, float[] values) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += values[i];
+        }
+    }
+
+    private static int scaleAndArgmax(float[] values, float scale) {
+        int best = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= scale;
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.ui;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ModelRunner backed by a TensorFlow Lite interpreter
+ */
+public class TfLiteModelRunner implements ModelRunner {
+    private final Interpreter interpreter;
+    private final int[] inputShape;
+
+    // Reused across calls so that running the model does not allocate
+    private final Object[] inputs = new Object[1];
+    private final Map<Integer, Object> outputMap = new HashMap<>();
+
+    public TfLiteModelRunner(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.inputShape = interpreter.getInputTensor(0).shape().clone();
+    }
+
+    @Override
+    public TensorFormat getInputFormat() {
+        return formatOf(interpreter.getInputTensor(0));
+    }
+
+    @Override
+    public TensorFormat getOutputFormat(int index) {
+        return formatOf(interpreter.getOutputTensor(index));
+    }
+
+    private static TensorFormat formatOf(Tensor tensor) {
+        Tensor.QuantizationParams params = tensor.quantizationParams();
+        return TensorFormat.of(tensor.dataType().name(), params.getScale(), params.getZeroPoint());
+    }
+
+    @Override
+    public void resizeBatch(int batchSize) {
+        inputShape[0] = batchSize;
+        interpreter.resizeInput(0, inputShape);
+        interpreter.allocateTensors();
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer fruitOutput, ByteBuffer ripenessOutput) {
+        input.rewind();
+        fruitOutput.rewind();
+        ripenessOutput.rewind();
+
+        inputs[0] = input;
+        outputMap.put(0, fruitOutput);
+        outputMap.put(1, ripenessOutput);
+        interpreter.runForMultipleInputsOutputs(inputs, outputMap);
+        inputs[0] = null;
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+    }
+}
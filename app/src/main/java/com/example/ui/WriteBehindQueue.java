@@ -0,0 +1,313 @@
+package com.example.ui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind persistence with group commit. Writes are queued and run on a
+ * single writer thread in submission order. The writer collects a batch until
+ * it holds maxBatchSize writes or its oldest write has waited maxDelayMs, runs
+ * them, then syncs once for the whole batch. Each caller gets a future that
+ * completes only after that sync, so it means durable, not just written.
+ * <p>
+ * The queue is bounded: when it is full, {@link #submit} blocks until the
+ * writer catches up, so a burst of scans slows down instead of growing memory.
+ */
+public class WriteBehindQueue implements Closeable {
+    private static final String TAG = "WriteBehindQueue";
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_DELAY_MS = 50;
+
+    /**
+     * One pending write, run on the writer thread
+     */
+    public interface Write<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Makes every write of a batch durable, e.g. {@link HistoryStore#sync()}
+     */
+    public interface Syncer {
+        void sync() throws IOException;
+    }
+
+    private static final class Pending<T> {
+        final Write<T> write;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        // Ends the batch right away instead of waiting for more writes
+        final boolean urgent;
+        final long enqueuedNanos = System.nanoTime();
+        T result;
+        Exception failure;
+
+        Pending(Write<T> write, boolean urgent) {
+            this.write = write;
+            this.urgent = urgent;
+        }
+
+        void run() {
+            try {
+                result = write.run();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        void complete(Exception syncFailure) {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else if (syncFailure != null) {
+                future.completeExceptionally(syncFailure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    // Markers that only end a batch
+    private static final Write<Void> NO_WRITE = () -> null;
+    private static final Pending<Void> CLOSE = new Pending<>(NO_WRITE, true);
+
+    private final Syncer syncer;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending<?>> queue;
+    private final Thread writer;
+    private final DiagnosticLog diagnostics = DiagnosticLog.get();
+
+    // Submitters hold the read lock while enqueueing, so nothing is accepted after close
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private volatile long batchCount;
+    private volatile long writeCount;
+    private volatile int maxObservedBatchSize;
+    private volatile long failureCount;
+    private final AtomicLong backpressureCount = new AtomicLong();
+
+    /**
+     * @param syncer       Called once per batch after its writes ran
+     * @param capacity     Pending writes before submit blocks
+     * @param maxBatchSize Writes that trigger a flush
+     * @param maxDelayMs   Longest a write waits for others before a flush
+     */
+    public WriteBehindQueue(Syncer syncer, int capacity, int maxBatchSize, long maxDelayMs) {
+        if (capacity <= 0 || maxBatchSize <= 0 || maxDelayMs < 0) {
+            throw new IllegalArgumentException("Invalid queue size, batch size or delay");
+        }
+        this.syncer = syncer;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::runWriter, "WriteBehind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public WriteBehindQueue(Syncer syncer) {
+        this(syncer, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MS);
+    }
+
+    /**
+     * Queues a write, blocking while the queue is full
+     *
+     * @return Completes with the write's result once the batch holding it was
+     * synced, or exceptionally if the write or the sync failed
+     */
+    public <T> CompletableFuture<T> submit(Write<T> write) {
+        return enqueue(new Pending<>(write, false));
+    }
+
+    /**
+     * Flushes everything submitted so far without waiting for the batch to fill
+     *
+     * @return Completes once all earlier writes are durable
+     */
+    public CompletableFuture<Void> flush() {
+        return enqueue(new Pending<>(NO_WRITE, true));
+    }
+
+    private <T> CompletableFuture<T> enqueue(Pending<T> pending) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-behind queue is closed");
+            }
+            if (!queue.offer(pending)) {
+                backpressureCount.incrementAndGet();
+                queue.put(pending);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending.future;
+    }
+
+    private void runWriter() {
+        List<Pending<?>> batch = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                Pending<?> first = queue.take();
+                // The delay counts from when the oldest write was queued, not from when the writer got to it
+                long deadline = first.enqueuedNanos + maxDelayNanos;
+                batch.add(first);
+                boolean full = first.urgent;
+                while (!full && batch.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending<?> next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    full = next.urgent;
+                }
+                running = batch.get(batch.size() - 1) != CLOSE;
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Runs a batch, syncs once and completes its futures
+     */
+    private void commit(List<Pending<?>> batch) {
+        long start = System.nanoTime();
+        for (Pending<?> pending : batch) {
+            pending.run();
+        }
+        Exception syncFailure = null;
+        try {
+            syncer.sync();
+        } catch (IOException | RuntimeException e) {
+            syncFailure = e;
+            diagnostics.log(DiagnosticLog.ERROR, TAG, "Sync failed: {} ({} writes)",
+                    String.valueOf(e.getMessage()), batch.size());
+        }
+        long end = System.nanoTime();
+        flushLatency.record(end - start);
+
+        int writes = 0;
+        for (Pending<?> pending : batch) {
+            if (pending.write == NO_WRITE) {
+                continue;
+            }
+            if (pending.failure != null || syncFailure != null) {
+                failureCount++;
+            }
+            commitLatency.record(end - pending.enqueuedNanos);
+            writes++;
+        }
+        batchCount++;
+        writeCount += writes;
+        if (writes > maxObservedBatchSize) {
+            maxObservedBatchSize = writes;
+        }
+
+        // Stats first, so a caller woken by its future sees its own batch counted
+        for (Pending<?> pending : batch) {
+            pending.complete(syncFailure);
+        }
+    }
+
+    /**
+     * Flushes pending writes and stops the writer thread
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    public double getMeanBatchSize() {
+        long batches = batchCount;
+        return batches == 0 ? 0.0 : (double) writeCount / batches;
+    }
+
+    public int getMaxBatchSize() {
+        return maxObservedBatchSize;
+    }
+
+    /**
+     * Writes whose future completed exceptionally
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Submits that had to wait for room in the queue
+     */
+    public long getBackpressureCount() {
+        return backpressureCount.get();
+    }
+
+    /**
+     * Time from the start of a batch until its sync returned
+     */
+    public LatencyHistogram.Snapshot getFlushLatency() {
+        return flushLatency.snapshot();
+    }
+
+    /**
+     * Time from submit until the write was durable
+     */
+    public LatencyHistogram.Snapshot getCommitLatency() {
+        return commitLatency.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        LatencyHistogram.Snapshot flush = flushLatency.snapshot();
+        return "batches=" + batchCount + ", writes=" + writeCount
+                + String.format(Locale.US, ", mean batch=%.1f", getMeanBatchSize())
+                + ", max batch=" + maxObservedBatchSize
+                + ", flush p50=" + flush.percentile(50) / 1000 + " us p99=" + flush.percentile(99) / 1000 + " us"
+                + ", failures=" + failureCount + ", backpressure=" + backpressureCount.get();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the sharded on-disk blob store
+ */
+public class BlobStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that blobs are sharded by their first two hex digits and written once
+     */
+    @Test
+    public void testPutShardsAndDeduplicates() throws IOException {
+        BlobStore store = new BlobStore(folder.getRoot());
+
+        assertTrue(store.put("ab12ef", new byte[]{1, 2, 3}));
+        assertFalse(store.put("ab12ef", new byte[]{9}));
+
+        assertTrue(new File(new File(folder.getRoot(), "ab"), "12ef").isFile());
+        assertArrayEquals(new byte[]{1, 2, 3}, store.get("ab12ef"));
+        assertTrue(store.contains("ab12ef"));
+    }
+
+    /**
+     * Tests lookups of missing blobs and names that cannot be hashes
+     */
+    @Test
+    public void testMissingAndInvalid() throws IOException {
+        BlobStore store = new BlobStore(folder.getRoot());
+
+        assertNull(store.get("ab12ef"));
+        assertNull(store.get("not-a-hash"));
+        assertFalse(store.contains("../etc"));
+        assertFalse(store.delete("AB12EF"));
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        BlobStore store = new BlobStore(folder.getRoot());
+        store.put("0123", new byte[0]);
+
+        assertTrue(store.delete("0123"));
+        assertFalse(store.delete("0123"));
+        assertNull(store.get("0123"));
+    }
+
+    /**
+     * Tests that syncing forces blobs and their shard directories, including
+     * blobs deleted again and shards created by the writes
+     */
+    @Test
+    public void testSync() throws IOException {
+        BlobStore store = new BlobStore(new File(folder.getRoot(), "blobs"));
+        store.put("ab12ef", new byte[]{1});
+        store.put("cd34", new byte[]{2});
+        store.put("ab56", new byte[]{3});
+        store.delete("cd34");
+
+        store.sync();
+        store.sync();
+        assertArrayEquals(new byte[]{3}, store.get("ab56"));
+        assertNull(store.get("cd34"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutRejectsInvalidHash() throws IOException {
+        new BlobStore(folder.getRoot()).put("../escape", new byte[0]);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the perceptual hash and the result cache built on it
+ */
+public class ClassificationCacheTest {
+    private static final int SIZE = 224;
+
+    private static ImageClassifier.CombinedClassificationResult result(int fruitIndex) {
+        ImageClassifier.CombinedClassificationResult result = new ImageClassifier.CombinedClassificationResult();
+        result.fruitProbabilities = new float[]{0.1f, 0.2f, 0.7f};
+        result.ripenessProbabilities = new float[]{0.25f, 0.25f, 0.25f, 0.25f};
+        result.fruitIndex = fruitIndex;
+        result.fruitConfidence = 0.7f;
+        return result;
+    }
+
+    private static int[] gradient(boolean rising) {
+        int[] pixels = new int[SIZE * SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            int x = i % SIZE;
+            int v = (rising ? x : SIZE - 1 - x) * 255 / SIZE;
+            pixels[i] = 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+        return pixels;
+    }
+
+    /**
+     * Tests that small pixel noise keeps the hash close while different content moves it far
+     */
+    @Test
+    public void testHashIsStableUnderNoise() {
+        int[] image = gradient(true);
+        int[] noisy = image.clone();
+        for (int i = 0; i < noisy.length; i += 7) {
+            noisy[i] ^= 0x030303;
+        }
+
+        long hash = PerceptualHash.dHash(image, SIZE, SIZE);
+        assertEquals(0L, hash);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(noisy, SIZE, SIZE)) <= 2);
+        assertEquals(-1L, PerceptualHash.dHash(gradient(false), SIZE, SIZE));
+        assertEquals(64, PerceptualHash.distance(hash, -1L));
+    }
+
+    /**
+     * Tests exact and near hits, model separation and counters
+     */
+    @Test
+    public void testLookup() {
+        ClassificationCache cache = new ClassificationCache(8, 2);
+        cache.put("a", 0b1010L, result(2));
+
+        ImageClassifier.CombinedClassificationResult out = new ImageClassifier.CombinedClassificationResult();
+        assertTrue(cache.get("a", 0b1010L, out));
+        assertEquals(2, out.fruitIndex);
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.7f}, out.fruitProbabilities, 0.0f);
+
+        assertTrue(cache.get("a", 0b1001L, out));
+        assertFalse(cache.get("a", 0b0101L, out));
+        assertFalse(cache.get("b", 0b1010L, out));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getNearHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Tests that stored results are copies and hits reuse the caller's arrays
+     */
+    @Test
+    public void testResultsAreCopied() {
+        ClassificationCache cache = new ClassificationCache(4, 0);
+        ImageClassifier.CombinedClassificationResult stored = result(1);
+        cache.put("m", 42L, stored);
+        stored.fruitProbabilities[0] = 9f;
+
+        ImageClassifier.CombinedClassificationResult out = result(0);
+        float[] array = out.fruitProbabilities;
+        assertTrue(cache.get("m", 42L, out));
+        assertSame(array, out.fruitProbabilities);
+        assertEquals(0.1f, out.fruitProbabilities[0], 0.0f);
+        assertEquals(1, out.fruitIndex);
+    }
+
+    /**
+     * Tests that the least recently used entry is evicted first
+     */
+    @Test
+    public void testLruEviction() {
+        ClassificationCache cache = new ClassificationCache(2, 0);
+        ImageClassifier.CombinedClassificationResult out = new ImageClassifier.CombinedClassificationResult();
+        cache.put("m", 1L, result(0));
+        cache.put("m", 2L, result(1));
+        assertTrue(cache.get("m", 1L, out));
+        cache.put("m", 3L, result(2));
+
+        assertTrue(cache.get("m", 1L, out));
+        assertFalse(cache.get("m", 2L, out));
+        assertTrue(cache.get("m", 3L, out));
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.invalidate("m");
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for saving scans to the image repo and history store
+ */
+public class DatabaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<ClassificationRecord> readAll(HistoryStore store) throws IOException {
+        List<ClassificationRecord> records = new ArrayList<>();
+        store.forEach(record -> {
+            ClassificationRecord copy = new ClassificationRecord();
+            copy.copyFrom(record);
+            records.add(copy);
+        });
+        return records;
+    }
+
+    /**
+     * Tests that a produce name is stored as a label with the image reference
+     */
+    @Test
+    public void testSaveWithProduceName() throws IOException {
+        ImageRepo images = new ImageRepo(folder.newFolder("images"));
+        try (HistoryStore history = new HistoryStore(folder.newFolder("history"))) {
+            Database db = new Database(history, images);
+            db.save(new Image("banana"), "OverRipe Banana");
+            db.save(new Image("mango"), "Mango");
+
+            List<ClassificationRecord> records = readAll(history);
+            assertEquals(2, records.size());
+            ClassificationRecord banana = records.get(0);
+            assertEquals(0, banana.fruitIndex);
+            assertEquals(0, banana.ripenessIndex);
+            assertEquals(1.0f, banana.fruitProbabilities[0], 0.0f);
+            assertEquals(1.0f, banana.ripenessProbabilities[0], 0.0f);
+            assertEquals("banana", images.getImage(banana.getImageLocation()).getData());
+
+            ClassificationRecord mango = records.get(1);
+            assertEquals(1, mango.fruitIndex);
+            assertEquals(-1, mango.ripenessIndex);
+            assertEquals(0.0f, mango.ripenessProbabilities[1], 0.0f);
+
+            LocalDate today = db.getIndex().dayOf(banana.timestampMs);
+            assertEquals(1, db.getIndex().count(0, 0, today, today));
+            assertEquals(1, db.getIndex().count(1, HistoryIndex.ANY, today, today));
+        }
+    }
+
+    /**
+     * Tests that a classified scan keeps its probabilities and latency
+     */
+    @Test
+    public void testSaveClassification() throws IOException {
+        ImageRepo images = new ImageRepo(folder.newFolder("images"));
+        try (HistoryStore history = new HistoryStore(folder.newFolder("history"))) {
+            Database db = new Database(history, images);
+            ImageClassifier.CombinedClassificationResult result = new ImageClassifier.CombinedClassificationResult();
+            result.fruitIndex = 2;
+            result.ripenessIndex = 3;
+            result.fruitProbabilities = new float[]{0.1f, 0.2f, 0.7f};
+            result.ripenessProbabilities = new float[]{0.1f, 0.1f, 0.2f, 0.6f};
+
+            assertEquals(1, db.save(null, result, 5000, 2500));
+            ClassificationRecord record = readAll(history).get(0);
+            assertEquals(5000, record.timestampMs);
+            assertEquals(2500, record.latencyMicros);
+            assertEquals(0.7f, record.fruitProbabilities[2], 0.0f);
+            assertEquals(0.6f, record.ripenessProbabilities[3], 0.0f);
+            assertNull(record.getImageLocation());
+        }
+    }
+
+    /**
+     * Tests that class names are matched as whole words
+     */
+    @Test
+    public void testFindClassFromProduceName() {
+        assertEquals(1, ImageClassifier.findRipenessClass("ripe tomato"));
+        assertEquals(0, ImageClassifier.findRipenessClass("OverRipe Mango"));
+        assertEquals(3, ImageClassifier.findRipenessClass("VeryRipe"));
+        assertEquals(2, ImageClassifier.findFruitClass("Unripe Tomato"));
+        assertEquals(-1, ImageClassifier.findFruitClass("Apple"));
+        assertEquals(-1, ImageClassifier.findFruitClass(null));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the ring-buffer diagnostic logger
+ */
+public class DiagnosticLogTest {
+
+    private static class ListSink implements DiagnosticLog.Sink {
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void write(int level, String tag, String message) {
+            messages.add(tag + "/" + level + ": " + message);
+        }
+    }
+
+    /**
+     * Tests placeholder filling for each overload
+     */
+    @Test
+    public void testFormatting() {
+        ListSink sink = new ListSink();
+        DiagnosticLog log = new DiagnosticLog(16, sink);
+
+        log.log(DiagnosticLog.DEBUG, "T", "plain");
+        log.log(DiagnosticLog.DEBUG, "T", "took {}ms", 42);
+        log.log(DiagnosticLog.INFO, "T", "{}x{} at {}", 640, 480, 2);
+        log.log(DiagnosticLog.DEBUG, "T", "Predicted {} with confidence {}", "Mango", 0.5);
+        log.log(DiagnosticLog.DEBUG, "T", "Probabilities", null, new float[]{0.25f, 0.75f});
+        log.log(DiagnosticLog.DEBUG, "T", "Saved {}", "abc");
+        log.log(DiagnosticLog.DEBUG, "T", "Saved {} ({} bytes)", "abc", 12);
+
+        assertEquals(7, log.flush());
+        assertEquals("T/3: plain", sink.messages.get(0));
+        assertEquals("T/3: took 42ms", sink.messages.get(1));
+        assertEquals("T/4: 640x480 at 2", sink.messages.get(2));
+        assertEquals("T/3: Predicted Mango with confidence 0.5", sink.messages.get(3));
+        assertEquals("T/3: Probabilities [0.25, 0.75]", sink.messages.get(4));
+        assertEquals("T/3: Saved abc", sink.messages.get(5));
+        assertEquals("T/3: Saved abc (12 bytes)", sink.messages.get(6));
+        assertEquals(0, log.flush());
+    }
+
+    /**
+     * Tests that long values beyond the exact range of a double are kept exactly
+     */
+    @Test
+    public void testLargeLongsKeepPrecision() {
+        ListSink sink = new ListSink();
+        DiagnosticLog log = new DiagnosticLog(16, sink);
+
+        log.log(DiagnosticLog.DEBUG, "T", "{} {} {}", (1L << 53) + 1, Long.MAX_VALUE, Long.MIN_VALUE);
+        log.log(DiagnosticLog.DEBUG, "T", "Wrote {} at {}", "abc", 9_007_199_254_740_993L);
+
+        assertEquals(2, log.flush());
+        assertEquals("T/3: 9007199254740993 9223372036854775807 -9223372036854775808", sink.messages.get(0));
+        assertEquals("T/3: Wrote abc at 9007199254740993", sink.messages.get(1));
+    }
+
+    /**
+     * Tests that events below the level are not recorded
+     */
+    @Test
+    public void testLevelGate() {
+        ListSink sink = new ListSink();
+        DiagnosticLog log = new DiagnosticLog(16, sink);
+        log.setLevel(DiagnosticLog.WARN);
+
+        assertFalse(log.isLoggable(DiagnosticLog.DEBUG));
+        log.log(DiagnosticLog.DEBUG, "T", "hidden");
+        log.log(DiagnosticLog.ERROR, "T", "shown");
+
+        log.flush();
+        assertEquals(1, sink.messages.size());
+        assertEquals("T/6: shown", sink.messages.get(0));
+    }
+
+    /**
+     * Tests that a full ring keeps the newest events and counts the rest as dropped
+     */
+    @Test
+    public void testOverflowKeepsNewest() {
+        ListSink sink = new ListSink();
+        DiagnosticLog log = new DiagnosticLog(4, sink);
+        for (int i = 0; i < 10; i++) {
+            log.log(DiagnosticLog.DEBUG, "T", "event {}", i);
+        }
+
+        assertEquals(4, log.flush());
+        assertEquals("T/3: event 6", sink.messages.get(0));
+        assertEquals("T/3: event 9", sink.messages.get(3));
+        assertEquals(6, log.getDroppedCount());
+    }
+
+    /**
+     * Tests that the background flusher writes events from several threads
+     */
+    @Test
+    public void testBackgroundFlush() throws InterruptedException {
+        ListSink sink = new ListSink();
+        DiagnosticLog log = new DiagnosticLog(1024, sink);
+        log.startFlusher(5);
+
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final long id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    log.log(DiagnosticLog.DEBUG, "T", "writer {} event {}", id, i);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        log.stopFlusher();
+
+        synchronized (log) {
+            assertEquals(400, sink.messages.size());
+        }
+    }
+
+    /**
+     * Tests that writers lapping each other on a tiny ring never publish a
+     * mixed-up event, and that every event is either written or dropped
+     */
+    @Test
+    public void testLappingWritersDoNotTearEvents() throws InterruptedException {
+        ListSink sink = new ListSink();
+        DiagnosticLog log = new DiagnosticLog(2, sink);
+        log.startFlusher(1);
+
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final long id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    log.log(DiagnosticLog.DEBUG, "T" + id, "writer {} event {} of {}", id, i, id);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        log.stopFlusher();
+
+        synchronized (log) {
+            for (String message : sink.messages) {
+                char id = message.charAt(1);
+                assertTrue(message, message.startsWith("T" + id + "/3: writer " + id + " event "));
+                assertTrue(message, message.endsWith(" of " + id));
+            }
+            assertEquals(writers.length * 2000, sink.messages.size() + log.getDroppedCount());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Deterministic stand-in for the TFLite model, whose logits are simple
+ * functions of the channel means of each image
+ */
+class FakeModelRunner implements ModelRunner {
+    private static final int INPUT_SIZE = 224;
+    private static final int IMAGE_FLOATS = INPUT_SIZE * INPUT_SIZE * 3;
+
+    final List<Integer> resizes = new ArrayList<>();
+    volatile int runs;
+    volatile boolean closed;
+    int batchSize = 1;
+    long runDelayMs;
+
+    /**
+     * Creates a deterministic 224x224 test image
+     */
+    static int[] image(int seed) {
+        int[] pixels = new int[INPUT_SIZE * INPUT_SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = (i * 7 + seed * 31) & 0xFF;
+            int g = (i * 13 + seed * 17) & 0xFF;
+            int b = (seed * 59) & 0xFF;
+            pixels[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        return pixels;
+    }
+
+    @Override
+    public TensorFormat getInputFormat() {
+        return TensorFormat.FLOAT32;
+    }
+
+    @Override
+    public TensorFormat getOutputFormat(int index) {
+        return TensorFormat.FLOAT32;
+    }
+
+    @Override
+    public void resizeBatch(int batchSize) {
+        this.batchSize = batchSize;
+        resizes.add(batchSize);
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer fruitOutput, ByteBuffer ripenessOutput) {
+        runs++;
+        assertEquals("Input must hold exactly one batch", batchSize * IMAGE_FLOATS * 4, input.capacity());
+
+        FloatBuffer floats = input.duplicate().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int row = 0; row < batchSize; row++) {
+            float[] mean = new float[3];
+            for (int i = 0; i < IMAGE_FLOATS; i++) {
+                mean[i % 3] += floats.get(row * IMAGE_FLOATS + i);
+            }
+            for (int c = 0; c < 3; c++) {
+                mean[c] /= INPUT_SIZE * INPUT_SIZE;
+            }
+
+            for (int k = 0; k < 3; k++) {
+                fruitOutput.putFloat((row * 3 + k) * 4, mean[k] / 32.0f);
+            }
+            for (int k = 0; k < 4; k++) {
+                ripenessOutput.putFloat((row * 4 + k) * 4, (mean[k % 3] - mean[(k + 1) % 3]) / 16.0f);
+            }
+        }
+
+        if (runDelayMs > 0) {
+            try {
+                Thread.sleep(runDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
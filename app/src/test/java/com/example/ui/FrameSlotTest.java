@@ -0,0 +1,80 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the latest-frame-wins hand-off used by live scanning
+ */
+public class FrameSlotTest {
+
+    /**
+     * Tests that a frame published while another waits replaces it
+     */
+    @Test
+    public void testNewestFrameWins() throws InterruptedException {
+        FrameSlot slot = new FrameSlot(4);
+
+        int[] first = slot.acquire();
+        first[0] = 1;
+        slot.publish(first);
+        int[] second = slot.acquire();
+        second[0] = 2;
+        slot.publish(second);
+
+        int[] taken = slot.take();
+        assertEquals(2, taken[0]);
+        assertEquals(2, slot.getPublishedCount());
+        assertEquals(1, slot.getDroppedCount());
+        slot.release(taken);
+    }
+
+    /**
+     * Tests that a producer outpacing the consumer never runs out of buffers
+     */
+    @Test
+    public void testBuffersCirculate() throws InterruptedException {
+        FrameSlot slot = new FrameSlot(4);
+        int[] inUse = null;
+        for (int i = 0; i < 100; i++) {
+            int[] frame = slot.acquire();
+            assertNotNull(frame);
+            assertNotSame(inUse, frame);
+            frame[0] = i;
+            slot.publish(frame);
+            if (i % 10 == 9) {
+                if (inUse != null) {
+                    slot.release(inUse);
+                }
+                inUse = slot.take();
+                assertEquals(i, inUse[0]);
+            }
+        }
+        assertEquals(90, slot.getDroppedCount());
+    }
+
+    /**
+     * Tests that closing wakes a waiting consumer
+     */
+    @Test
+    public void testCloseWakesConsumer() throws InterruptedException {
+        FrameSlot slot = new FrameSlot(4);
+        int[][] taken = {new int[0]};
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = slot.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        slot.close();
+        consumer.join(1000);
+
+        assertFalse(consumer.isAlive());
+        assertNull(taken[0]);
+        assertNull(slot.acquire());
+    }
+}
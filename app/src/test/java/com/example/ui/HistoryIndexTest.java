@@ -0,0 +1,156 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the history indexes and per-day aggregates
+ */
+public class HistoryIndexTest {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 12);
+
+    private static final int BANANA = 0;
+    private static final int MANGO = 1;
+    private static final int TOMATO = 2;
+    private static final int OVERRIPE = 0;
+    private static final int RIPE = 1;
+    private static final int UNRIPE = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long sequence;
+
+    private ClassificationRecord record(LocalDate day, int hour, int fruit, int ripeness) {
+        ClassificationRecord record = new ClassificationRecord();
+        record.sequence = ++sequence;
+        record.timestampMs = day.atStartOfDay(UTC).toInstant().toEpochMilli() + hour * 3_600_000L;
+        record.fruitIndex = fruit;
+        record.ripenessIndex = ripeness;
+        return record;
+    }
+
+    /**
+     * Tests counts per fruit and ripeness, including the ANY totals
+     */
+    @Test
+    public void testCountsPerDay() {
+        HistoryIndex index = new HistoryIndex(UTC);
+        index.add(record(MONDAY, 9, BANANA, OVERRIPE));
+        index.add(record(MONDAY, 10, BANANA, OVERRIPE));
+        index.add(record(MONDAY, 11, BANANA, RIPE));
+        index.add(record(MONDAY, 23, MANGO, OVERRIPE));
+        index.add(record(MONDAY.plusDays(1), 0, BANANA, OVERRIPE));
+
+        assertEquals(2, index.count(BANANA, OVERRIPE, MONDAY, MONDAY));
+        assertEquals(3, index.count(BANANA, HistoryIndex.ANY, MONDAY, MONDAY));
+        assertEquals(3, index.count(HistoryIndex.ANY, OVERRIPE, MONDAY, MONDAY));
+        assertEquals(4, index.count(HistoryIndex.ANY, HistoryIndex.ANY, MONDAY, MONDAY));
+        assertEquals(0, index.count(TOMATO, HistoryIndex.ANY, MONDAY, MONDAY));
+        assertEquals(5, index.getRecordCount());
+    }
+
+    /**
+     * Tests a week query such as "overripe bananas this week"
+     */
+    @Test
+    public void testWeekQuery() {
+        HistoryIndex index = new HistoryIndex(UTC);
+        for (int day = -3; day < 10; day++) {
+            index.add(record(MONDAY.plusDays(day), 12, BANANA, OVERRIPE));
+            index.add(record(MONDAY.plusDays(day), 12, TOMATO, UNRIPE));
+        }
+
+        assertEquals(7, index.count(BANANA, OVERRIPE, MONDAY, MONDAY.plusDays(6)));
+        assertEquals(14, index.count(HistoryIndex.ANY, HistoryIndex.ANY, MONDAY, MONDAY.plusDays(6)));
+        // Ranges longer than the history filter the known days instead
+        assertEquals(13, index.count(BANANA, OVERRIPE, MONDAY.minusYears(1), MONDAY.plusYears(1)));
+        assertEquals(0, index.count(BANANA, OVERRIPE, MONDAY.plusDays(1), MONDAY));
+    }
+
+    /**
+     * Tests that items are counted on the day they are predicted to expire
+     */
+    @Test
+    public void testExpiringPerDay() {
+        HistoryIndex index = new HistoryIndex(UTC);
+        index.add(record(MONDAY, 8, BANANA, OVERRIPE));
+        index.add(record(MONDAY, 8, BANANA, RIPE));
+        index.add(record(MONDAY, 8, TOMATO, UNRIPE));
+        index.add(record(MONDAY, 8, HistoryIndex.ANY, RIPE));
+
+        int bananaRipeDays = HistoryIndex.SHELF_LIFE_DAYS[BANANA][RIPE];
+        int tomatoUnripeDays = HistoryIndex.SHELF_LIFE_DAYS[TOMATO][UNRIPE];
+        assertEquals(1, index.countExpiring(HistoryIndex.ANY, MONDAY, MONDAY));
+        assertEquals(1, index.countExpiring(BANANA, MONDAY.plusDays(bananaRipeDays), MONDAY.plusDays(bananaRipeDays)));
+        assertEquals(1, index.countExpiring(TOMATO, MONDAY.plusDays(tomatoUnripeDays),
+                MONDAY.plusDays(tomatoUnripeDays)));
+        assertEquals(3, index.countExpiring(HistoryIndex.ANY, MONDAY, MONDAY.plusDays(30)));
+        assertEquals(0, index.countExpiring(MANGO, MONDAY, MONDAY.plusDays(30)));
+    }
+
+    /**
+     * Tests that day buckets follow the index's time zone
+     */
+    @Test
+    public void testTimeZone() {
+        HistoryIndex index = new HistoryIndex(ZoneOffset.ofHours(-5));
+        // 02:00 UTC on Monday is still Sunday evening at UTC-5
+        index.add(record(MONDAY, 2, BANANA, RIPE));
+
+        assertEquals(MONDAY.minusDays(1), index.dayOf(record(MONDAY, 2, BANANA, RIPE).timestampMs));
+        assertEquals(1, index.count(BANANA, RIPE, MONDAY.minusDays(1), MONDAY.minusDays(1)));
+        assertEquals(0, index.count(BANANA, RIPE, MONDAY, MONDAY));
+    }
+
+    /**
+     * Tests that indexed sequences lead back to the stored records, and that
+     * an index loaded from the store matches one built while saving
+     */
+    @Test
+    public void testSequencesAndLoad() throws IOException {
+        try (HistoryStore history = new HistoryStore(folder.getRoot(), 4, 0)) {
+            HistoryIndex live = new HistoryIndex(UTC);
+            for (int i = 0; i < 24; i++) {
+                ClassificationRecord record = record(MONDAY.plusDays(i % 2), 12, i % 3, i % 4);
+                history.append(record);
+                live.add(record);
+            }
+
+            long[] sequences = live.sequences(BANANA, OVERRIPE, MONDAY, MONDAY.plusDays(1));
+            assertArrayEquals(new long[]{1, 13}, sequences);
+            ClassificationRecord read = new ClassificationRecord();
+            for (long sequence : sequences) {
+                assertTrue(history.read(sequence, read));
+                assertEquals(BANANA, read.fruitIndex);
+                assertEquals(OVERRIPE, read.ripenessIndex);
+            }
+
+            HistoryIndex loaded = HistoryIndex.load(history, UTC);
+            assertEquals(live.getRecordCount(), loaded.getRecordCount());
+            for (int fruit = HistoryIndex.ANY; fruit < ImageClassifier.NUM_FRUIT_CLASSES; fruit++) {
+                for (int ripeness = HistoryIndex.ANY; ripeness < ImageClassifier.NUM_RIPENESS_CLASSES; ripeness++) {
+                    assertEquals(live.count(fruit, ripeness, MONDAY, MONDAY.plusDays(1)),
+                            loaded.count(fruit, ripeness, MONDAY, MONDAY.plusDays(1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that queries reject class indexes the model does not have
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownClass() {
+        new HistoryIndex(UTC).count(ImageClassifier.NUM_FRUIT_CLASSES, HistoryIndex.ANY, MONDAY, MONDAY);
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the append-only classification history
+ */
+public class HistoryStoreTest {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final String LOCATION = ImageRepo.contentHash("banana".getBytes());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ClassificationRecord record(long timestampMs, int fruit, int ripeness) {
+        ClassificationRecord record = new ClassificationRecord();
+        record.timestampMs = timestampMs;
+        record.fruitIndex = fruit;
+        record.ripenessIndex = ripeness;
+        record.fruitProbabilities[fruit] = 0.9f;
+        record.ripenessProbabilities[ripeness] = 0.8f;
+        record.latencyMicros = 1234;
+        return record;
+    }
+
+    private static List<ClassificationRecord> readAll(HistoryStore store) throws IOException {
+        List<ClassificationRecord> records = new ArrayList<>();
+        store.forEach(record -> {
+            ClassificationRecord copy = new ClassificationRecord();
+            copy.copyFrom(record);
+            records.add(copy);
+        });
+        return records;
+    }
+
+    private File[] segmentFiles() {
+        File[] files = folder.getRoot().listFiles((dir, name) -> name.endsWith(".seg"));
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Tests that every field survives a round trip through disk
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 16, 0)) {
+            ClassificationRecord written = record(1000, 2, 3);
+            written.setImageLocation(LOCATION);
+            assertEquals(1, store.append(written));
+            assertEquals(2, store.append(record(2000, 0, 1)));
+
+            List<ClassificationRecord> records = readAll(store);
+            assertEquals(2, records.size());
+            ClassificationRecord read = records.get(0);
+            assertEquals(1, read.sequence);
+            assertEquals(1000, read.timestampMs);
+            assertEquals(1234, read.latencyMicros);
+            assertEquals(2, read.fruitIndex);
+            assertEquals(3, read.ripenessIndex);
+            assertEquals(0.9f, read.fruitProbabilities[2], 0.0f);
+            assertEquals(0.8f, read.ripenessProbabilities[3], 0.0f);
+            assertEquals(LOCATION, read.getImageLocation());
+            assertNull(records.get(1).getImageLocation());
+        }
+    }
+
+    /**
+     * Tests that records and sequences continue across reopening, including
+     * over segment boundaries
+     */
+    @Test
+    public void testReopenContinuesSequence() throws IOException {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 0)) {
+            for (int i = 0; i < 10; i++) {
+                store.append(record(i, 0, 0));
+            }
+            assertEquals(3, store.getSegmentCount());
+        }
+
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 0)) {
+            assertEquals(11, store.getNextSequence());
+            assertEquals(11, store.append(record(10, 1, 1)));
+            List<ClassificationRecord> records = readAll(store);
+            assertEquals(11, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i + 1, records.get(i).sequence);
+                assertEquals(i, records.get(i).timestampMs);
+            }
+        }
+    }
+
+    /**
+     * Tests that a record torn by a crash is cut off and its slot reused
+     */
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 16, 0)) {
+            store.append(record(1, 0, 0));
+            store.append(record(2, 0, 0));
+        }
+        File active = segmentFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(active, "rw")) {
+            // Half of a third record
+            file.setLength(file.length() + ClassificationRecord.SIZE / 2);
+        }
+
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 16, 0)) {
+            assertEquals(0, store.getTruncatedRecordCount());
+            assertEquals(3, store.append(record(3, 0, 0)));
+            assertEquals(3, readAll(store).size());
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(active, "rw")) {
+            // A complete slot with garbage, as if the record was only partly written
+            file.seek(file.length() - 8);
+            file.writeLong(0x0123456789ABCDEFL);
+        }
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 16, 0)) {
+            assertEquals(1, store.getTruncatedRecordCount());
+            assertEquals(2, readAll(store).size());
+            assertEquals(3, store.append(record(3, 0, 0)));
+        }
+    }
+
+    /**
+     * Tests that a damaged record in the middle of the history is skipped
+     * without losing the records around it
+     */
+    @Test
+    public void testCorruptRecordIsSkipped() throws IOException {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 0)) {
+            for (int i = 0; i < 6; i++) {
+                store.append(record(i, 0, 0));
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles()[0], "rw")) {
+            long secondRecord = HistoryStore.HEADER_SIZE + ClassificationRecord.SIZE;
+            file.seek(secondRecord + 10);
+            file.write(0x7F);
+        }
+
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 0)) {
+            List<ClassificationRecord> records = readAll(store);
+            assertEquals(5, records.size());
+            assertEquals(1, records.get(0).sequence);
+            assertEquals(3, records.get(1).sequence);
+            assertEquals(1, store.getCorruptRecordCount());
+        }
+    }
+
+    /**
+     * Tests that compaction merges sealed segments, drops expired
+     * records and keeps the rest in order
+     */
+    @Test
+    public void testCompactionMergesAndExpires() throws IOException {
+        long now = System.currentTimeMillis();
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 30 * DAY_MS)) {
+            for (int i = 0; i < 16; i++) {
+                // The first six are 60 days old
+                store.append(record(i < 6 ? now - 60 * DAY_MS : now - 16 + i, 0, 0));
+            }
+
+            store.compact(now);
+            assertEquals(6, store.getDroppedRecordCount());
+            assertEquals(10, store.getRecordCount());
+            assertEquals(2, store.getSegmentCount());
+            List<ClassificationRecord> records = readAll(store);
+            assertEquals(10, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i + 7, records.get(i).sequence);
+            }
+            assertEquals(17, store.append(record(now, 1, 1)));
+        }
+
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 30 * DAY_MS)) {
+            assertEquals(11, readAll(store).size());
+            assertEquals(18, store.getNextSequence());
+        }
+    }
+
+    /**
+     * Tests reading single records from appended, merged and active segments
+     */
+    @Test
+    public void testReadBySequence() throws IOException {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 4, 0)) {
+            for (int i = 0; i < 18; i++) {
+                store.append(record(i, 0, 0));
+            }
+            // Merge two sealed segments, leave two appended ones and the active one
+            store.compact(0);
+
+            ClassificationRecord read = new ClassificationRecord();
+            for (long sequence = 1; sequence <= 18; sequence++) {
+                assertTrue("Sequence " + sequence, store.read(sequence, read));
+                assertEquals(sequence, read.sequence);
+                assertEquals(sequence - 1, read.timestampMs);
+            }
+            assertFalse(store.read(0, read));
+            assertFalse(store.read(19, read));
+        }
+    }
+
+    /**
+     * Tests that segments left behind by a compaction interrupted after the
+     * merged segment was written are not replayed twice
+     */
+    @Test
+    public void testInterruptedCompactionIsNotReplayedTwice() throws IOException {
+        File backup = folder.newFolder("backup");
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 2, 0)) {
+            for (int i = 0; i < 5; i++) {
+                store.append(record(i, 0, 0));
+            }
+            for (File file : segmentFiles()) {
+                Files.copy(file.toPath(), new File(backup, file.getName()).toPath());
+            }
+            store.compact(0);
+            assertEquals(2, store.getSegmentCount());
+        }
+        // Restore the inputs next to the merged segment, as if their deletion never happened
+        for (File file : backup.listFiles()) {
+            File target = new File(folder.getRoot(), file.getName());
+            if (!target.exists()) {
+                Files.copy(file.toPath(), target.toPath());
+            }
+        }
+
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 2, 0)) {
+            List<ClassificationRecord> records = readAll(store);
+            assertEquals(5, records.size());
+            assertEquals(2, store.getSegmentCount());
+            assertEquals(6, store.append(record(5, 0, 0)));
+        }
+    }
+
+    /**
+     * Tests that appends keep working while compactions run in the background
+     */
+    @Test
+    public void testBackgroundCompaction() throws IOException {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 8, 0)) {
+            for (int i = 0; i < 8 * (HistoryStore.COMPACTION_TRIGGER + 2); i++) {
+                store.append(record(i, i % 3, i % 4));
+            }
+            store.sync();
+            assertEquals(8 * (HistoryStore.COMPACTION_TRIGGER + 2), readAll(store).size());
+        }
+
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 8, 0)) {
+            assertTrue(store.getSegmentCount() < HistoryStore.COMPACTION_TRIGGER + 3);
+            List<ClassificationRecord> records = readAll(store);
+            assertEquals(8 * (HistoryStore.COMPACTION_TRIGGER + 2), records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i + 1, records.get(i).sequence);
+            }
+        }
+    }
+
+    /**
+     * Tests that a slow replay neither blocks appends that roll over nor
+     * loses the segments a compaction replaces under it
+     */
+    @Test
+    public void testReplayDoesNotBlockRollOver() throws Exception {
+        try (HistoryStore store = new HistoryStore(folder.getRoot(), 2, 0)) {
+            for (int i = 0; i < 4; i++) {
+                store.append(record(i, 0, 0));
+            }
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch proceed = new CountDownLatch(1);
+            List<Long> replayed = new ArrayList<>();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> replay = executor.submit(() -> {
+                    store.forEach(record -> {
+                        entered.countDown();
+                        try {
+                            proceed.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        replayed.add(record.sequence);
+                    });
+                    return null;
+                });
+                assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+                CompletableFuture<Void> appends = CompletableFuture.runAsync(() -> {
+                    try {
+                        for (int i = 4; i < 10; i++) {
+                            store.append(record(i, 0, 0));
+                        }
+                        store.compact(0);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                try {
+                    appends.get(5, TimeUnit.SECONDS);
+                } finally {
+                    proceed.countDown();
+                }
+
+                replay.get(5, TimeUnit.SECONDS);
+                assertEquals(Arrays.asList(1L, 2L, 3L, 4L), replayed);
+                assertEquals(10, readAll(store).size());
+                // The merged inputs were deleted once the replay let go of them
+                store.close();
+                assertEquals(store.getSegmentCount(), segmentFiles().length);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
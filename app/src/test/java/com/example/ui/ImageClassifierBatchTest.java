@@ -0,0 +1,107 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that batched classification matches per-image classification, using
+ * a deterministic model runner in place of the TFLite interpreter
+ */
+public class ImageClassifierBatchTest {
+
+    private static final int INPUT_SIZE = 224;
+
+    private static int[] image(int seed) {
+        return FakeModelRunner.image(seed);
+    }
+
+    private static void assertSameResult(ImageClassifier.CombinedClassificationResult expected,
+                                         ImageClassifier.CombinedClassificationResult actual) {
+        assertArrayEquals(expected.fruitProbabilities, actual.fruitProbabilities, 0.0f);
+        assertArrayEquals(expected.ripenessProbabilities, actual.ripenessProbabilities, 0.0f);
+        assertEquals(expected.fruitIndex, actual.fruitIndex);
+        assertEquals(expected.ripenessIndex, actual.ripenessIndex);
+        assertEquals(expected.fruitConfidence, actual.fruitConfidence, 0.0f);
+        assertEquals(expected.ripenessConfidence, actual.ripenessConfidence, 0.0f);
+    }
+
+    /**
+     * Tests that each row of a batch matches classifying the image on its own
+     */
+    @Test
+    public void testBatchMatchesSingleImages() {
+        FakeModelRunner runner = new FakeModelRunner();
+        ImageClassifier classifier = new ImageClassifier(runner);
+        classifier.setVerboseLogging(false);
+        classifier.setNormalizationKernel(NormalizationKernel.UNIT_SCALE);
+
+        List<int[]> images = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            images.add(image(i));
+        }
+
+        List<ImageClassifier.CombinedClassificationResult> batch = classifier.classifyPixelBatch(images);
+        assertEquals(1, runner.runs);
+
+        assertEquals(images.size(), batch.size());
+        for (int i = 0; i < images.size(); i++) {
+            ImageClassifier.CombinedClassificationResult single =
+                    classifier.classifyPixels(images.get(i), new ImageClassifier.CombinedClassificationResult());
+            assertSameResult(single, batch.get(i));
+        }
+    }
+
+    /**
+     * Tests that batches larger than the maximum are split into chunks
+     */
+    @Test
+    public void testBatchIsChunkedByMaxBatchSize() {
+        FakeModelRunner runner = new FakeModelRunner();
+        ImageClassifier classifier = new ImageClassifier(runner);
+        classifier.setVerboseLogging(false);
+        classifier.setMaxBatchSize(4);
+
+        List<int[]> images = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            images.add(image(i));
+        }
+
+        List<ImageClassifier.CombinedClassificationResult> batch = classifier.classifyPixelBatch(images);
+
+        assertEquals(9, batch.size());
+        assertEquals(3, runner.runs);
+        assertEquals(List.of(4, 1), runner.resizes);
+
+        ImageClassifier.CombinedClassificationResult last =
+                classifier.classifyPixels(images.get(8), new ImageClassifier.CombinedClassificationResult());
+        assertSameResult(last, batch.get(8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxBatchSizeIsBounded() {
+        new ImageClassifier(new FakeModelRunner()).setMaxBatchSize(ImageClassifier.MAX_BATCH_SIZE + 1);
+    }
+
+    /**
+     * Tests that warm-up invokes the model without touching the metrics or
+     * changing later results
+     */
+    @Test
+    public void testWarmUp() {
+        FakeModelRunner runner = new FakeModelRunner();
+        ImageClassifier classifier = new ImageClassifier(runner);
+        ImageClassifier.CombinedClassificationResult cold =
+                new ImageClassifier(new FakeModelRunner()).classifyPixels(image(3), new ImageClassifier.CombinedClassificationResult());
+
+        assertTrue(classifier.warmUp(2) >= 0);
+        assertEquals(2, runner.runs);
+        assertEquals(0, classifier.getMetrics().get(PipelineMetrics.Counter.INVOCATIONS));
+        assertEquals(0, classifier.getMetrics().snapshot(PipelineMetrics.Stage.INFERENCE).count);
+
+        assertSameResult(cold, classifier.classifyPixels(image(3), new ImageClassifier.CombinedClassificationResult()));
+    }
+}
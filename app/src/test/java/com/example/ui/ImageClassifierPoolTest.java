@@ -0,0 +1,173 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for borrowing and returning pooled classifiers
+ */
+public class ImageClassifierPoolTest {
+
+    private static List<FakeModelRunner> runners(int count) {
+        List<FakeModelRunner> runners = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            runners.add(new FakeModelRunner());
+        }
+        return runners;
+    }
+
+    private static ImageClassifierPool pool(List<FakeModelRunner> runners) {
+        List<ImageClassifier> classifiers = new ArrayList<>();
+        for (FakeModelRunner runner : runners) {
+            ImageClassifier classifier = new ImageClassifier(runner);
+            classifier.setVerboseLogging(false);
+            classifiers.add(classifier);
+        }
+        return new ImageClassifierPool(classifiers);
+    }
+
+    /**
+     * Tests that a borrowed classifier is unavailable until it is released
+     */
+    @Test
+    public void testAcquireAndRelease() throws Exception {
+        ImageClassifierPool pool = pool(runners(2));
+
+        ImageClassifier first = pool.acquire(10, TimeUnit.MILLISECONDS);
+        ImageClassifier second = pool.acquire(10, TimeUnit.MILLISECONDS);
+        assertNotSame(first, second);
+        assertEquals(0, pool.getAvailableCount());
+
+        pool.release(first);
+        assertEquals(1, pool.getAvailableCount());
+        assertSame(first, pool.acquire(10, TimeUnit.MILLISECONDS));
+
+        ImageClassifierPool.Stats stats = pool.getStats();
+        assertEquals(3, stats.acquireCount);
+        assertEquals(0, stats.contendedCount);
+    }
+
+    /**
+     * Tests that waiting for an empty pool times out and is counted
+     */
+    @Test
+    public void testAcquireTimesOut() throws Exception {
+        ImageClassifierPool pool = pool(runners(1));
+        pool.acquire(10, TimeUnit.MILLISECONDS);
+
+        try {
+            pool.acquire(20, TimeUnit.MILLISECONDS);
+            fail("Should have timed out");
+        } catch (TimeoutException e) {
+            // Expected exception
+        }
+
+        ImageClassifierPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.contendedCount);
+        assertEquals(1, stats.timeoutCount);
+        assertTrue(stats.maxWaitNanos >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    /**
+     * Tests that concurrent classifications each get their own classifier
+     * and produce the same results as a sequential run
+     */
+    @Test
+    public void testConcurrentClassification() throws Exception {
+        List<FakeModelRunner> runners = runners(3);
+        for (FakeModelRunner runner : runners) {
+            runner.runDelayMs = 5;
+        }
+        ImageClassifierPool pool = pool(runners);
+
+        ImageClassifier reference = new ImageClassifier(new FakeModelRunner());
+        reference.setVerboseLogging(false);
+
+        int tasks = 12;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ImageClassifier.CombinedClassificationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            int seed = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ImageClassifier classifier = pool.acquire(1, TimeUnit.SECONDS);
+                try {
+                    return classifier.classifyPixels(FakeModelRunner.image(seed),
+                            new ImageClassifier.CombinedClassificationResult());
+                } finally {
+                    pool.release(classifier);
+                }
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < tasks; i++) {
+            ImageClassifier.CombinedClassificationResult expected = reference.classifyPixels(
+                    FakeModelRunner.image(i), new ImageClassifier.CombinedClassificationResult());
+            ImageClassifier.CombinedClassificationResult actual = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertArrayEquals(expected.fruitProbabilities, actual.fruitProbabilities, 0.0f);
+            assertArrayEquals(expected.ripenessProbabilities, actual.ripenessProbabilities, 0.0f);
+        }
+        executor.shutdown();
+
+        int totalRuns = 0;
+        for (FakeModelRunner runner : runners) {
+            totalRuns += runner.runs;
+        }
+        assertEquals(tasks, totalRuns);
+        assertEquals(3, pool.getAvailableCount());
+        assertEquals(tasks, pool.getStats().acquireCount);
+    }
+
+    /**
+     * Tests that closing the pool closes idle classifiers now and borrowed ones on release
+     */
+    @Test
+    public void testClose() throws Exception {
+        List<FakeModelRunner> runners = runners(2);
+        ImageClassifierPool pool = pool(runners);
+        ImageClassifier borrowed = pool.acquire(10, TimeUnit.MILLISECONDS);
+
+        pool.close();
+        int closedNow = (runners.get(0).closed ? 1 : 0) + (runners.get(1).closed ? 1 : 0);
+        assertEquals(1, closedNow);
+
+        pool.release(borrowed);
+        assertTrue(runners.get(0).closed && runners.get(1).closed);
+    }
+
+    /**
+     * Tests that only borrowed classifiers can be released, and only once
+     */
+    @Test
+    public void testRejectsForeignAndDoubleRelease() throws Exception {
+        ImageClassifierPool pool = pool(runners(2));
+        ImageClassifier borrowed = pool.acquire(10, TimeUnit.MILLISECONDS);
+        pool.release(borrowed);
+
+        try {
+            pool.release(borrowed);
+            fail("Released a classifier twice");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        try {
+            pool.release(new ImageClassifier(new FakeModelRunner()));
+            fail("Released a classifier the pool never lent");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        assertEquals(2, pool.getAvailableCount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for decode-time sample size selection
+ */
+public class ImageLoaderTest {
+
+    /**
+     * Tests that a 12 MP photo is subsampled as far as the model input allows
+     */
+    @Test
+    public void testCameraPhotoForModelInput() {
+        assertEquals(8, ImageLoader.computeSampleSize(4000, 3000, 224, 224));
+        assertEquals(16, ImageLoader.computeSampleSize(8160, 6120, 224, 224));
+    }
+
+    /**
+     * Tests that the shorter side limits the sample size
+     */
+    @Test
+    public void testShorterSideLimits() {
+        assertEquals(2, ImageLoader.computeSampleSize(4000, 500, 224, 224));
+        assertEquals(1, ImageLoader.computeSampleSize(4000, 3000, 1080, 2400));
+    }
+
+    /**
+     * Tests that small images are decoded at full size
+     */
+    @Test
+    public void testSmallImage() {
+        assertEquals(1, ImageLoader.computeSampleSize(224, 224, 224, 224));
+        assertEquals(1, ImageLoader.computeSampleSize(100, 80, 224, 224));
+        assertEquals(2, ImageLoader.computeSampleSize(448, 448, 224, 224));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        ImageLoader.computeSampleSize(0, 100, 224, 224);
+    }
+}
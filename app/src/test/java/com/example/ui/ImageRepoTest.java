@@ -0,0 +1,163 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the two-tier content-addressed image store
+ */
+public class ImageRepoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Image image(String data) {
+        return new Image(data);
+    }
+
+    /**
+     * Tests that identical images share one location and one blob
+     */
+    @Test
+    public void testDeduplicatesByContent() {
+        ImageRepo repo = new ImageRepo(folder.getRoot());
+
+        String first = repo.saveImage(image("banana"));
+        String second = repo.saveImage(image("banana"));
+        String other = repo.saveImage(image("mango"));
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertEquals(ImageRepo.contentHash("banana".getBytes()), first);
+        assertEquals(1, repo.getDedupCount());
+        assertEquals(2, repo.getMemoryCount());
+        assertEquals("banana", repo.getImage(first).getData());
+    }
+
+    /**
+     * Tests that the memory tier stays within its byte budget and evicted
+     * images are served from disk
+     */
+    @Test
+    public void testMemoryBudgetAndDiskTier() {
+        ImageRepo repo = new ImageRepo(folder.getRoot(), 10);
+
+        String a = repo.saveImage(image("aaaa"));
+        String b = repo.saveImage(image("bbbb"));
+        String c = repo.saveImage(image("cccc"));
+
+        assertEquals(8, repo.getMemoryBytes());
+        assertEquals(1, repo.getEvictionCount());
+
+        assertEquals("cccc", repo.getImage(c).getData());
+        assertEquals(1, repo.getMemoryHitCount());
+        assertEquals("aaaa", repo.getImage(a).getData());
+        assertEquals(1, repo.getDiskHitCount());
+
+        // Reading a promoted it back into memory and evicted b, the least recently used
+        assertEquals(2, repo.getEvictionCount());
+        assertEquals("bbbb", repo.getImage(b).getData());
+        assertEquals(2, repo.getDiskHitCount());
+        assertTrue(repo.getMemoryBytes() <= 10);
+    }
+
+    /**
+     * Tests that images larger than the budget are kept on disk only
+     */
+    @Test
+    public void testOversizedImageSkipsMemory() {
+        ImageRepo repo = new ImageRepo(folder.getRoot(), 3);
+        String location = repo.saveImage(image("too large"));
+
+        assertEquals(0, repo.getMemoryCount());
+        assertEquals("too large", repo.getImage(location).getData());
+    }
+
+    /**
+     * Tests that an image saved twice survives one delete
+     */
+    @Test
+    public void testDeleteDropsOneReference() {
+        ImageRepo repo = new ImageRepo(folder.getRoot());
+        String location = repo.saveImage(image("tomato"));
+        repo.saveImage(image("tomato"));
+
+        repo.deleteImage(location);
+        assertEquals("tomato", repo.getImage(location).getData());
+
+        repo.deleteImage(location);
+        assertNull(repo.getImage(location));
+        assertEquals(0, repo.getMemoryBytes());
+        assertEquals(1, repo.getMissCount());
+    }
+
+    /**
+     * Tests that images outlive the repo instance, and that a later session
+     * never deletes an image an earlier session's history may point at
+     */
+    @Test
+    public void testPersistsAcrossInstances() {
+        String location = new ImageRepo(folder.getRoot()).saveImage(image("ripe"));
+
+        ImageRepo reopened = new ImageRepo(folder.getRoot());
+        assertEquals("ripe", reopened.getImage(location).getData());
+        assertEquals(1, reopened.getDiskHitCount());
+
+        reopened.deleteImage(location);
+        assertEquals("ripe", new ImageRepo(folder.getRoot()).getImage(location).getData());
+    }
+
+    /**
+     * Tests that undoing a save deduplicated against an earlier session's
+     * image keeps that image
+     */
+    @Test
+    public void testUndoOfDeduplicatedSaveKeepsEarlierImage() {
+        String location = new ImageRepo(folder.getRoot()).saveImage(image("overripe"));
+
+        ImageRepo reopened = new ImageRepo(folder.getRoot());
+        assertEquals(location, reopened.saveImage(image("overripe")));
+        assertEquals(1, reopened.getDedupCount());
+        reopened.deleteImage(location);
+
+        assertEquals("overripe", reopened.getImage(location).getData());
+        assertEquals("overripe", new ImageRepo(folder.getRoot()).getImage(location).getData());
+    }
+
+    /**
+     * Tests that a blob whose contents no longer match its hash is dropped
+     */
+    @Test
+    public void testCorruptBlobDropped() throws IOException {
+        String location = new ImageRepo(folder.getRoot()).saveImage(image("unripe"));
+        File blob = new File(new File(folder.getRoot(), location.substring(0, 2)), location.substring(2));
+        try (FileOutputStream out = new FileOutputStream(blob)) {
+            out.write("tampered".getBytes());
+        }
+
+        ImageRepo reopened = new ImageRepo(folder.getRoot());
+        assertNull(reopened.getImage(location));
+        assertFalse(blob.exists());
+    }
+
+    /**
+     * Tests that returned images are copies, so callers cannot change stored contents
+     */
+    @Test
+    public void testReturnsCopies() {
+        ImageRepo repo = new ImageRepo(folder.getRoot());
+        String location = repo.saveImage(image("mango"));
+
+        repo.getImage(location).setData("changed");
+
+        assertEquals("mango", repo.getImage(location).getData());
+        assertNull(repo.getImage("not-a-location"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the interpreter configuration search
+ */
+public class InterpreterTunerTest {
+
+    /**
+     * Tests that configs survive storage and malformed values are rejected
+     */
+    @Test
+    public void testConfigEncoding() {
+        InterpreterConfig config = new InterpreterConfig(6, false, true);
+        assertEquals("6,0,1", config.encode());
+        assertEquals(config, InterpreterConfig.decode(config.encode()));
+
+        assertNull(InterpreterConfig.decode(null));
+        assertNull(InterpreterConfig.decode("4,1"));
+        assertNull(InterpreterConfig.decode("x,1,0"));
+        assertNull(InterpreterConfig.decode("0,1,0"));
+    }
+
+    /**
+     * Tests that the search picks the fastest thread count, then the fastest delegate setting
+     */
+    @Test
+    public void testSearchPicksFastest() {
+        List<InterpreterConfig> measured = new ArrayList<>();
+        InterpreterConfig best = InterpreterTuner.search(8, config -> {
+            measured.add(config);
+            long nanos = 1000 - Math.min(config.getNumThreads(), 4) * 100;
+            if (config.isAllowFp16()) {
+                nanos -= 50;
+            }
+            return nanos;
+        });
+
+        assertEquals(new InterpreterConfig(4, true, true), best);
+        assertEquals(6, measured.size());
+        assertTrue(measured.contains(new InterpreterConfig(8, true, false)));
+        assertTrue(measured.contains(new InterpreterConfig(4, false, false)));
+    }
+
+    /**
+     * Tests that thread candidates never exceed the core count
+     */
+    @Test
+    public void testSearchRespectsCoreCount() {
+        List<InterpreterConfig> measured = new ArrayList<>();
+        InterpreterTuner.search(2, config -> {
+            measured.add(config);
+            return 100;
+        });
+
+        for (InterpreterConfig config : measured) {
+            assertTrue(config.getNumThreads() <= 2);
+        }
+    }
+
+    /**
+     * Tests that failing candidates are skipped and the default is used if all fail
+     */
+    @Test
+    public void testSearchSkipsFailures() {
+        InterpreterConfig best = InterpreterTuner.search(4, config -> {
+            if (config.isUseXnnpack()) {
+                throw new IOException("delegate not supported");
+            }
+            return 100;
+        });
+        assertFalse(best.isUseXnnpack());
+
+        InterpreterConfig fallback = InterpreterTuner.search(4, config -> {
+            throw new IOException("broken model");
+        });
+        assertEquals(InterpreterConfig.DEFAULT, fallback);
+    }
+
+    /**
+     * Tests that the model hash depends on the contents only
+     */
+    @Test
+    public void testModelHash() {
+        ByteBuffer a = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        ByteBuffer b = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        b.position(2);
+        assertEquals(InterpreterTuner.modelHash(a), InterpreterTuner.modelHash(b));
+        assertNotEquals(InterpreterTuner.modelHash(a), InterpreterTuner.modelHash(ByteBuffer.wrap(new byte[]{1, 2, 4})));
+        assertEquals(16, InterpreterTuner.modelHash(a).length());
+    }
+}
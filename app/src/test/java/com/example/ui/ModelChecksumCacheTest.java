@@ -0,0 +1,86 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the on-disk model checksum cache
+ */
+public class ModelChecksumCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ByteBuffer model(String contents) {
+        return ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that the stored checksum is reused only while the fingerprint matches
+     */
+    @Test
+    public void testChecksumFollowsFingerprint() {
+        File dir = new File(folder.getRoot(), "checksum_cache");
+        ModelChecksumCache cache = new ModelChecksumCache(dir);
+        String hash = cache.modelHash(model("model-a"), "100:7");
+        assertEquals(InterpreterTuner.modelHash(model("model-a")), hash);
+
+        // Same fingerprint: the stored checksum is returned without reading the model
+        assertEquals(hash, new ModelChecksumCache(dir).modelHash(model("model-b"), "100:7"));
+
+        // New install: hashed again
+        assertEquals(InterpreterTuner.modelHash(model("model-b")),
+                new ModelChecksumCache(dir).modelHash(model("model-b"), "200:7"));
+        assertEquals(InterpreterTuner.modelHash(model("model-b")),
+                new ModelChecksumCache(dir).modelHash(model("model-b"), null));
+    }
+
+    /**
+     * Tests that a reused checksum reports a hit and never more skipped time
+     * than the stored hash took
+     */
+    @Test
+    public void testHitReportsSkippedHash() throws IOException {
+        File dir = new File(folder.getRoot(), "checksum_cache");
+        ModelChecksumCache cache = new ModelChecksumCache(dir);
+        cache.modelHash(model("model-a"), "100:7");
+        assertFalse(cache.isHit());
+        assertEquals(0, cache.getSkippedHashNanos());
+
+        // Pretend the first launch spent 50ms hashing
+        String[] lines = new String(Files.readAllBytes(new File(dir, "model.checksum").toPath()),
+                StandardCharsets.UTF_8).split("\n");
+        Files.write(new File(dir, "model.checksum").toPath(),
+                (lines[0] + "\n" + lines[1] + "\n" + 50_000_000L + "\n").getBytes(StandardCharsets.UTF_8));
+
+        ModelChecksumCache second = new ModelChecksumCache(dir);
+        assertEquals(lines[1], second.modelHash(model("model-a"), "100:7"));
+        assertTrue(second.isHit());
+        assertTrue(second.getSkippedHashNanos() > 0);
+        assertTrue(second.getSkippedHashNanos() <= 50_000_000L);
+    }
+
+    /**
+     * Tests that a checksum file from an older build is hashed again
+     */
+    @Test
+    public void testOldChecksumFormatIsReplaced() throws IOException {
+        File dir = folder.getRoot();
+        Files.write(new File(dir, "model.checksum").toPath(), "100:7\nstale\n".getBytes(StandardCharsets.UTF_8));
+
+        ModelChecksumCache cache = new ModelChecksumCache(dir);
+        assertEquals(InterpreterTuner.modelHash(model("model-a")), cache.modelHash(model("model-a"), "100:7"));
+        assertFalse(cache.isHit());
+        assertEquals(InterpreterTuner.modelHash(model("model-a")),
+                new ModelChecksumCache(dir).modelHash(model("model-a"), "100:7"));
+    }
+}
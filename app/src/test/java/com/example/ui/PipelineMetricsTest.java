@@ -0,0 +1,105 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the latency histograms and pipeline counters
+ */
+public class PipelineMetricsTest {
+
+    /**
+     * Tests that every value falls into a bucket whose bounds contain it
+     * and that the bucket width stays within an eighth of the value
+     */
+    @Test
+    public void testBucketBounds() {
+        long[] values = {0, 1, 7, 8, 15, 16, 17, 1000, 123_456, 50_000_000L, 3_000_000_000L};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+            assertTrue(LatencyHistogram.bucketUpperBound(index) - value <= value / 8);
+        }
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    /**
+     * Tests percentiles of a uniform distribution against their exact values
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count);
+        assertEquals(1_000_000L, snapshot.maxNanos);
+        assertEquals(500_500L, snapshot.meanNanos());
+        assertEquals(500_000, snapshot.percentile(50), 500_000 / 8.0);
+        assertEquals(990_000, snapshot.percentile(99), 990_000 / 8.0);
+        assertEquals(1_000_000L, snapshot.percentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().percentile(50));
+    }
+
+    /**
+     * Tests that concurrent recording loses no samples
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        PipelineMetrics metrics = new PipelineMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(PipelineMetrics.Stage.INFERENCE, i);
+                    metrics.increment(PipelineMetrics.Counter.INVOCATIONS);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(40_000, snapshot.get(PipelineMetrics.Stage.INFERENCE).count);
+        assertEquals(40_000, snapshot.get(PipelineMetrics.Counter.INVOCATIONS));
+        assertEquals(9_999, snapshot.get(PipelineMetrics.Stage.INFERENCE).maxNanos);
+    }
+
+    /**
+     * Tests the text and JSON renderings and reset
+     */
+    @Test
+    public void testRendering() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.record(PipelineMetrics.Stage.DECODE, 2_000_000);
+        metrics.increment(PipelineMetrics.Counter.CACHE_HITS);
+
+        String text = metrics.snapshot().toText();
+        assertTrue(text.contains("decode: n=1 p50=2000"));
+        assertFalse(text.contains("inference:"));
+        assertTrue(text.contains("cache_hits: 1"));
+
+        String json = metrics.snapshot().toJson();
+        assertTrue(json.startsWith("{\"stages\":{\"decode\":{\"count\":1,\"mean\":2000000,"));
+        assertTrue(json.contains("\"cache_hits\":1"));
+        assertTrue(json.endsWith("}}"));
+
+        metrics.reset();
+        assertEquals(0, metrics.get(PipelineMetrics.Counter.CACHE_HITS));
+        assertEquals(0, metrics.snapshot(PipelineMetrics.Stage.DECODE).count);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the two-stage classification pipeline
+ */
+public class PipelinedClassifierTest {
+
+    private static ImageClassifier classifier(FakeModelRunner runner) {
+        ImageClassifier classifier = new ImageClassifier(runner);
+        classifier.setVerboseLogging(false);
+        return classifier;
+    }
+
+    /**
+     * Tests that pipelined results arrive in order and match direct classification
+     */
+    @Test
+    public void testResultsInOrder() throws Exception {
+        FakeModelRunner runner = new FakeModelRunner();
+        runner.runDelayMs = 2;
+        PipelinedClassifier pipeline = new PipelinedClassifier(classifier(runner), 2);
+
+        int frames = 10;
+        List<CompletableFuture<ImageClassifier.CombinedClassificationResult>> futures = new ArrayList<>();
+        List<Integer> completionOrder = new ArrayList<>();
+        for (int i = 0; i < frames; i++) {
+            int index = i;
+            CompletableFuture<ImageClassifier.CombinedClassificationResult> future =
+                    pipeline.submitPixels(FakeModelRunner.image(i));
+            future.thenRun(() -> {
+                synchronized (completionOrder) {
+                    completionOrder.add(index);
+                }
+            });
+            futures.add(future);
+        }
+
+        ImageClassifier reference = classifier(new FakeModelRunner());
+        for (int i = 0; i < frames; i++) {
+            ImageClassifier.CombinedClassificationResult expected = reference.classifyPixels(
+                    FakeModelRunner.image(i), new ImageClassifier.CombinedClassificationResult());
+            ImageClassifier.CombinedClassificationResult actual = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertArrayEquals(expected.fruitProbabilities, actual.fruitProbabilities, 0.0f);
+            assertArrayEquals(expected.ripenessProbabilities, actual.ripenessProbabilities, 0.0f);
+        }
+
+        pipeline.close();
+        assertEquals(frames, runner.runs);
+        assertEquals(frames, pipeline.getCompletedCount());
+        synchronized (completionOrder) {
+            for (int i = 0; i < frames; i++) {
+                assertEquals(Integer.valueOf(i), completionOrder.get(i));
+            }
+        }
+    }
+
+    /**
+     * Tests that closing the pipeline cancels frames it has not classified
+     */
+    @Test
+    public void testCloseCancelsPendingFrames() throws Exception {
+        FakeModelRunner runner = new FakeModelRunner();
+        runner.runDelayMs = 50;
+        PipelinedClassifier pipeline = new PipelinedClassifier(classifier(runner), 2);
+
+        List<CompletableFuture<ImageClassifier.CombinedClassificationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(pipeline.submitPixels(FakeModelRunner.image(i)));
+        }
+        pipeline.close();
+
+        for (CompletableFuture<ImageClassifier.CombinedClassificationResult> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertTrue(futures.get(3).isCompletedExceptionally());
+    }
+
+    /**
+     * Tests that frames submitted while the pipeline closes are completed
+     * or cancelled, never left pending
+     */
+    @Test
+    public void testSubmitRacingClose() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            FakeModelRunner runner = new FakeModelRunner();
+            runner.runDelayMs = 1;
+            PipelinedClassifier pipeline = new PipelinedClassifier(classifier(runner), 2);
+
+            List<CompletableFuture<ImageClassifier.CombinedClassificationResult>> futures = new ArrayList<>();
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Thread submitter = new Thread(() -> {
+                    try {
+                        for (int i = 0; ; i++) {
+                            CompletableFuture<ImageClassifier.CombinedClassificationResult> future =
+                                    pipeline.submitPixels(FakeModelRunner.image(i));
+                            synchronized (futures) {
+                                futures.add(future);
+                            }
+                        }
+                    } catch (IllegalStateException | InterruptedException e) {
+                        // Closed
+                    }
+                });
+                submitters.add(submitter);
+                submitter.start();
+            }
+            Thread.sleep(5);
+            pipeline.close();
+            for (Thread submitter : submitters) {
+                submitter.join(5000);
+                assertFalse(submitter.isAlive());
+            }
+
+            synchronized (futures) {
+                for (CompletableFuture<ImageClassifier.CombinedClassificationResult> future : futures) {
+                    assertTrue(future.isDone());
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNeedsTwoBuffers() {
+        new PipelinedClassifier(classifier(new FakeModelRunner()), 1);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for temporal smoothing and inference back-off
+ */
+public class PredictionSmootherTest {
+
+    private static ImageClassifier.CombinedClassificationResult frame(int fruit, int ripeness) {
+        ImageClassifier.CombinedClassificationResult result = new ImageClassifier.CombinedClassificationResult();
+        result.fruitProbabilities = new float[]{0.1f, 0.1f, 0.1f};
+        result.fruitProbabilities[fruit] = 0.8f;
+        result.ripenessProbabilities = new float[]{0.1f, 0.1f, 0.1f, 0.1f};
+        result.ripenessProbabilities[ripeness] = 0.7f;
+        result.fruitIndex = fruit;
+        result.ripenessIndex = ripeness;
+        return result;
+    }
+
+    /**
+     * Tests that a single outlier frame does not flip the smoothed labels
+     */
+    @Test
+    public void testOutlierIsSmoothedAway() {
+        PredictionSmoother smoother = new PredictionSmoother(0.3f, 3, 1000, 4);
+        ImageClassifier.CombinedClassificationResult smoothed = new ImageClassifier.CombinedClassificationResult();
+
+        for (int i = 0; i < 4; i++) {
+            smoother.update(frame(1, 2), 0L, i, smoothed);
+        }
+        boolean stable = smoother.update(frame(0, 0), 0L, 4, smoothed);
+
+        assertTrue(stable);
+        assertEquals(1, smoothed.fruitIndex);
+        assertEquals(2, smoothed.ripenessIndex);
+        assertTrue(smoothed.fruitConfidence < 80f);
+        assertEquals(5, smoother.getStableCount());
+    }
+
+    /**
+     * Tests that stability needs K agreeing frames
+     */
+    @Test
+    public void testStableAfterKFrames() {
+        PredictionSmoother smoother = new PredictionSmoother(1.0f, 3, 1000, 4);
+        ImageClassifier.CombinedClassificationResult smoothed = new ImageClassifier.CombinedClassificationResult();
+
+        assertFalse(smoother.update(frame(2, 1), 0L, 0, smoothed));
+        assertFalse(smoother.update(frame(2, 1), 0L, 10, smoothed));
+        assertTrue(smoother.update(frame(2, 1), 0L, 20, smoothed));
+        assertFalse(smoother.update(frame(0, 1), 0L, 30, smoothed));
+    }
+
+    /**
+     * Tests that the interval grows while stable and resets when the scene changes
+     */
+    @Test
+    public void testBackOff() {
+        PredictionSmoother smoother = new PredictionSmoother(1.0f, 2, 400, 4);
+        ImageClassifier.CombinedClassificationResult smoothed = new ImageClassifier.CombinedClassificationResult();
+        long now = 0;
+
+        assertTrue(smoother.shouldInfer(0L, now));
+        smoother.update(frame(0, 0), 0L, now, smoothed);
+        assertEquals(0, smoother.getIntervalMs());
+        smoother.update(frame(0, 0), 0L, now, smoothed);
+        assertEquals(100, smoother.getIntervalMs());
+
+        assertFalse(smoother.shouldInfer(0b11L, now + 50));
+        assertTrue(smoother.shouldInfer(0b11L, now + 100));
+        smoother.update(frame(0, 0), 0L, now += 100, smoothed);
+        smoother.update(frame(0, 0), 0L, now += 200, smoothed);
+        smoother.update(frame(0, 0), 0L, now += 400, smoothed);
+        assertEquals(400, smoother.getIntervalMs());
+
+        assertTrue(smoother.shouldInfer(0xFFFFL, now + 1));
+        assertFalse(smoother.isStable());
+        assertEquals(0, smoother.getIntervalMs());
+    }
+}
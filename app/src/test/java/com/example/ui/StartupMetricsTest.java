@@ -0,0 +1,55 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the cold start milestones
+ */
+public class StartupMetricsTest {
+
+    /**
+     * Tests that milestones are measured from the origin and keep the first mark
+     */
+    @Test
+    public void testFirstMarkWins() {
+        StartupMetrics metrics = new StartupMetrics(1_000_000_000L);
+
+        assertFalse(metrics.isReached(StartupMetrics.Milestone.INTERACTIVE));
+        assertEquals(-1, metrics.elapsedMillis(StartupMetrics.Milestone.INTERACTIVE));
+
+        assertTrue(metrics.mark(StartupMetrics.Milestone.INTERACTIVE, 1_450_000_000L));
+        assertFalse(metrics.mark(StartupMetrics.Milestone.INTERACTIVE, 9_000_000_000L));
+
+        assertTrue(metrics.isReached(StartupMetrics.Milestone.INTERACTIVE));
+        assertEquals(450, metrics.elapsedMillis(StartupMetrics.Milestone.INTERACTIVE));
+    }
+
+    /**
+     * Tests that the text lists only reached milestones and the JSON lists all of them
+     */
+    @Test
+    public void testRendering() {
+        StartupMetrics metrics = new StartupMetrics(0);
+        metrics.mark(StartupMetrics.Milestone.MODEL_LOADED, 120_000_000L);
+        metrics.mark(StartupMetrics.Milestone.WARMED_UP, 200_000_000L);
+
+        assertEquals("model_loaded: 120 ms\nwarmed_up: 200 ms\n", metrics.toText());
+        assertEquals("{\"model_loaded_ms\":120,\"warmed_up_ms\":200,\"interactive_ms\":-1,"
+                + "\"first_inference_ms\":-1,\"checksum_cache\":\"none\",\"hash_skipped_ms\":0}", metrics.toJson());
+    }
+
+    /**
+     * Tests that the checksum cache outcome is rendered once recorded
+     */
+    @Test
+    public void testChecksumCache() {
+        StartupMetrics metrics = new StartupMetrics(0);
+        metrics.recordChecksumCache(true, 85_000_000L);
+
+        assertEquals("hit", metrics.getChecksumCache());
+        assertEquals("checksum_cache: hit, hashing skipped 85 ms\n", metrics.toText());
+        assertTrue(metrics.toJson().endsWith("\"checksum_cache\":\"hit\",\"hash_skipped_ms\":85}"));
+    }
+}
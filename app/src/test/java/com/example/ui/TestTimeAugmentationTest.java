@@ -0,0 +1,97 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for test-time augmentation views and merging
+ */
+public class TestTimeAugmentationTest {
+
+    private static ImageClassifier.CombinedClassificationResult result(float[] fruit, float[] ripeness) {
+        ImageClassifier.CombinedClassificationResult result = new ImageClassifier.CombinedClassificationResult();
+        result.fruitProbabilities = fruit;
+        result.ripenessProbabilities = ripeness;
+        for (int i = 0; i < fruit.length; i++) {
+            if (fruit[i] > fruit[result.fruitIndex]) result.fruitIndex = i;
+        }
+        for (int i = 0; i < ripeness.length; i++) {
+            if (ripeness[i] > ripeness[result.ripenessIndex]) result.ripenessIndex = i;
+        }
+        result.fruitConfidence = fruit[result.fruitIndex] * 100;
+        result.ripenessConfidence = ripeness[result.ripenessIndex] * 100;
+        return result;
+    }
+
+    /**
+     * Tests the crop offsets and the mirroring of the center view
+     */
+    @Test
+    public void testExtractViews() {
+        int sourceSize = 4;
+        int[] source = new int[sourceSize * sourceSize];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = i;
+        }
+        int[] view = new int[4];
+
+        TestTimeAugmentation.extractView(source, sourceSize, 0, view, 2);
+        assertArrayEquals(new int[]{6, 5, 10, 9}, view);
+        TestTimeAugmentation.extractView(source, sourceSize, 1, view, 2);
+        assertArrayEquals(new int[]{0, 1, 4, 5}, view);
+        TestTimeAugmentation.extractView(source, sourceSize, 2, view, 2);
+        assertArrayEquals(new int[]{2, 3, 6, 7}, view);
+        TestTimeAugmentation.extractView(source, sourceSize, 3, view, 2);
+        assertArrayEquals(new int[]{8, 9, 12, 13}, view);
+        TestTimeAugmentation.extractView(source, sourceSize, 4, view, 2);
+        assertArrayEquals(new int[]{10, 11, 14, 15}, view);
+
+        assertEquals(256, TestTimeAugmentation.sourceSize(224));
+    }
+
+    /**
+     * Tests that mean merging can overturn a borderline first pass
+     */
+    @Test
+    public void testMeanCombine() {
+        TestTimeAugmentation tta = new TestTimeAugmentation(0.6f, TestTimeAugmentation.Combine.MEAN);
+        ImageClassifier.CombinedClassificationResult first =
+                result(new float[]{0.9f, 0.05f, 0.05f}, new float[]{0.1f, 0.45f, 0.4f, 0.05f});
+        assertTrue(tta.shouldAugment(first));
+
+        List<ImageClassifier.CombinedClassificationResult> views = Arrays.asList(
+                result(new float[]{0.8f, 0.1f, 0.1f}, new float[]{0.1f, 0.3f, 0.6f, 0.0f}),
+                result(new float[]{0.7f, 0.2f, 0.1f}, new float[]{0.1f, 0.3f, 0.5f, 0.1f}));
+        tta.combine(first, views, first);
+
+        assertEquals(0, first.fruitIndex);
+        assertEquals(80f, first.fruitConfidence, 1e-4f);
+        assertEquals(2, first.ripenessIndex);
+        assertEquals(50f, first.ripenessConfidence, 1e-4f);
+    }
+
+    /**
+     * Tests that max-confidence merging picks each head independently
+     */
+    @Test
+    public void testMaxConfidenceCombine() {
+        TestTimeAugmentation tta = new TestTimeAugmentation(0.6f, TestTimeAugmentation.Combine.MAX_CONFIDENCE);
+        ImageClassifier.CombinedClassificationResult first =
+                result(new float[]{0.5f, 0.3f, 0.2f}, new float[]{0.7f, 0.1f, 0.1f, 0.1f});
+        assertFalse(new TestTimeAugmentation(0.5f, TestTimeAugmentation.Combine.MEAN).shouldAugment(first));
+
+        ImageClassifier.CombinedClassificationResult merged = new ImageClassifier.CombinedClassificationResult();
+        tta.combine(first, Arrays.asList(
+                result(new float[]{0.1f, 0.85f, 0.05f}, new float[]{0.4f, 0.3f, 0.2f, 0.1f})), merged);
+
+        assertEquals(1, merged.fruitIndex);
+        assertEquals(85f, merged.fruitConfidence, 1e-4f);
+        assertEquals(0, merged.ripenessIndex);
+        assertEquals(70f, merged.ripenessConfidence, 1e-4f);
+        assertEquals(50f, first.fruitConfidence, 1e-4f);
+    }
+}
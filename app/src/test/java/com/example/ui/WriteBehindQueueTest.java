@@ -0,0 +1,218 @@
+package com.example.ui;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for group-commit write-behind persistence
+ */
+public class WriteBehindQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a full batch is flushed with a single sync, before the delay
+     */
+    @Test
+    public void testSizeTriggerSyncsOncePerBatch() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        try (WriteBehindQueue queue = new WriteBehindQueue(syncs::incrementAndGet, 64, 8, 60_000)) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int value = i;
+                futures.add(queue.submit(() -> value));
+            }
+
+            for (int i = 0; i < 16; i++) {
+                assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, syncs.get());
+            assertEquals(2, queue.getBatchCount());
+            assertEquals(16, queue.getWriteCount());
+            assertEquals(8, queue.getMaxBatchSize());
+            assertEquals(8.0, queue.getMeanBatchSize(), 1e-9);
+        }
+    }
+
+    /**
+     * Tests that a lone write is flushed once it waited the maximum delay
+     */
+    @Test
+    public void testTimeTrigger() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(() -> { }, 64, 1000, 20)) {
+            long start = System.nanoTime();
+            assertEquals("done", queue.submit(() -> "done").get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+            assertEquals(1, queue.getFlushLatency().count);
+            assertEquals(1, queue.getCommitLatency().count);
+        }
+    }
+
+    /**
+     * Tests that a write queued behind a slow sync is not held for another
+     * full delay once the writer gets to it
+     */
+    @Test
+    public void testDelayCountsFromEnqueue() throws Exception {
+        CountDownLatch syncing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue.Syncer syncer = () -> {
+            syncing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        };
+        try (WriteBehindQueue queue = new WriteBehindQueue(syncer, 64, 1000, 200)) {
+            queue.submit(() -> "first");
+            assertTrue(syncing.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> second = queue.submit(() -> "second");
+            // Let the second write wait longer than the delay behind the blocked sync
+            Thread.sleep(300);
+
+            release.countDown();
+            long released = System.nanoTime();
+            assertEquals("second", second.get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - released < TimeUnit.MILLISECONDS.toNanos(150));
+        }
+    }
+
+    /**
+     * Tests that futures only complete after the sync of their batch
+     */
+    @Test
+    public void testFutureWaitsForSync() throws Exception {
+        CountDownLatch syncing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue.Syncer syncer = () -> {
+            syncing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        };
+        try (WriteBehindQueue queue = new WriteBehindQueue(syncer, 64, 1, 0)) {
+            CompletableFuture<String> future = queue.submit(() -> "written");
+            assertTrue(syncing.await(5, TimeUnit.SECONDS));
+            assertFalse(future.isDone());
+            release.countDown();
+            assertEquals("written", future.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Tests that a failed write fails only its own future and a failed sync
+     * fails the whole batch
+     */
+    @Test
+    public void testFailures() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        WriteBehindQueue.Syncer syncer = () -> {
+            if (syncs.incrementAndGet() == 2) {
+                throw new IOException("disk full");
+            }
+        };
+        try (WriteBehindQueue queue = new WriteBehindQueue(syncer, 64, 64, 60_000)) {
+            CompletableFuture<Object> failed = queue.submit(() -> {
+                throw new IllegalStateException("bad write");
+            });
+            CompletableFuture<Void> first = queue.flush();
+            first.get(5, TimeUnit.SECONDS);
+            assertTrue(failed.isCompletedExceptionally());
+
+            CompletableFuture<String> unsynced = queue.submit(() -> "lost");
+            try {
+                queue.flush().get(5, TimeUnit.SECONDS);
+                fail("Sync failure not reported");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertTrue(unsynced.isCompletedExceptionally());
+            assertEquals(2, queue.getFailureCount());
+        }
+    }
+
+    /**
+     * Tests that submit blocks while the queue is full
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        try (WriteBehindQueue queue = new WriteBehindQueue(() -> { }, 2, 1, 0)) {
+            queue.submit(() -> {
+                running.countDown();
+                release.await();
+                return null;
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            queue.submit(() -> 1);
+            queue.submit(() -> 2);
+
+            CompletableFuture<CompletableFuture<Integer>> blocked =
+                    CompletableFuture.supplyAsync(() -> queue.submit(() -> 3));
+            Thread.sleep(50);
+            assertFalse(blocked.isDone());
+            assertEquals(2, queue.getPendingCount());
+
+            release.countDown();
+            assertEquals(Integer.valueOf(3), blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+            assertEquals(1, queue.getBackpressureCount());
+        }
+    }
+
+    /**
+     * Tests that close flushes pending writes and rejects new ones
+     */
+    @Test
+    public void testCloseFlushes() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        WriteBehindQueue queue = new WriteBehindQueue(syncs::incrementAndGet, 64, 64, 60_000);
+        CompletableFuture<String> pending = queue.submit(() -> "pending");
+        queue.close();
+
+        assertTrue(pending.isDone());
+        assertEquals("pending", pending.get());
+        assertEquals(1, syncs.get());
+        try {
+            queue.submit(() -> "late");
+            fail("Closed queue accepted a write");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+
+    /**
+     * Tests that saving and undoing an image runs in order through the queue
+     * and leaves the image durable in between
+     */
+    @Test
+    public void testSaveImageCommand() throws Exception {
+        ImageRepo repo = new ImageRepo(folder.getRoot());
+        try (WriteBehindQueue queue = new WriteBehindQueue(repo::sync, 64, 64, 0)) {
+            SaveImage save = new SaveImage(repo, queue, new Image("banana"));
+            save.execute();
+            String location = save.getSaved().get(5, TimeUnit.SECONDS);
+            assertEquals("banana", repo.getImage(location).getData());
+
+            save.undo();
+            queue.flush().get(5, TimeUnit.SECONDS);
+            assertNull(repo.getImage(location));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.ui;
+
+import java.util.Random;
+
+/**
+ * Synthetic ARGB inputs for the benchmarks. Smooth gradients with a little
+ * noise look more like camera frames than uniform random pixels.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Parses a "WIDTHxHEIGHT" benchmark parameter
+     */
+    static int[] parseSize(String size) {
+        int x = size.indexOf('x');
+        return new int[]{Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1))};
+    }
+
+    static int[] pixels(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = clamp(255 * x / width + random.nextInt(16) - 8);
+                int g = clamp(255 * y / height + random.nextInt(16) - 8);
+                int b = clamp(128 + random.nextInt(16) - 8);
+                pixels[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
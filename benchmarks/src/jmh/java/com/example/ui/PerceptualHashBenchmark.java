@@ -0,0 +1,49 @@
+package com.example.ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Difference hashing as used by the result cache (224x224), the live scanner
+ * (its center crop) and on a full-resolution photo
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PerceptualHashBenchmark {
+
+    @Param({"224x224", "4032x3024"})
+    public String size;
+
+    private int[] pixels;
+    private int width;
+    private int height;
+    private long otherHash;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkImages.parseSize(size);
+        width = dimensions[0];
+        height = dimensions[1];
+        pixels = BenchmarkImages.pixels(width, height, 42);
+        otherHash = PerceptualHash.dHash(BenchmarkImages.pixels(width, height, 7), width, height);
+    }
+
+    @Benchmark
+    public long dHash() {
+        return PerceptualHash.dHash(pixels, width, height);
+    }
+
+    @Benchmark
+    public int dHashAndDistance() {
+        return PerceptualHash.distance(PerceptualHash.dHash(pixels, width, height), otherHash);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Softmax/argmax and top-k over the two classifier heads, plus building the
+ * result text the activity shows. The String.format variant is kept as a
+ * baseline for the allocation-free formatting.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PostprocessingBenchmark {
+    private static final String[] FRUIT_CLASSES = {"Banana", "Mango", "Tomato"};
+    private static final String[] RIPENESS_CLASSES = {"OverRipe", "Ripe", "Unripe", "VeryRipe"};
+    private static final int TOP_COMBINATIONS = 3;
+    // A 1000-class ImageNet-style head, for the cost of the loops themselves
+    private static final int LARGE_HEAD = 1001;
+
+    private final float[] fruitLogits = new float[FRUIT_CLASSES.length];
+    private final float[] ripenessLogits = new float[RIPENESS_CLASSES.length];
+    private final float[] largeLogits = new float[LARGE_HEAD];
+    private final float[] fruitProbs = new float[FRUIT_CLASSES.length];
+    private final float[] ripenessProbs = new float[RIPENESS_CLASSES.length];
+    private final float[] largeProbs = new float[LARGE_HEAD];
+
+    private final int[] topIndices = new int[5];
+    private final float[] topValues = new float[5];
+    private final int[] topFruitIndices = new int[TOP_COMBINATIONS];
+    private final int[] topRipenessIndices = new int[TOP_COMBINATIONS];
+    private final float[] topProbabilities = new float[TOP_COMBINATIONS];
+    private final StringBuilder resultText = new StringBuilder(512);
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        fill(random, fruitLogits);
+        fill(random, ripenessLogits);
+        fill(random, largeLogits);
+        Postprocessor.softmax(fruitLogits, fruitProbs, fruitProbs.length);
+        Postprocessor.softmax(ripenessLogits, ripenessProbs, ripenessProbs.length);
+        Postprocessor.softmax(largeLogits, largeProbs, LARGE_HEAD);
+    }
+
+    private static void fill(Random random, float[] logits) {
+        for (int i = 0; i < logits.length; i++) {
+            logits[i] = (float) random.nextGaussian() * 4;
+        }
+    }
+
+    @Benchmark
+    public void softmaxHeads(Blackhole blackhole) {
+        blackhole.consume(Postprocessor.softmax(fruitLogits, fruitProbs, fruitProbs.length));
+        blackhole.consume(Postprocessor.softmax(ripenessLogits, ripenessProbs, ripenessProbs.length));
+    }
+
+    @Benchmark
+    public int softmaxLargeHead() {
+        return Postprocessor.softmax(largeLogits, largeProbs, LARGE_HEAD);
+    }
+
+    @Benchmark
+    public int topKLargeHead() {
+        return Postprocessor.topK(largeProbs, LARGE_HEAD, topIndices.length, topIndices, topValues);
+    }
+
+    @Benchmark
+    public int jointTopK() {
+        return Postprocessor.jointTopK(fruitProbs, fruitProbs.length, ripenessProbs, ripenessProbs.length,
+                TOP_COMBINATIONS, topFruitIndices, topRipenessIndices, topProbabilities);
+    }
+
+    @Benchmark
+    public int formatResults() {
+        StringBuilder text = resultText;
+        text.setLength(0);
+        text.append("Fruit Classification:\n");
+        for (int i = 0; i < fruitProbs.length; i++) {
+            text.append(FRUIT_CLASSES[i]).append(": ");
+            Postprocessor.appendPercent(text, fruitProbs[i] * 100).append('\n');
+        }
+        text.append("\nRipeness Classification:\n");
+        for (int i = 0; i < ripenessProbs.length; i++) {
+            text.append(RIPENESS_CLASSES[i]).append(": ");
+            Postprocessor.appendPercent(text, ripenessProbs[i] * 100).append('\n');
+        }
+        return text.length();
+    }
+
+    @Benchmark
+    public String formatResultsWithStringFormat() {
+        StringBuilder text = new StringBuilder("Fruit Classification:\n");
+        for (int i = 0; i < fruitProbs.length; i++) {
+            text.append(String.format("%s: %.1f%%\n", FRUIT_CLASSES[i], fruitProbs[i] * 100));
+        }
+        text.append("\nRipeness Classification:\n");
+        for (int i = 0; i < ripenessProbs.length; i++) {
+            text.append(String.format("%s: %.1f%%\n", RIPENESS_CLASSES[i], ripenessProbs[i] * 100));
+        }
+        return text.toString();
+    }
+}
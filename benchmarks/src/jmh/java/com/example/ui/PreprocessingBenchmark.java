@@ -0,0 +1,99 @@
+package com.example.ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pixel unpacking, normalization and input buffer filling for every
+ * preprocessing method, on the model input size and on a full-resolution
+ * 12 MP photo. Method 4 (raw values) measures the unpacking alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PreprocessingBenchmark {
+
+    @Param({"224x224", "4032x3024"})
+    public String size;
+
+    @Param({"1", "2", "3", "4"})
+    public int method;
+
+    private int[] pixels;
+    private int count;
+    private NormalizationKernel kernel;
+    private float[] floats;
+    private float[] rowScratch;
+    private ByteBuffer float32Buffer;
+    private FloatBuffer float32View;
+    private ByteBuffer float16Buffer;
+    private ByteBuffer uint8Buffer;
+    private InputTensorAdapter float32Adapter;
+    private InputTensorAdapter float16Adapter;
+    private InputTensorAdapter uint8Adapter;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkImages.parseSize(size);
+        count = dimensions[0] * dimensions[1];
+        pixels = BenchmarkImages.pixels(dimensions[0], dimensions[1], 42);
+        kernel = NormalizationKernel.forMethod(method);
+
+        floats = new float[count * 3];
+        rowScratch = new float[224 * 3];
+        float32Buffer = ByteBuffer.allocateDirect(count * 3 * 4).order(ByteOrder.nativeOrder());
+        float32View = float32Buffer.asFloatBuffer();
+        float16Buffer = ByteBuffer.allocateDirect(count * 3 * 2).order(ByteOrder.nativeOrder());
+        uint8Buffer = ByteBuffer.allocateDirect(count * 3).order(ByteOrder.nativeOrder());
+
+        float32Adapter = InputTensorAdapter.create(TensorFormat.FLOAT32, kernel);
+        float16Adapter = InputTensorAdapter.create(TensorFormat.FLOAT16, kernel);
+        uint8Adapter = InputTensorAdapter.create(new TensorFormat(TensorFormat.Type.UINT8, 1 / 255.0f, 0),
+                NormalizationKernel.UNIT_SCALE);
+    }
+
+    @Benchmark
+    public float[] normalizeToArray() {
+        kernel.normalize(pixels, 0, count, floats, 0);
+        return floats;
+    }
+
+    @Benchmark
+    public FloatBuffer normalizeToFloatBuffer() {
+        float32View.clear();
+        kernel.normalize(pixels, count, rowScratch, float32View);
+        return float32View;
+    }
+
+    @Benchmark
+    public ByteBuffer fillFloat32() {
+        float32Buffer.clear();
+        float32Adapter.write(pixels, count, float32Buffer);
+        return float32Buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer fillFloat16() {
+        float16Buffer.clear();
+        float16Adapter.write(pixels, count, float16Buffer);
+        return float16Buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer fillUint8() {
+        uint8Buffer.clear();
+        uint8Adapter.write(pixels, count, uint8Buffer);
+        return uint8Buffer;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizing to the model input size from a sample-size decoded gallery image
+ * (the usual classifyImage input) and from a full-resolution photo, to ARGB
+ * pixels and straight into a normalized float tensor
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ResizeBenchmark {
+
+    @Param({"504x378", "4032x3024"})
+    public String size;
+
+    private int[] pixels;
+    private int width;
+    private final ImageResizer resizer = new ImageResizer(224, 224);
+    private final int[] resized = new int[224 * 224];
+    private final FloatBuffer floats = ByteBuffer.allocateDirect(224 * 224 * 3 * 4)
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkImages.parseSize(size);
+        width = dimensions[0];
+        pixels = BenchmarkImages.pixels(dimensions[0], dimensions[1], 42);
+        resizer.setSource(dimensions[0], dimensions[1]);
+    }
+
+    @Benchmark
+    public int[] resizeToPixels() {
+        resizer.resize(pixels, width, resized);
+        return resized;
+    }
+
+    @Benchmark
+    public FloatBuffer resizeToFloatBuffer() {
+        floats.clear();
+        resizer.resize(pixels, width, NormalizationKernel.RAW, floats);
+        return floats;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Writes pixels as IEEE 754 half precision values, using per-channel tables
+ * of precomputed half bits
+ */
+public class Float16InputAdapter implements InputTensorAdapter {
+    private final short[] redTable = new short[256];
+    private final short[] greenTable = new short[256];
+    private final short[] blueTable = new short[256];
+    private final short[] rowScratch = new short[224 * 3];
+
+    // View of the last destination buffer, kept to avoid a view per call
+    private ByteBuffer viewSource;
+    private ShortBuffer view;
+
+    public Float16InputAdapter(NormalizationKernel kernel) {
+        for (int value = 0; value < 256; value++) {
+            redTable[value] = TensorFormat.floatToHalf(kernel.value(NormalizationKernel.RED, value));
+            greenTable[value] = TensorFormat.floatToHalf(kernel.value(NormalizationKernel.GREEN, value));
+            blueTable[value] = TensorFormat.floatToHalf(kernel.value(NormalizationKernel.BLUE, value));
+        }
+    }
+
+    @Override
+    public void write(int[] pixels, int count, ByteBuffer dst) {
+        if (dst != viewSource) {
+            ByteBuffer whole = dst.duplicate().order(dst.order());
+            whole.rewind();
+            viewSource = dst;
+            view = whole.asShortBuffer();
+        }
+        view.position(dst.position() / 2);
+
+        final short[] red = redTable;
+        final short[] green = greenTable;
+        final short[] blue = blueTable;
+        int rowPixels = rowScratch.length / 3;
+        for (int offset = 0; offset < count; offset += rowPixels) {
+            int n = Math.min(rowPixels, count - offset);
+            int out = 0;
+            for (int i = offset; i < offset + n; i++) {
+                int pixel = pixels[i];
+                rowScratch[out++] = red[(pixel >> 16) & 0xFF];
+                rowScratch[out++] = green[(pixel >> 8) & 0xFF];
+                rowScratch[out++] = blue[pixel & 0xFF];
+            }
+            view.put(rowScratch, 0, out);
+        }
+        dst.position(view.position() * 2);
+    }
+
+    @Override
+    public TensorFormat getFormat() {
+        return TensorFormat.FLOAT16;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Writes pixels as float32 values through a native-order FloatBuffer view
+ */
+public class Float32InputAdapter implements InputTensorAdapter {
+    private final NormalizationKernel kernel;
+    private final float[] rowScratch = new float[224 * 3];
+
+    // View of the last destination buffer, kept to avoid a view per call
+    private ByteBuffer viewSource;
+    private FloatBuffer view;
+
+    public Float32InputAdapter(NormalizationKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    @Override
+    public void write(int[] pixels, int count, ByteBuffer dst) {
+        if (dst != viewSource) {
+            ByteBuffer whole = dst.duplicate().order(dst.order());
+            whole.rewind();
+            viewSource = dst;
+            view = whole.asFloatBuffer();
+        }
+        view.position(dst.position() / 4);
+        kernel.normalize(pixels, count, rowScratch, view);
+        dst.position(view.position() * 4);
+    }
+
+    @Override
+    public TensorFormat getFormat() {
+        return TensorFormat.FLOAT32;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.ui;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Resizes a region of an ARGB image to a fixed output size. Downscaling
+ * averages every source pixel by how much of it falls inside the output
+ * pixel (area averaging), upscaling interpolates bilinearly. Both are
+ * separable: the filter taps of each output column and row are computed once
+ * per geometry, and each output row accumulates its source rows into one
+ * float row before the horizontal taps run. A source that is not already in
+ * memory, such as a camera bitmap, can be read a strip of rows at a time
+ * instead of being copied whole.
+ */
+public class ImageResizer {
+    // Taps lighter than this come from rounding at pixel edges and are dropped
+    private static final double MIN_WEIGHT = 1e-6;
+    // Source rows read per strip, unless one output row needs more
+    private static final int STRIP_ROWS = 32;
+
+    /**
+     * Supplies source pixels a strip of rows at a time
+     */
+    public interface RowSource {
+        /**
+         * Copies a rectangle of the source into dst, row after row, with
+         * width pixels per row
+         */
+        void readRows(int left, int top, int width, int rows, int[] dst);
+    }
+
+    /**
+     * Filter taps along one axis. Output index i reads count[i] consecutive
+     * source indices from first[i], with weights starting at weightOffset[i].
+     */
+    private static final class Axis {
+        final int[] first;
+        final int[] count;
+        final int[] weightOffset;
+        float[] weights = new float[0];
+
+        Axis(int outputLength) {
+            first = new int[outputLength];
+            count = new int[outputLength];
+            weightOffset = new int[outputLength];
+        }
+
+        void build(int sourceLength, int outputLength) {
+            double scale = (double) sourceLength / outputLength;
+            int maxTaps = maxTaps(sourceLength, outputLength);
+            if (weights.length < outputLength * maxTaps) {
+                weights = new float[outputLength * maxTaps];
+            }
+
+            int offset = 0;
+            for (int i = 0; i < outputLength; i++) {
+                weightOffset[i] = offset;
+                if (scale >= 1.0) {
+                    // Area averaging over [start, end) in source pixels
+                    double start = i * scale;
+                    double end = start + scale;
+                    int from = (int) Math.floor(start);
+                    int to = Math.min(sourceLength, (int) Math.ceil(end));
+                    int taps = 0;
+                    for (int s = from; s < to; s++) {
+                        double overlap = Math.min(end, s + 1) - Math.max(start, s);
+                        if (overlap / scale < MIN_WEIGHT) {
+                            if (taps == 0) {
+                                from++;
+                            }
+                            continue;
+                        }
+                        weights[offset + taps++] = (float) (overlap / scale);
+                    }
+                    first[i] = from;
+                    count[i] = taps;
+                } else {
+                    // Bilinear between the two source pixels around the sample center
+                    double center = Math.max(0.0, Math.min(sourceLength - 1, (i + 0.5) * scale - 0.5));
+                    int left = (int) center;
+                    float fraction = (float) (center - left);
+                    first[i] = left;
+                    if (left + 1 < sourceLength && fraction > MIN_WEIGHT) {
+                        weights[offset] = 1.0f - fraction;
+                        weights[offset + 1] = fraction;
+                        count[i] = 2;
+                    } else {
+                        weights[offset] = 1.0f;
+                        count[i] = 1;
+                    }
+                }
+                offset += count[i];
+            }
+        }
+
+        static int maxTaps(int sourceLength, int outputLength) {
+            return (int) Math.ceil((double) sourceLength / outputLength) + 2;
+        }
+    }
+
+    private final int outputWidth;
+    private final int outputHeight;
+    private final Axis columns;
+    private final Axis rows;
+    private final int[] row;
+    private final float[] normalizedRow;
+    private float[] accumulator = new float[0];
+    private int[] strip = new int[0];
+
+    private int cropLeft = -1;
+    private int cropTop = -1;
+    private int cropWidth = -1;
+    private int cropHeight = -1;
+
+    public ImageResizer(int outputWidth, int outputHeight) {
+        if (outputWidth <= 0 || outputHeight <= 0) {
+            throw new IllegalArgumentException("Invalid output size: " + outputWidth + "x" + outputHeight);
+        }
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.columns = new Axis(outputWidth);
+        this.rows = new Axis(outputHeight);
+        this.row = new int[outputWidth];
+        this.normalizedRow = new float[outputWidth * 3];
+    }
+
+    /**
+     * Resizes the whole source image, stretching it to the output size
+     */
+    public void setSource(int width, int height) {
+        setCrop(0, 0, width, height);
+    }
+
+    /**
+     * Sets the source region. The filter taps are only rebuilt when it changed.
+     *
+     * @param cropLeft   Left edge of the region in source coordinates
+     * @param cropTop    Top edge of the region in source coordinates
+     * @param cropWidth  Width of the region
+     * @param cropHeight Height of the region
+     */
+    public void setCrop(int cropLeft, int cropTop, int cropWidth, int cropHeight) {
+        if (cropLeft == this.cropLeft && cropTop == this.cropTop
+                && cropWidth == this.cropWidth && cropHeight == this.cropHeight) {
+            return;
+        }
+        if (cropLeft < 0 || cropTop < 0 || cropWidth <= 0 || cropHeight <= 0) {
+            throw new IllegalArgumentException("Invalid crop: " + cropLeft + "," + cropTop
+                    + " " + cropWidth + "x" + cropHeight);
+        }
+
+        columns.build(cropWidth, outputWidth);
+        rows.build(cropHeight, outputHeight);
+        if (accumulator.length < cropWidth * 3) {
+            accumulator = new float[cropWidth * 3];
+        }
+
+        this.cropLeft = cropLeft;
+        this.cropTop = cropTop;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+    }
+
+    /**
+     * Resizes into outputWidth x outputHeight opaque ARGB pixels
+     *
+     * @param src       Source ARGB pixels
+     * @param srcStride Pixels per source row
+     * @param dst       Destination, row-major
+     */
+    public void resize(int[] src, int srcStride, int[] dst) {
+        for (int y = 0; y < outputHeight; y++) {
+            resizeRow(src, srcStride, 0, 0, y, dst, y * outputWidth);
+        }
+    }
+
+    /**
+     * Resizes into outputWidth x outputHeight opaque ARGB pixels, reading the
+     * source region in strips of rows so that only a strip is ever held in
+     * memory. The output matches resizing the whole region at once.
+     *
+     * @param source Supplies the rows of the source region
+     * @param dst    Destination, row-major
+     */
+    public void resize(RowSource source, int[] dst) {
+        if (cropWidth < 0) {
+            throw new IllegalStateException("Source not set");
+        }
+
+        int stripRows = Math.min(cropHeight, Math.max(STRIP_ROWS, Axis.maxTaps(cropHeight, outputHeight)));
+        if (strip.length < cropWidth * stripRows) {
+            strip = new int[cropWidth * stripRows];
+        }
+        // Source rows in the strip, relative to the region
+        int stripFirst = 0;
+        int stripEnd = 0;
+        for (int y = 0; y < outputHeight; y++) {
+            int first = rows.first[y];
+            int end = first + rows.count[y];
+            if (first < stripFirst || end > stripEnd) {
+                // Output rows move down the source, so the next strip starts at this row
+                stripFirst = first;
+                stripEnd = Math.min(cropHeight, first + stripRows);
+                source.readRows(cropLeft, cropTop + first, cropWidth, stripEnd - stripFirst, strip);
+            }
+            resizeRow(strip, cropWidth, cropTop + stripFirst, cropLeft, y, dst, y * outputWidth);
+        }
+    }
+
+    /**
+     * Resizes and normalizes straight into interleaved RGB floats, one output
+     * row at a time, starting at the buffer's position. Channels are rounded
+     * to 8 bits before the kernel runs, so this matches resizing to pixels and
+     * normalizing them afterwards exactly.
+     */
+    public void resize(int[] src, int srcStride, NormalizationKernel kernel, FloatBuffer dst) {
+        for (int y = 0; y < outputHeight; y++) {
+            resizeRow(src, srcStride, 0, 0, y, row, 0);
+            kernel.normalize(row, 0, outputWidth, normalizedRow, 0);
+            dst.put(normalizedRow, 0, outputWidth * 3);
+        }
+    }
+
+    /**
+     * @param srcTop  Source row of the first row in src
+     * @param srcLeft Source column of the first column in src
+     */
+    private void resizeRow(int[] src, int srcStride, int srcTop, int srcLeft, int outputRow,
+                           int[] dst, int dstOffset) {
+        if (cropWidth < 0) {
+            throw new IllegalStateException("Source not set");
+        }
+
+        final float[] acc = accumulator;
+        final int width = cropWidth;
+        Arrays.fill(acc, 0, width * 3, 0.0f);
+
+        // Vertical pass: weighted sum of the source rows under this output row
+        int rowTaps = rows.count[outputRow];
+        int rowWeights = rows.weightOffset[outputRow];
+        for (int t = 0; t < rowTaps; t++) {
+            float weight = rows.weights[rowWeights + t];
+            int base = (cropTop - srcTop + rows.first[outputRow] + t) * srcStride + cropLeft - srcLeft;
+            for (int x = 0, a = 0; x < width; x++) {
+                int pixel = src[base + x];
+                acc[a++] += weight * ((pixel >> 16) & 0xFF);
+                acc[a++] += weight * ((pixel >> 8) & 0xFF);
+                acc[a++] += weight * (pixel & 0xFF);
+            }
+        }
+
+        // Horizontal pass over the accumulated row
+        final int[] first = columns.first;
+        final int[] count = columns.count;
+        final int[] weightOffset = columns.weightOffset;
+        final float[] weights = columns.weights;
+        for (int x = 0; x < outputWidth; x++) {
+            float r = 0.0f;
+            float g = 0.0f;
+            float b = 0.0f;
+            int a = first[x] * 3;
+            int w = weightOffset[x];
+            for (int t = count[x]; t > 0; t--) {
+                float weight = weights[w++];
+                r += weight * acc[a++];
+                g += weight * acc[a++];
+                b += weight * acc[a++];
+            }
+            dst[dstOffset + x] = 0xFF000000 | (round(r) << 16) | (round(g) << 8) | round(b);
+        }
+    }
+
+    private static int round(float value) {
+        int rounded = (int) (value + 0.5f);
+        return rounded < 0 ? 0 : (rounded > 255 ? 255 : rounded);
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+}
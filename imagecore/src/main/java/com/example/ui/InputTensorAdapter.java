@@ -0,0 +1,34 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes normalized ARGB pixels into the model input buffer in the element
+ * type the input tensor expects
+ */
+public interface InputTensorAdapter {
+
+    /**
+     * Writes count pixels at the buffer's current position and advances it
+     */
+    void write(int[] pixels, int count, ByteBuffer dst);
+
+    TensorFormat getFormat();
+
+    /**
+     * Creates the adapter matching the input tensor format
+     */
+    static InputTensorAdapter create(TensorFormat format, NormalizationKernel kernel) {
+        switch (format.getType()) {
+            case FLOAT32:
+                return new Float32InputAdapter(kernel);
+            case FLOAT16:
+                return new Float16InputAdapter(kernel);
+            case UINT8:
+            case INT8:
+                return new QuantizedInputAdapter(format, kernel);
+            default:
+                throw new IllegalArgumentException("Unsupported input tensor format: " + format);
+        }
+    }
+}
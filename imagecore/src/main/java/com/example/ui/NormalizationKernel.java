@@ -0,0 +1,138 @@
+package com.example.ui;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Per-channel pixel normalization backed by precomputed 256-entry lookup
+ * tables. Every kernel shares the same hot loop, so adding a normalization
+ * only means describing how a single 8-bit channel value maps to a float.
+ */
+public final class NormalizationKernel {
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+
+    private static final float[] IMAGENET_MEAN = {123.68f, 116.78f, 103.94f};
+
+    /**
+     * Maps one 8-bit channel value to its normalized float value
+     */
+    public interface ChannelFunction {
+        float apply(int channel, int value);
+    }
+
+    // Method 1: [0,1] scaling
+    public static final NormalizationKernel UNIT_SCALE =
+            new NormalizationKernel("[0,1] scaling", (channel, value) -> value / 255.0f);
+
+    // Method 2: [-1,1] scaling
+    public static final NormalizationKernel SIGNED_SCALE =
+            new NormalizationKernel("[-1,1] scaling", (channel, value) -> value / 127.5f - 1.0f);
+
+    // Method 3: ImageNet mean subtraction
+    public static final NormalizationKernel IMAGENET_MEAN_SUBTRACTION =
+            new NormalizationKernel("ImageNet mean subtraction",
+                    (channel, value) -> (value - IMAGENET_MEAN[channel]) / 255.0f);
+
+    // Method 4: No preprocessing, keep raw pixel values
+    public static final NormalizationKernel RAW =
+            new NormalizationKernel("No preprocessing", (channel, value) -> value);
+
+    private final String name;
+    private final float[] redTable = new float[256];
+    private final float[] greenTable = new float[256];
+    private final float[] blueTable = new float[256];
+
+    public NormalizationKernel(String name, ChannelFunction function) {
+        this.name = name;
+        for (int value = 0; value < 256; value++) {
+            redTable[value] = function.apply(RED, value);
+            greenTable[value] = function.apply(GREEN, value);
+            blueTable[value] = function.apply(BLUE, value);
+        }
+    }
+
+    /**
+     * Returns the kernel for one of the legacy numbered preprocessing methods (1-4)
+     */
+    public static NormalizationKernel forMethod(int method) {
+        switch (method) {
+            case 1:
+                return UNIT_SCALE;
+            case 2:
+                return SIGNED_SCALE;
+            case 3:
+                return IMAGENET_MEAN_SUBTRACTION;
+            case 4:
+                return RAW;
+            default:
+                throw new IllegalArgumentException("Unknown preprocessing method: " + method);
+        }
+    }
+
+    /**
+     * Returns the normalized value of an 8-bit sample of the given channel
+     */
+    public float value(int channel, int sample) {
+        switch (channel) {
+            case RED:
+                return redTable[sample & 0xFF];
+            case GREEN:
+                return greenTable[sample & 0xFF];
+            case BLUE:
+                return blueTable[sample & 0xFF];
+            default:
+                throw new IllegalArgumentException("Unknown channel: " + channel);
+        }
+    }
+
+    /**
+     * Normalizes ARGB pixels into interleaved RGB floats
+     *
+     * @param pixels    Source ARGB pixels
+     * @param offset    Index of the first pixel to read
+     * @param count     Number of pixels to normalize
+     * @param dst       Destination array, needs room for count * 3 floats
+     * @param dstOffset Index of the first float to write
+     */
+    public void normalize(int[] pixels, int offset, int count, float[] dst, int dstOffset) {
+        final float[] red = redTable;
+        final float[] green = greenTable;
+        final float[] blue = blueTable;
+        int out = dstOffset;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            int pixel = pixels[i];
+            dst[out++] = red[(pixel >> 16) & 0xFF];
+            dst[out++] = green[(pixel >> 8) & 0xFF];
+            dst[out++] = blue[pixel & 0xFF];
+        }
+    }
+
+    /**
+     * Normalizes ARGB pixels and writes them to the buffer in bulk, one scratch
+     * row at a time
+     *
+     * @param pixels     Source ARGB pixels
+     * @param count      Number of pixels to normalize
+     * @param rowScratch Scratch array whose length is a multiple of 3
+     * @param out        Destination buffer, written from its current position
+     */
+    public void normalize(int[] pixels, int count, float[] rowScratch, FloatBuffer out) {
+        int rowPixels = rowScratch.length / 3;
+        for (int offset = 0; offset < count; offset += rowPixels) {
+            int n = Math.min(rowPixels, count - offset);
+            normalize(pixels, offset, n, rowScratch, 0);
+            out.put(rowScratch, 0, n * 3);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.ui;
+
+/**
+ * Difference hash (dHash) of an image: the image is reduced to a 9x8
+ * grayscale grid and each bit records whether a cell is brighter than its
+ * right neighbour. Near-identical images have hashes a few bits apart.
+ */
+public final class PerceptualHash {
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Computes the 64-bit dHash of ARGB pixels
+     *
+     * @param pixels Row-major ARGB pixels
+     * @param width  Image width, at least 9
+     * @param height Image height, at least 8
+     */
+    public static long dHash(int[] pixels, int width, int height) {
+        if (width < GRID_WIDTH || height < GRID_HEIGHT) {
+            throw new IllegalArgumentException("Image too small to hash: " + width + "x" + height);
+        }
+
+        // Compare each cell with its right neighbour, one grid row at a time
+        long hash = 0;
+        int bit = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int y0 = gy * height / GRID_HEIGHT;
+            int y1 = (gy + 1) * height / GRID_HEIGHT;
+            int previous = cellLuma(pixels, width, 0, y0, width / GRID_WIDTH, y1);
+            for (int gx = 1; gx < GRID_WIDTH; gx++) {
+                int x0 = gx * width / GRID_WIDTH;
+                int x1 = (gx + 1) * width / GRID_WIDTH;
+                int current = cellLuma(pixels, width, x0, y0, x1, y1);
+                if (previous > current) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+                previous = current;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Average luma of a cell, using integer BT.601 weights
+     */
+    private static int cellLuma(int[] pixels, int width, int x0, int y0, int x1, int y1) {
+        long sum = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                int pixel = pixels[row + x];
+                sum += 77 * ((pixel >> 16) & 0xFF) + 150 * ((pixel >> 8) & 0xFF) + 29 * (pixel & 0xFF);
+            }
+        }
+        return (int) (sum / ((long) (x1 - x0) * (y1 - y0)));
+    }
+
+    /**
+     * Number of differing bits between two hashes
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
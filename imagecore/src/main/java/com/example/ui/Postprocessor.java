@@ -0,0 +1,132 @@
+package com.example.ui;
+
+/**
+ * Allocation-free postprocessing of the two classifier heads: numerically
+ * stable softmax with the argmax found on the way, top-k per head, and a
+ * joint top-k over all fruit x ripeness combinations ranked by the product
+ * of their probabilities. Every method writes into caller-owned arrays.
+ */
+public final class Postprocessor {
+
+    private Postprocessor() {
+    }
+
+    /**
+     * Writes softmax(logits) into probs
+     *
+     * @param logits Raw model outputs
+     * @param probs  Receives the probabilities, may be the logits array itself
+     * @param count  Number of classes
+     * @return Index of the most probable class
+     */
+    public static int softmax(float[] logits, float[] probs, int count) {
+        // The argmax of the logits is the argmax of the probabilities
+        int best = 0;
+        float max = logits[0];
+        for (int i = 1; i < count; i++) {
+            if (logits[i] > max) {
+                max = logits[i];
+                best = i;
+            }
+        }
+
+        // Shift by the max for numerical stability
+        float sum = 0.0f;
+        for (int i = 0; i < count; i++) {
+            float e = (float) Math.exp(logits[i] - max);
+            probs[i] = e;
+            sum += e;
+        }
+
+        float scale = 1.0f / sum;
+        for (int i = 0; i < count; i++) {
+            probs[i] *= scale;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the k most probable classes, in descending order. Ties keep the
+     * lower class index first.
+     *
+     * @param probs   Class probabilities
+     * @param count   Number of classes
+     * @param k       Number of classes wanted
+     * @param indices Receives the class indices, at least min(k, count) long
+     * @param values  Receives the probabilities, at least min(k, count) long
+     * @return Number of entries written, min(k, count)
+     */
+    public static int topK(float[] probs, int count, int k, int[] indices, float[] values) {
+        int size = 0;
+        int limit = Math.min(k, count);
+        for (int i = 0; i < count; i++) {
+            size = insert(probs[i], i, 0, indices, null, values, size, limit);
+        }
+        return size;
+    }
+
+    /**
+     * Finds the k most probable fruit and ripeness combinations, treating the
+     * heads as independent
+     *
+     * @param fruitProbs      Fruit probabilities
+     * @param fruitCount      Number of fruit classes
+     * @param ripenessProbs   Ripeness probabilities
+     * @param ripenessCount   Number of ripeness classes
+     * @param k               Number of combinations wanted
+     * @param fruitIndices    Receives the fruit index of each combination
+     * @param ripenessIndices Receives the ripeness index of each combination
+     * @param jointProbs      Receives the product probability of each combination
+     * @return Number of entries written, min(k, fruitCount * ripenessCount)
+     */
+    public static int jointTopK(float[] fruitProbs, int fruitCount, float[] ripenessProbs, int ripenessCount,
+                                int k, int[] fruitIndices, int[] ripenessIndices, float[] jointProbs) {
+        int size = 0;
+        int limit = Math.min(k, fruitCount * ripenessCount);
+        for (int f = 0; f < fruitCount; f++) {
+            float fruitProb = fruitProbs[f];
+            for (int r = 0; r < ripenessCount; r++) {
+                size = insert(fruitProb * ripenessProbs[r], f, r, fruitIndices, ripenessIndices, jointProbs,
+                        size, limit);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Appends a percentage with one decimal, e.g. "42.5%", without going
+     * through String.format
+     */
+    public static StringBuilder appendPercent(StringBuilder builder, float percent) {
+        int tenths = Math.round(percent * 10);
+        return builder.append(tenths / 10).append('.').append(tenths % 10).append('%');
+    }
+
+    /**
+     * Inserts a candidate into a descending list of at most limit entries
+     *
+     * @return The new list size
+     */
+    private static int insert(float value, int first, int second, int[] firstIndices, int[] secondIndices,
+                              float[] values, int size, int limit) {
+        if (size == limit && (limit == 0 || value <= values[size - 1])) {
+            return size;
+        }
+
+        int pos = size < limit ? size : size - 1;
+        while (pos > 0 && values[pos - 1] < value) {
+            values[pos] = values[pos - 1];
+            firstIndices[pos] = firstIndices[pos - 1];
+            if (secondIndices != null) {
+                secondIndices[pos] = secondIndices[pos - 1];
+            }
+            pos--;
+        }
+        values[pos] = value;
+        firstIndices[pos] = first;
+        if (secondIndices != null) {
+            secondIndices[pos] = second;
+        }
+        return size < limit ? size + 1 : size;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes pixels directly as uint8 or int8 values. The normalization and the
+ * quantization with the tensor's scale and zero point are folded into one
+ * 256-entry byte table per channel, so no float math runs per pixel.
+ */
+public class QuantizedInputAdapter implements InputTensorAdapter {
+    private final TensorFormat format;
+    private final byte[] redTable = new byte[256];
+    private final byte[] greenTable = new byte[256];
+    private final byte[] blueTable = new byte[256];
+    private final byte[] rowScratch = new byte[224 * 3];
+
+    public QuantizedInputAdapter(TensorFormat format, NormalizationKernel kernel) {
+        if (!format.isQuantized()) {
+            throw new IllegalArgumentException("Not a quantized format: " + format);
+        }
+        this.format = format;
+        for (int value = 0; value < 256; value++) {
+            redTable[value] = (byte) format.quantize(kernel.value(NormalizationKernel.RED, value));
+            greenTable[value] = (byte) format.quantize(kernel.value(NormalizationKernel.GREEN, value));
+            blueTable[value] = (byte) format.quantize(kernel.value(NormalizationKernel.BLUE, value));
+        }
+    }
+
+    @Override
+    public void write(int[] pixels, int count, ByteBuffer dst) {
+        final byte[] red = redTable;
+        final byte[] green = greenTable;
+        final byte[] blue = blueTable;
+        int rowPixels = rowScratch.length / 3;
+        for (int offset = 0; offset < count; offset += rowPixels) {
+            int n = Math.min(rowPixels, count - offset);
+            int out = 0;
+            for (int i = offset; i < offset + n; i++) {
+                int pixel = pixels[i];
+                rowScratch[out++] = red[(pixel >> 16) & 0xFF];
+                rowScratch[out++] = green[(pixel >> 8) & 0xFF];
+                rowScratch[out++] = blue[pixel & 0xFF];
+            }
+            dst.put(rowScratch, 0, out);
+        }
+    }
+
+    @Override
+    public TensorFormat getFormat() {
+        return format;
+    }
+}
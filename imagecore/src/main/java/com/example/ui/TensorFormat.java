@@ -0,0 +1,163 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Element type and quantization parameters of a model tensor
+ */
+public final class TensorFormat {
+    public enum Type {
+        FLOAT32(4),
+        FLOAT16(2),
+        UINT8(1),
+        INT8(1);
+
+        private final int bytes;
+
+        Type(int bytes) {
+            this.bytes = bytes;
+        }
+
+        public int bytes() {
+            return bytes;
+        }
+    }
+
+    public static final TensorFormat FLOAT32 = new TensorFormat(Type.FLOAT32, 1.0f, 0);
+    public static final TensorFormat FLOAT16 = new TensorFormat(Type.FLOAT16, 1.0f, 0);
+
+    private final Type type;
+    private final float scale;
+    private final int zeroPoint;
+
+    public TensorFormat(Type type, float scale, int zeroPoint) {
+        this.type = type;
+        // Unquantized tensors report a scale of 0
+        this.scale = scale == 0.0f ? 1.0f : scale;
+        this.zeroPoint = zeroPoint;
+    }
+
+    /**
+     * Creates a format from a TFLite data type name such as "UINT8"
+     */
+    public static TensorFormat of(String dataTypeName, float scale, int zeroPoint) {
+        try {
+            return new TensorFormat(Type.valueOf(dataTypeName), scale, zeroPoint);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported tensor type: " + dataTypeName, e);
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getZeroPoint() {
+        return zeroPoint;
+    }
+
+    public int bytesPerValue() {
+        return type.bytes();
+    }
+
+    public boolean isQuantized() {
+        return type == Type.UINT8 || type == Type.INT8;
+    }
+
+    /**
+     * Reads the element at the given index and returns its real value,
+     * dequantizing it if needed
+     */
+    public float read(ByteBuffer buffer, int index) {
+        switch (type) {
+            case FLOAT32:
+                return buffer.getFloat(index * 4);
+            case FLOAT16:
+                return halfToFloat(buffer.getShort(index * 2));
+            case UINT8:
+                return ((buffer.get(index) & 0xFF) - zeroPoint) * scale;
+            case INT8:
+                return (buffer.get(index) - zeroPoint) * scale;
+            default:
+                throw new IllegalStateException("Unknown tensor type: " + type);
+        }
+    }
+
+    /**
+     * Quantizes a real value with this format's scale and zero point,
+     * clamped to the range of the element type
+     */
+    public int quantize(float value) {
+        int q = Math.round(value / scale) + zeroPoint;
+        int min = type == Type.INT8 ? -128 : 0;
+        int max = type == Type.INT8 ? 127 : 255;
+        return Math.max(min, Math.min(max, q));
+    }
+
+    /**
+     * Converts a float to IEEE 754 half precision bits, rounding to nearest even
+     */
+    public static short floatToHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent >= 0x1F) {
+            // Overflow, infinity or NaN
+            boolean nan = ((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0;
+            return (short) (sign | 0x7C00 | (nan ? 0x200 : 0));
+        }
+        if (exponent <= 0) {
+            // Subnormal or zero
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        int half = (exponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1FFF;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            // May carry into the exponent, which is still the correctly rounded result
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * Converts IEEE 754 half precision bits to a float
+     */
+    public static float halfToFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            float value = mantissa / 16777216.0f; // mantissa * 2^-24
+            return sign == 0 ? value : -value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    @Override
+    public String toString() {
+        return isQuantized() ? type + "(scale=" + scale + ", zeroPoint=" + zeroPoint + ")" : type.toString();
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.ui;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts YUV_420_888 camera frames to square ARGB model input in a single
+ * pass. Cropping, rotation and resizing are folded into per-row and
+ * per-column source index tables, so each output pixel costs two table
+ * lookups, three plane reads and the colour conversion. Resizing samples the
+ * nearest source pixel.
+ */
+public class YuvConverter {
+    // Full-range BT.601 coefficients in 16.16 fixed point, as used by camera JPEG/YUV
+    private static final int V_TO_R = 91881;
+    private static final int U_TO_G = 22554;
+    private static final int V_TO_G = 46802;
+    private static final int U_TO_B = 116130;
+
+    /**
+     * The three planes of a YUV_420_888 frame. The U and V planes share
+     * strides, which holds for every Android camera format.
+     */
+    public static class Planes {
+        public ByteBuffer y;
+        public ByteBuffer u;
+        public ByteBuffer v;
+        public int yRowStride;
+        public int uvRowStride;
+        public int uvPixelStride;
+
+        public Planes set(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                          int uvRowStride, int uvPixelStride) {
+            this.y = y;
+            this.yRowStride = yRowStride;
+            this.u = u;
+            this.v = v;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+            return this;
+        }
+    }
+
+    private final int outputSize;
+    private final int[] row;
+
+    // Source coordinate of output pixel (x, y) is (xByColumn[x] + xByRow[y], yByColumn[x] + yByRow[y])
+    private final int[] xByColumn;
+    private final int[] xByRow;
+    private final int[] yByColumn;
+    private final int[] yByRow;
+
+    private int cropLeft = -1;
+    private int cropTop = -1;
+    private int cropWidth = -1;
+    private int cropHeight = -1;
+    private int rotationDegrees = -1;
+
+    /**
+     * @param outputSize Side of the square output, e.g. the model input size
+     */
+    public YuvConverter(int outputSize) {
+        this.outputSize = outputSize;
+        this.row = new int[outputSize];
+        this.xByColumn = new int[outputSize];
+        this.xByRow = new int[outputSize];
+        this.yByColumn = new int[outputSize];
+        this.yByRow = new int[outputSize];
+    }
+
+    /**
+     * Uses the largest centered square of the frame
+     */
+    public void setCenterCrop(int width, int height, int rotationDegrees) {
+        int side = Math.min(width, height);
+        setGeometry((width - side) / 2, (height - side) / 2, side, side, rotationDegrees);
+    }
+
+    /**
+     * Sets the source region and rotation. The index tables are only rebuilt
+     * when something changed.
+     *
+     * @param cropLeft        Left edge of the region in frame coordinates
+     * @param cropTop         Top edge of the region in frame coordinates
+     * @param cropWidth       Width of the region, at least 2
+     * @param cropHeight      Height of the region, at least 2
+     * @param rotationDegrees Clockwise rotation that makes the frame upright: 0, 90, 180 or 270
+     */
+    public void setGeometry(int cropLeft, int cropTop, int cropWidth, int cropHeight, int rotationDegrees) {
+        if (cropLeft == this.cropLeft && cropTop == this.cropTop && cropWidth == this.cropWidth
+                && cropHeight == this.cropHeight && rotationDegrees == this.rotationDegrees) {
+            return;
+        }
+        if (rotationDegrees % 90 != 0 || rotationDegrees < 0 || rotationDegrees >= 360) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotationDegrees);
+        }
+        if (cropLeft < 0 || cropTop < 0 || cropWidth < 2 || cropHeight < 2) {
+            throw new IllegalArgumentException("Invalid crop: " + cropLeft + "," + cropTop
+                    + " " + cropWidth + "x" + cropHeight);
+        }
+
+        for (int i = 0; i < outputSize; i++) {
+            // Source offsets of the i-th output sample along each crop axis and in reverse
+            int alongWidth = (int) ((i + 0.5f) * cropWidth / outputSize);
+            int alongHeight = (int) ((i + 0.5f) * cropHeight / outputSize);
+            int reverseWidth = cropWidth - 1 - alongWidth;
+            int reverseHeight = cropHeight - 1 - alongHeight;
+
+            switch (rotationDegrees) {
+                case 0:
+                    xByColumn[i] = cropLeft + alongWidth;
+                    xByRow[i] = 0;
+                    yByColumn[i] = 0;
+                    yByRow[i] = cropTop + alongHeight;
+                    break;
+                case 90:
+                    xByColumn[i] = 0;
+                    xByRow[i] = cropLeft + alongWidth;
+                    yByColumn[i] = cropTop + reverseHeight;
+                    yByRow[i] = 0;
+                    break;
+                case 180:
+                    xByColumn[i] = cropLeft + reverseWidth;
+                    xByRow[i] = 0;
+                    yByColumn[i] = 0;
+                    yByRow[i] = cropTop + reverseHeight;
+                    break;
+                default:
+                    xByColumn[i] = 0;
+                    xByRow[i] = cropLeft + reverseWidth;
+                    yByColumn[i] = cropTop + alongHeight;
+                    yByRow[i] = 0;
+                    break;
+            }
+        }
+
+        this.cropLeft = cropLeft;
+        this.cropTop = cropTop;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+        this.rotationDegrees = rotationDegrees;
+    }
+
+    /**
+     * Converts the frame into outputSize x outputSize ARGB pixels
+     */
+    public void convert(Planes planes, int[] dst) {
+        for (int y = 0; y < outputSize; y++) {
+            convertRow(planes, y, dst, y * outputSize);
+        }
+    }
+
+    /**
+     * Converts the frame straight into a model input buffer, one output row
+     * at a time, starting at the buffer's position
+     */
+    public void convert(Planes planes, InputTensorAdapter adapter, ByteBuffer dst) {
+        for (int y = 0; y < outputSize; y++) {
+            convertRow(planes, y, row, 0);
+            adapter.write(row, outputSize, dst);
+        }
+    }
+
+    private void convertRow(Planes planes, int outputRow, int[] dst, int dstOffset) {
+        if (rotationDegrees < 0) {
+            throw new IllegalStateException("Geometry not set");
+        }
+
+        final ByteBuffer yPlane = planes.y;
+        final ByteBuffer uPlane = planes.u;
+        final ByteBuffer vPlane = planes.v;
+        final int yRowStride = planes.yRowStride;
+        final int uvRowStride = planes.uvRowStride;
+        final int uvPixelStride = planes.uvPixelStride;
+        final int rowX = xByRow[outputRow];
+        final int rowY = yByRow[outputRow];
+
+        for (int x = 0; x < outputSize; x++) {
+            int sx = xByColumn[x] + rowX;
+            int sy = yByColumn[x] + rowY;
+            int uvIndex = (sy >> 1) * uvRowStride + (sx >> 1) * uvPixelStride;
+
+            int luma = (yPlane.get(sy * yRowStride + sx) & 0xFF) << 16;
+            int u = (uPlane.get(uvIndex) & 0xFF) - 128;
+            int v = (vPlane.get(uvIndex) & 0xFF) - 128;
+
+            int r = clamp((luma + V_TO_R * v) >> 16);
+            int g = clamp((luma - U_TO_G * u - V_TO_G * v) >> 16);
+            int b = clamp((luma + U_TO_B * u) >> 16);
+            dst[dstOffset + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the area-averaging and bilinear resizer
+ */
+public class ImageResizerTest {
+
+    private static int rgb(int r, int g, int b) {
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int[] gradient(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = rgb(x * 255 / width, y * 255 / height, (x * 7 + y * 13) & 0xFF);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Tests that resizing to the same size copies the pixels unchanged
+     */
+    @Test
+    public void testIdentity() {
+        int[] src = gradient(16, 12);
+        int[] dst = new int[16 * 12];
+        ImageResizer resizer = new ImageResizer(16, 12);
+        resizer.setSource(16, 12);
+
+        resizer.resize(src, 16, dst);
+
+        assertArrayEquals(src, dst);
+    }
+
+    /**
+     * Tests halving against hand-computed 2x2 block averages
+     */
+    @Test
+    public void testHalvingAveragesBlocks() {
+        int[] src = {
+                rgb(0, 0, 0), rgb(100, 10, 1), rgb(200, 200, 200), rgb(200, 200, 200),
+                rgb(40, 20, 3), rgb(60, 30, 4), rgb(200, 200, 200), rgb(200, 200, 200),
+        };
+        int[] dst = new int[2];
+        ImageResizer resizer = new ImageResizer(2, 1);
+        resizer.setSource(4, 2);
+
+        resizer.resize(src, 4, dst);
+
+        assertEquals(rgb(50, 15, 2), dst[0]);
+        assertEquals(rgb(200, 200, 200), dst[1]);
+    }
+
+    /**
+     * Tests that non-integer downscaling weighs partially covered pixels
+     */
+    @Test
+    public void testFractionalCoverage() {
+        // Three columns into two: each output covers 1.5 source pixels
+        int[] src = {rgb(0, 0, 0), rgb(90, 90, 90), rgb(180, 180, 180)};
+        int[] dst = new int[2];
+        ImageResizer resizer = new ImageResizer(2, 1);
+        resizer.setSource(3, 1);
+
+        resizer.resize(src, 3, dst);
+
+        assertEquals(rgb(30, 30, 30), dst[0]);
+        assertEquals(rgb(150, 150, 150), dst[1]);
+    }
+
+    /**
+     * Tests that a uniform image stays uniform at any scale
+     */
+    @Test
+    public void testUniformColorPreserved() {
+        int color = rgb(12, 150, 233);
+        int[] src = new int[37 * 23];
+        Arrays.fill(src, color);
+        for (int size : new int[]{5, 23, 100}) {
+            int[] dst = new int[size * size];
+            ImageResizer resizer = new ImageResizer(size, size);
+            resizer.setSource(37, 23);
+            resizer.resize(src, 37, dst);
+            for (int pixel : dst) {
+                assertEquals(color, pixel);
+            }
+        }
+    }
+
+    /**
+     * Tests bilinear upscaling between two pixels
+     */
+    @Test
+    public void testBilinearUpscale() {
+        int[] src = {rgb(0, 0, 0), rgb(200, 100, 40)};
+        int[] dst = new int[4];
+        ImageResizer resizer = new ImageResizer(4, 1);
+        resizer.setSource(2, 1);
+
+        resizer.resize(src, 2, dst);
+
+        // Sample centers at -0.25 (clamped), 0.25, 0.75 and 1.25 (clamped)
+        assertEquals(rgb(0, 0, 0), dst[0]);
+        assertEquals(rgb(50, 25, 10), dst[1]);
+        assertEquals(rgb(150, 75, 30), dst[2]);
+        assertEquals(rgb(200, 100, 40), dst[3]);
+    }
+
+    /**
+     * Tests that a crop only reads inside the region, using the row stride
+     */
+    @Test
+    public void testCrop() {
+        int[] src = gradient(10, 8);
+        int[] dst = new int[3 * 2];
+        ImageResizer resizer = new ImageResizer(3, 2);
+        resizer.setCrop(4, 5, 3, 2);
+
+        resizer.resize(src, 10, dst);
+
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                assertEquals(src[(5 + y) * 10 + 4 + x], dst[y * 3 + x]);
+            }
+        }
+    }
+
+    /**
+     * Tests that the FloatBuffer output matches resizing then normalizing
+     */
+    @Test
+    public void testFloatBufferMatchesPixels() {
+        int[] src = gradient(500, 375);
+        ImageResizer resizer = new ImageResizer(224, 224);
+        resizer.setSource(500, 375);
+
+        int[] pixels = new int[224 * 224];
+        resizer.resize(src, 500, pixels);
+        float[] expected = new float[224 * 224 * 3];
+        NormalizationKernel.IMAGENET_MEAN_SUBTRACTION.normalize(pixels, 0, pixels.length, expected, 0);
+
+        FloatBuffer floats = ByteBuffer.allocateDirect(expected.length * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        resizer.resize(src, 500, NormalizationKernel.IMAGENET_MEAN_SUBTRACTION, floats);
+
+        assertEquals(expected.length, floats.position());
+        floats.rewind();
+        for (float value : expected) {
+            assertEquals(value, floats.get(), 0.0f);
+        }
+    }
+
+    /**
+     * Tests that reading the source in strips of rows gives the same pixels
+     * as resizing it from memory, when downscaling a crop and when upscaling
+     */
+    @Test
+    public void testRowSourceMatchesArray() {
+        int[][] geometries = {
+                // width, height, crop left, top, width, height, output width, height
+                {1000, 750, 40, 30, 900, 700, 224, 224},
+                {100, 60, 0, 0, 100, 60, 224, 224},
+        };
+        for (int[] g : geometries) {
+            int[] src = gradient(g[0], g[1]);
+            ImageResizer resizer = new ImageResizer(g[6], g[7]);
+            resizer.setCrop(g[2], g[3], g[4], g[5]);
+
+            int[] expected = new int[g[6] * g[7]];
+            resizer.resize(src, g[0], expected);
+            int[] actual = new int[g[6] * g[7]];
+            int[] reads = new int[1];
+            resizer.resize((left, top, width, rows, dst) -> {
+                reads[0]++;
+                for (int y = 0; y < rows; y++) {
+                    System.arraycopy(src, (top + y) * g[0] + left, dst, y * width, width);
+                }
+            }, actual);
+
+            assertArrayEquals(expected, actual);
+            assertTrue("Strips read: " + reads[0], reads[0] < g[7]);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSourceNotSet() {
+        new ImageResizer(2, 2).resize(new int[4], 2, new int[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCrop() {
+        new ImageResizer(2, 2).setCrop(0, 0, 0, 4);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the input tensor adapters and output dequantization
+ */
+public class InputTensorAdapterTest {
+
+    private static final int[] PIXELS = {
+            0xFF000000 | (100 << 16) | (150 << 8) | 200,
+            0xFF000000 | (0 << 16) | (255 << 8) | 1
+    };
+
+    private static ByteBuffer buffer(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Tests that the factory picks the adapter matching the tensor type
+     */
+    @Test
+    public void testAdapterSelection() {
+        NormalizationKernel kernel = NormalizationKernel.RAW;
+        assertTrue(InputTensorAdapter.create(TensorFormat.FLOAT32, kernel) instanceof Float32InputAdapter);
+        assertTrue(InputTensorAdapter.create(TensorFormat.FLOAT16, kernel) instanceof Float16InputAdapter);
+        assertTrue(InputTensorAdapter.create(TensorFormat.of("UINT8", 1.0f, 0), kernel) instanceof QuantizedInputAdapter);
+        assertTrue(InputTensorAdapter.create(TensorFormat.of("INT8", 1.0f, 0), kernel) instanceof QuantizedInputAdapter);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedType() {
+        TensorFormat.of("STRING", 0.0f, 0);
+    }
+
+    /**
+     * Tests that float32 writes start at the buffer position and advance it
+     */
+    @Test
+    public void testFloat32Adapter() {
+        ByteBuffer dst = buffer(2 * 2 * 3 * 4);
+        InputTensorAdapter adapter = InputTensorAdapter.create(TensorFormat.FLOAT32, NormalizationKernel.UNIT_SCALE);
+
+        adapter.write(PIXELS, 2, dst);
+        adapter.write(PIXELS, 1, dst);
+
+        assertEquals(9 * 4, dst.position());
+        assertEquals(100 / 255.0f, dst.getFloat(0), 0.0f);
+        assertEquals(1 / 255.0f, dst.getFloat(5 * 4), 0.0f);
+        assertEquals(100 / 255.0f, dst.getFloat(6 * 4), 0.0f);
+    }
+
+    /**
+     * Tests that raw pixels go straight into a uint8 tensor with unit scale
+     */
+    @Test
+    public void testUint8RawPixels() {
+        ByteBuffer dst = buffer(6);
+        InputTensorAdapter adapter = InputTensorAdapter.create(TensorFormat.of("UINT8", 1.0f, 0), NormalizationKernel.RAW);
+
+        adapter.write(PIXELS, 2, dst);
+
+        assertEquals(6, dst.position());
+        assertEquals(100, dst.get(0) & 0xFF);
+        assertEquals(150, dst.get(1) & 0xFF);
+        assertEquals(200, dst.get(2) & 0xFF);
+        assertEquals(0, dst.get(3) & 0xFF);
+        assertEquals(255, dst.get(4) & 0xFF);
+        assertEquals(1, dst.get(5) & 0xFF);
+    }
+
+    /**
+     * Tests quantizing [-1,1] normalized values into int8 with scale and zero point
+     */
+    @Test
+    public void testInt8QuantizedPixels() {
+        TensorFormat format = TensorFormat.of("INT8", 1.0f / 128.0f, 0);
+        ByteBuffer dst = buffer(6);
+        InputTensorAdapter adapter = InputTensorAdapter.create(format, NormalizationKernel.SIGNED_SCALE);
+
+        adapter.write(PIXELS, 2, dst);
+
+        for (int i = 0; i < 6; i++) {
+            int channel = i % 3;
+            int sample = (PIXELS[i / 3] >> (16 - 8 * channel)) & 0xFF;
+            float expected = sample / 127.5f - 1.0f;
+            assertEquals(expected, format.read(dst, i), format.getScale());
+        }
+        assertEquals(127, dst.get(4));
+    }
+
+    /**
+     * Tests half precision conversion on exact, rounded and special values
+     */
+    @Test
+    public void testHalfConversion() {
+        float[] exact = {0.0f, 1.0f, -2.5f, 255.0f, 65504.0f, 6.1035156E-5f, 5.9604645E-8f};
+        for (float value : exact) {
+            assertEquals(value, TensorFormat.halfToFloat(TensorFormat.floatToHalf(value)), 0.0f);
+        }
+        for (int v = 0; v < 256; v++) {
+            float value = v / 255.0f;
+            assertEquals(value, TensorFormat.halfToFloat(TensorFormat.floatToHalf(value)), value / 1024.0f);
+        }
+        assertTrue(Float.isInfinite(TensorFormat.halfToFloat(TensorFormat.floatToHalf(1.0e6f))));
+        assertTrue(Float.isNaN(TensorFormat.halfToFloat(TensorFormat.floatToHalf(Float.NaN))));
+    }
+
+    /**
+     * Tests that fp16 writes hold the normalized values
+     */
+    @Test
+    public void testFloat16Adapter() {
+        ByteBuffer dst = buffer(2 * 3 * 2);
+        InputTensorAdapter adapter = InputTensorAdapter.create(TensorFormat.FLOAT16, NormalizationKernel.RAW);
+
+        adapter.write(PIXELS, 2, dst);
+
+        assertEquals(12, dst.position());
+        assertEquals(100.0f, TensorFormat.FLOAT16.read(dst, 0), 0.0f);
+        assertEquals(255.0f, TensorFormat.FLOAT16.read(dst, 4), 0.0f);
+    }
+
+    /**
+     * Tests dequantizing uint8 output values
+     */
+    @Test
+    public void testUint8Dequantize() {
+        TensorFormat format = TensorFormat.of("UINT8", 0.5f, 10);
+        ByteBuffer output = buffer(2);
+        output.put(0, (byte) 10);
+        output.put(1, (byte) 250);
+
+        assertEquals(0.0f, format.read(output, 0), 0.0f);
+        assertEquals(120.0f, format.read(output, 1), 0.0f);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the lookup-table normalization kernels
+ */
+public class NormalizationKernelTest {
+
+    private static int rgb(int r, int g, int b) {
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Tests that each numbered method matches the original per-pixel formulas
+     */
+    @Test
+    public void testMethodsMatchOriginalFormulas() {
+        for (int v = 0; v < 256; v++) {
+            float f = v;
+            assertEquals(f / 255.0f, NormalizationKernel.forMethod(1).value(NormalizationKernel.RED, v), 0.0f);
+            assertEquals(f / 127.5f - 1.0f, NormalizationKernel.forMethod(2).value(NormalizationKernel.GREEN, v), 0.0f);
+            assertEquals((f - 123.68f) / 255.0f, NormalizationKernel.forMethod(3).value(NormalizationKernel.RED, v), 0.0f);
+            assertEquals((f - 116.78f) / 255.0f, NormalizationKernel.forMethod(3).value(NormalizationKernel.GREEN, v), 0.0f);
+            assertEquals((f - 103.94f) / 255.0f, NormalizationKernel.forMethod(3).value(NormalizationKernel.BLUE, v), 0.0f);
+            assertEquals(f, NormalizationKernel.forMethod(4).value(NormalizationKernel.BLUE, v), 0.0f);
+        }
+    }
+
+    /**
+     * Tests that pixels are unpacked into interleaved RGB order
+     */
+    @Test
+    public void testNormalizeToArray() {
+        int[] pixels = {rgb(100, 150, 200), rgb(0, 255, 1)};
+        float[] dst = new float[7];
+
+        NormalizationKernel.UNIT_SCALE.normalize(pixels, 0, 2, dst, 1);
+
+        assertEquals(0.0f, dst[0], 0.0f);
+        assertEquals(100 / 255.0f, dst[1], 0.001f);
+        assertEquals(150 / 255.0f, dst[2], 0.001f);
+        assertEquals(200 / 255.0f, dst[3], 0.001f);
+        assertEquals(0.0f, dst[4], 0.001f);
+        assertEquals(1.0f, dst[5], 0.001f);
+        assertEquals(1 / 255.0f, dst[6], 0.001f);
+    }
+
+    /**
+     * Tests bulk writes through a native-order float view, including a partial last row
+     */
+    @Test
+    public void testNormalizeToFloatBuffer() {
+        int count = 10;
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = rgb(i, i * 2, i * 3);
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocateDirect(count * 3 * 4).order(ByteOrder.nativeOrder());
+        FloatBuffer floats = bytes.asFloatBuffer();
+        NormalizationKernel.RAW.normalize(pixels, count, new float[4 * 3], floats);
+
+        assertEquals(count * 3, floats.position());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, bytes.getFloat(), 0.0f);
+            assertEquals(i * 2, bytes.getFloat(), 0.0f);
+            assertEquals(i * 3, bytes.getFloat(), 0.0f);
+        }
+    }
+
+    /**
+     * Tests that a custom kernel only needs a channel function
+     */
+    @Test
+    public void testCustomKernel() {
+        NormalizationKernel inverted = new NormalizationKernel("inverted",
+                (channel, value) -> 255 - value);
+
+        float[] dst = new float[3];
+        inverted.normalize(new int[]{rgb(10, 20, 30)}, 0, 1, dst, 0);
+
+        assertArrayEquals(new float[]{245, 235, 225}, dst, 0.0f);
+        assertEquals("inverted", inverted.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMethod() {
+        NormalizationKernel.forMethod(5);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for fused softmax, argmax and top-k postprocessing
+ */
+public class PostprocessorTest {
+
+    /**
+     * Tests softmax against the direct formula, including large logits that
+     * would overflow without the max shift
+     */
+    @Test
+    public void testSoftmax() {
+        float[] logits = {1000f, 1001f, 998f};
+        float[] probs = new float[3];
+
+        int best = Postprocessor.softmax(logits, probs, 3);
+
+        double sum = Math.exp(-1) + 1 + Math.exp(-3);
+        assertEquals(1, best);
+        assertEquals(Math.exp(-1) / sum, probs[0], 1e-6);
+        assertEquals(1 / sum, probs[1], 1e-6);
+        assertEquals(Math.exp(-3) / sum, probs[2], 1e-6);
+    }
+
+    /**
+     * Tests that the softmax can run in place
+     */
+    @Test
+    public void testSoftmaxInPlace() {
+        float[] values = {0f, 0f, 0f, 0f};
+        assertEquals(0, Postprocessor.softmax(values, values, 4));
+        assertArrayEquals(new float[]{0.25f, 0.25f, 0.25f, 0.25f}, values, 1e-6f);
+    }
+
+    /**
+     * Tests ordering, ties and k larger than the class count
+     */
+    @Test
+    public void testTopK() {
+        float[] probs = {0.1f, 0.4f, 0.1f, 0.4f};
+        int[] indices = new int[5];
+        float[] values = new float[5];
+
+        assertEquals(3, Postprocessor.topK(probs, 4, 3, indices, values));
+        assertArrayEquals(new int[]{1, 3, 0}, new int[]{indices[0], indices[1], indices[2]});
+        assertEquals(0.4f, values[0], 0.0f);
+        assertEquals(0.1f, values[2], 0.0f);
+
+        assertEquals(4, Postprocessor.topK(probs, 4, 5, indices, values));
+        assertEquals(2, indices[3]);
+    }
+
+    /**
+     * Tests the joint ranking against a brute-force sort of all 12 pairs
+     */
+    @Test
+    public void testJointTopK() {
+        float[] fruit = {0.2f, 0.5f, 0.3f};
+        float[] ripeness = {0.05f, 0.4f, 0.15f, 0.4f};
+        int[] fruitIndices = new int[12];
+        int[] ripenessIndices = new int[12];
+        float[] joint = new float[12];
+
+        int n = Postprocessor.jointTopK(fruit, 3, ripeness, 4, 12, fruitIndices, ripenessIndices, joint);
+
+        assertEquals(12, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(fruit[fruitIndices[i]] * ripeness[ripenessIndices[i]], joint[i], 0.0f);
+            if (i > 0) {
+                assertTrue(joint[i - 1] >= joint[i]);
+            }
+        }
+        assertEquals(1, fruitIndices[0]);
+        assertEquals(1, ripenessIndices[0]);
+        assertEquals(1, fruitIndices[1]);
+        assertEquals(3, ripenessIndices[1]);
+
+        assertEquals(2, Postprocessor.jointTopK(fruit, 3, ripeness, 4, 2, fruitIndices, ripenessIndices, joint));
+    }
+
+    /**
+     * Tests that percentages are rounded to one decimal like "%.1f%%"
+     */
+    @Test
+    public void testAppendPercent() {
+        StringBuilder builder = new StringBuilder();
+        Postprocessor.appendPercent(builder, 42.46f).append(' ');
+        Postprocessor.appendPercent(builder, 0.04f).append(' ');
+        Postprocessor.appendPercent(builder, 100f);
+
+        assertEquals("42.5% 0.0% 100.0%", builder.toString());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ui;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for single-pass YUV to model input conversion on synthetic planes
+ */
+public class YuvConverterTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    /**
+     * Builds planes with padded rows and interleaved chroma (pixel stride 2),
+     * where luma encodes the pixel position and chroma is neutral
+     */
+    private static YuvConverter.Planes positionPlanes() {
+        int yRowStride = WIDTH + 4;
+        ByteBuffer y = ByteBuffer.allocateDirect(yRowStride * HEIGHT);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                y.put(row * yRowStride + col, (byte) (row * 16 + col));
+            }
+        }
+        int uvRowStride = WIDTH + 2;
+        ByteBuffer uv = ByteBuffer.allocateDirect(uvRowStride * HEIGHT / 2);
+        for (int i = 0; i < uv.capacity(); i++) {
+            uv.put(i, (byte) 128);
+        }
+        ByteBuffer u = uv.duplicate();
+        ByteBuffer v = uv.duplicate();
+        return new YuvConverter.Planes().set(y, yRowStride, u, v, uvRowStride, 2);
+    }
+
+    /** Decodes the source row and column encoded into a gray output pixel */
+    private static int[] position(int argb) {
+        int gray = argb & 0xFF;
+        return new int[]{gray / 16, gray % 16};
+    }
+
+    /**
+     * Tests that neutral chroma yields gray pixels equal to luma and that an
+     * unrotated full crop at the source size is an exact copy
+     */
+    @Test
+    public void testIdentityCopy() {
+        YuvConverter converter = new YuvConverter(4);
+        converter.setGeometry(2, 1, 4, 4, 0);
+        int[] out = new int[16];
+        converter.convert(positionPlanes(), out);
+
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                int pixel = out[row * 4 + col];
+                assertEquals((pixel >> 16) & 0xFF, pixel & 0xFF);
+                assertEquals((pixel >> 8) & 0xFF, pixel & 0xFF);
+                assertArrayEquals(new int[]{row + 1, col + 2}, position(pixel));
+            }
+        }
+    }
+
+    /**
+     * Tests that each rotation puts the right crop corner at the output's top-left
+     */
+    @Test
+    public void testRotations() {
+        YuvConverter converter = new YuvConverter(4);
+        int[] out = new int[16];
+        YuvConverter.Planes planes = positionPlanes();
+
+        converter.setCenterCrop(WIDTH, HEIGHT, 90);
+        converter.convert(planes, out);
+        // Crop is rows 0-5, columns 1-6; rotated clockwise, bottom-left comes first
+        assertArrayEquals(new int[]{5, 1}, position(out[0]));
+        assertArrayEquals(new int[]{0, 1}, position(out[3]));
+
+        converter.setCenterCrop(WIDTH, HEIGHT, 180);
+        converter.convert(planes, out);
+        assertArrayEquals(new int[]{5, 6}, position(out[0]));
+        assertArrayEquals(new int[]{0, 1}, position(out[15]));
+
+        converter.setCenterCrop(WIDTH, HEIGHT, 270);
+        converter.convert(planes, out);
+        assertArrayEquals(new int[]{0, 6}, position(out[0]));
+        assertArrayEquals(new int[]{5, 6}, position(out[3]));
+    }
+
+    /**
+     * Tests colour conversion of saturated chroma against the BT.601 formulas
+     */
+    @Test
+    public void testColourConversion() {
+        ByteBuffer y = ByteBuffer.allocateDirect(4);
+        ByteBuffer u = ByteBuffer.allocateDirect(1);
+        ByteBuffer v = ByteBuffer.allocateDirect(1);
+        for (int i = 0; i < 4; i++) {
+            y.put(i, (byte) 81);
+        }
+        u.put(0, (byte) 90);
+        v.put(0, (byte) 240);
+
+        YuvConverter converter = new YuvConverter(1);
+        converter.setGeometry(0, 0, 2, 2, 0);
+        int[] out = new int[1];
+        converter.convert(new YuvConverter.Planes().set(y, 2, u, v, 1, 1), out);
+
+        int r = (out[0] >> 16) & 0xFF;
+        int g = (out[0] >> 8) & 0xFF;
+        int b = out[0] & 0xFF;
+        assertEquals(Math.min(255, Math.round(81 + 1.402f * 112)), r, 1);
+        assertEquals(Math.round(81 - 0.344136f * -38 - 0.714136f * 112), g, 1);
+        assertEquals(Math.round(81 + 1.772f * -38), b, 1);
+    }
+
+    /**
+     * Tests that writing through an adapter matches converting to pixels first
+     */
+    @Test
+    public void testConvertIntoInputBuffer() {
+        YuvConverter converter = new YuvConverter(4);
+        converter.setCenterCrop(WIDTH, HEIGHT, 90);
+        YuvConverter.Planes planes = positionPlanes();
+
+        int[] pixels = new int[16];
+        converter.convert(planes, pixels);
+        float[] expected = new float[16 * 3];
+        NormalizationKernel.UNIT_SCALE.normalize(pixels, 0, 16, expected, 0);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 3 * 4).order(ByteOrder.nativeOrder());
+        converter.convert(planes, new Float32InputAdapter(NormalizationKernel.UNIT_SCALE), buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        buffer.rewind();
+        for (float value : expected) {
+            assertEquals(value, buffer.getFloat(), 0.0f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOddRotation() {
+        new YuvConverter(4).setCenterCrop(WIDTH, HEIGHT, 45);
+    }
+}
@@ -20,3 +20,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "UI"
 include(":app")
+include(":imagecore")
+include(":benchmarks")